@@ -32,3 +32,27 @@ PRIMARY KEY (current_word_id, next_word_id),
 FOREIGN KEY (current_word_id) REFERENCES Words(word_id) ON DELETE CASCADE,
 FOREIGN KEY (next_word_id) REFERENCES Words(word_id) ON DELETE CASCADE
 );
+
+# per-file word counts, file and word combo is a composite primary key
+CREATE TABLE FileWords (
+file_id INT NOT NULL,
+word_id INT NOT NULL,
+word_frequency INT NOT NULL DEFAULT 0,
+starting_word_occurences INT DEFAULT 0,
+ending_word_occurences INT DEFAULT 0,
+PRIMARY KEY (file_id, word_id),
+FOREIGN KEY (file_id) REFERENCES Files(file_id) ON DELETE CASCADE,
+FOREIGN KEY (word_id) REFERENCES Words(word_id) ON DELETE CASCADE
+);
+
+# per-file relationships, file, current word and subsequent word combo is a composite primary key
+CREATE TABLE FileRelationships (
+file_id INT NOT NULL,
+current_word_id INT NOT NULL,
+next_word_id INT NOT NULL,
+combination_count INT DEFAULT 0,
+PRIMARY KEY (file_id, current_word_id, next_word_id),
+FOREIGN KEY (file_id) REFERENCES Files(file_id) ON DELETE CASCADE,
+FOREIGN KEY (current_word_id) REFERENCES Words(word_id) ON DELETE CASCADE,
+FOREIGN KEY (next_word_id) REFERENCES Words(word_id) ON DELETE CASCADE
+);
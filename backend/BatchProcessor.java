@@ -0,0 +1,272 @@
+package backend;
+/**
+ * Pipe-friendly batch mode: reads requests as JSON lines and writes one JSON result line per request, so jobs can
+ * push millions of requests through one warmed-up JVM instead of starting one per call.
+ *
+ * Each input line is a flat JSON object with an "op" and the op's fields; an "id" of any type is copied to the
+ * result as it was sent, and results without an id carry the input line number instead:
+ *   {"op":"generate","prefix":"the old","algorithm":"NUCLEUS","maxWords":10,"seed":7}  -> "sentence"
+ *   {"op":"suggest","text":"the old","limit":5}                                      -> "suggestions"
+ *   {"op":"score","text":"The old man said hello."}              -> "tokens", "logLikelihood", "perplexity"
+ * algorithm defaults to WEIGHTED, maxWords to 10 and at most 1000, limit to all suggestions, and without a seed
+ * every sentence is random. A request that cannot be answered gets a result with an "error" instead, and the
+ * batch goes on.
+ *
+ * Requests are handled by a fixed number of workers, and at most maxInFlight of them are read ahead of the output,
+ * so memory stays bounded however long the input is. Results are written in input order, holding finished ones
+ * back until the ones before them are written, or in completion order as soon as each is done. Output is only
+ * flushed when its buffer fills or nothing is in flight, which keeps large batches fast while a caller that waits
+ * for each answer still gets it.
+ *
+ * Written by Andersen Breyel
+ **/
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.random.RandomGenerator;
+
+public class BatchProcessor {
+    private static final int DEFAULT_MAX_WORDS = 10;
+    // Longest sentence a request may ask for; generation allocates and may search up to maxWords words
+    private static final int MAX_MAX_WORDS = 1000;
+
+    /**
+     * Order the results are written in
+     */
+    public enum Order { INPUT, COMPLETION }
+
+    private final Writer out;
+    private final Order order;
+    private final Semaphore inFlight;
+    private final int maxInFlight;
+    // Finished results waiting for earlier ones, by sequence number, in input order only
+    private final HashMap<Long, String> held = new HashMap<>();
+    private long nextToWrite = 0;
+    private long requests = 0;
+    private final AtomicLong errors = new AtomicLong();
+    private IOException writeFailure = null;
+
+    private BatchProcessor(Writer out, Order order, int maxInFlight) {
+        this.out = out;
+        this.order = order;
+        this.maxInFlight = maxInFlight;
+        this.inFlight = new Semaphore(maxInFlight);
+    }
+
+    /**
+     * Answers every request read from in and writes the results to out, against the model BigramProcessor holds
+     * @param in          JSON lines, one request per line; blank lines are skipped
+     * @param out         receives one JSON line per request
+     * @param parallelism number of workers
+     * @param maxInFlight most requests read but not yet written
+     * @param order       order to write the results in
+     * @return number of requests answered, including the ones answered with an error
+     * @throws IOException if the input cannot be read or the output written
+     * Written by Andersen Breyel
+     */
+    public static long run(BufferedReader in, Writer out, int parallelism, int maxInFlight, Order order)
+            throws IOException, InterruptedException {
+        if (!BigramProcessor.isLoaded()) {
+            throw new IllegalStateException("BigramProcessor not initialized. Create a BigramProcessor first.");
+        }
+        BatchProcessor batch = new BatchProcessor(out, order, maxInFlight);
+        long started = System.nanoTime();
+        ExecutorService workers = Executors.newFixedThreadPool(parallelism);
+        try {
+            String line;
+            long lineNumber = 0;
+            long sequence = 0;
+            while ((line = in.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) continue;
+                batch.inFlight.acquire();
+                batch.checkWriteFailure();
+                long position = sequence++;
+                String request = line;
+                long number = lineNumber;
+                workers.execute(() -> {
+                    String result = null;
+                    try {
+                        result = batch.answer(request, number);
+                    } finally {
+                        // answer catches every Exception, but after an Error a result must still be written, or its
+                        // permit is never released and reading waits for it forever
+                        batch.write(position, result != null ? result
+                                : batch.error(Json.object().field("line", number), "Failed with an error"));
+                    }
+                });
+            }
+        } finally {
+            workers.shutdown();
+            workers.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        }
+        batch.checkWriteFailure();
+        out.flush();
+        double seconds = (System.nanoTime() - started) / 1e9;
+        System.err.printf("Answered %,d requests (%,d errors) in %.1f s, %.0f requests/s%n",
+                batch.requests, batch.errors.get(), seconds, batch.requests / seconds);
+        return batch.requests;
+    }
+
+    /**
+     * Writes a result, or holds it until the results before it are written when writing in input order
+     */
+    private synchronized void write(long position, String result) {
+        requests++;
+        try {
+            if (order == Order.COMPLETION) {
+                writeLine(result);
+            } else {
+                held.put(position, result);
+                String next;
+                while ((next = held.remove(nextToWrite)) != null) {
+                    writeLine(next);
+                    nextToWrite++;
+                }
+            }
+            // Nothing left in flight, so whoever is waiting for these results gets them now
+            if (inFlight.availablePermits() == maxInFlight) {
+                out.flush();
+            }
+        } catch (IOException e) {
+            if (writeFailure == null) writeFailure = e;
+        }
+    }
+
+    private void writeLine(String result) throws IOException {
+        try {
+            out.write(result);
+            out.write('\n');
+        } finally {
+            inFlight.release();
+        }
+    }
+
+    private synchronized void checkWriteFailure() throws IOException {
+        if (writeFailure != null) throw writeFailure;
+    }
+
+    /**
+     * Answers one request line, never throwing
+     * @param line       the JSON request
+     * @param lineNumber line number of the request in the input, used when it has no id
+     * @return the JSON result
+     * Written by Andersen Breyel
+     */
+    String answer(String line, long lineNumber) {
+        Json.ObjectWriter result = Json.object();
+        try {
+            Set<String> stringFields = new HashSet<>();
+            Map<String, String> request;
+            try {
+                request = Json.parseFlatObject(line, stringFields);
+            } catch (IllegalArgumentException e) {
+                return error(result.field("line", lineNumber), "Malformed JSON: " + e.getMessage());
+            }
+            String id = request.get("id");
+            if (id == null) {
+                result.field("line", lineNumber);
+            } else if (stringFields.contains("id")) {
+                result.field("id", id);
+            } else {
+                result.rawField("id", id);
+            }
+            String op = request.get("op");
+            if (op == null) {
+                return error(result, "Missing op");
+            }
+            switch (op) {
+                case "generate" -> generate(request, result);
+                case "suggest" -> suggest(request, result);
+                case "score" -> score(request, result);
+                default -> {
+                    return error(result, "Unknown op " + op + "; use generate, suggest or score");
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            return error(result, e.getMessage());
+        } catch (Exception e) {
+            return error(result, "Failed: " + e);
+        }
+        return result.toString();
+    }
+
+    private String error(Json.ObjectWriter result, String message) {
+        errors.incrementAndGet();
+        return result.field("error", message).toString();
+    }
+
+    private static void generate(Map<String, String> request, Json.ObjectWriter result) {
+        String prefix = required(request, "prefix").trim();
+        GenerationAlgorithm algorithm = GenerationAlgorithm.WEIGHTED;
+        if (request.containsKey("algorithm")) {
+            try {
+                algorithm = GenerationAlgorithm.valueOf(request.get("algorithm").trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown algorithm " + request.get("algorithm")
+                        + "; use one of " + List.of(GenerationAlgorithm.values()));
+            }
+        }
+        int maxWords = request.containsKey("maxWords") ? number(request, "maxWords", 1, MAX_MAX_WORDS) : DEFAULT_MAX_WORDS;
+        RandomGenerator rng = request.containsKey("seed")
+                ? new SplittableRandom(Long.parseLong(request.get("seed")))
+                : ThreadLocalRandom.current();
+        if (BigramProcessor.getSuccessorCount(prefix) == 0) {
+            throw new IllegalArgumentException("No words follow the last word of the prefix");
+        }
+        result.field("sentence", BigramProcessor.generateSentence(prefix, algorithm, maxWords, true, rng));
+    }
+
+    private static void suggest(Map<String, String> request, Json.ObjectWriter result) {
+        List<String> suggestions = BigramProcessor.getNextWordSuggestions(required(request, "text"), true);
+        if (request.containsKey("limit")) {
+            suggestions = suggestions.subList(0, Math.min(suggestions.size(), number(request, "limit", 1, Integer.MAX_VALUE)));
+        }
+        result.field("suggestions", suggestions);
+    }
+
+    private static void score(Map<String, String> request, Json.ObjectWriter result) {
+        PerplexityScorer.ScoreReport report = PerplexityScorer.scoreText(required(request, "text"));
+        result.field("tokens", report.getTokenCount())
+                .field("logLikelihood", report.getLogLikelihood())
+                .field("perplexity", report.getPerplexity());
+    }
+
+    private static String required(Map<String, String> request, String name) {
+        String value = request.get(name);
+        if (value == null || value.isBlank()) {
+            throw new IllegalArgumentException("Missing " + name);
+        }
+        return value;
+    }
+
+    private static int number(Map<String, String> request, String name, int min, int max) {
+        int value;
+        try {
+            value = Integer.parseInt(request.get(name));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(name + " must be a whole number");
+        }
+        if (value < min) {
+            throw new IllegalArgumentException(name + " must be at least " + min);
+        }
+        if (value > max) {
+            throw new IllegalArgumentException(name + " must be at most " + max);
+        }
+        return value;
+    }
+}
@@ -0,0 +1,746 @@
+package backend;
+/**
+ * Compact, id based view of the Words and Relationships tables used by the generation algorithms.
+ * Every word gets an int id and its unigram counts live in parallel int arrays. The successors of each word are
+ * stored in one shared array (compressed sparse rows): the successors of word id w are the entries from
+ * successorOffsets[w] up to successorOffsets[w + 1], sorted by combination count from most to least common.
+ * Walking a word's successors is therefore a tight loop over two int arrays instead of a scan of every bigram key.
+ * Each row also keeps running totals of its counts, which lets the samplers pick a successor with a binary search.
+ * Optionally the model also keeps the predecessors of each word in exactly the same layout, for generating
+ * sentences backwards. The predecessor rows are separate arrays, so the forward path never touches them.
+ *
+ * The model is built once from the hashmaps loaded by DatabaseManager and is never modified, so it can be read
+ * from any number of threads.
+ *
+ * Written by Andersen Breyel
+ **/
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.random.RandomGenerator;
+import java.util.stream.IntStream;
+
+final class BigramModel {
+    // id -> word text
+    final String[] words;
+    // word text -> id
+    final HashMap<String, Integer> ids;
+    // unigram counts indexed by word id
+    final int[] frequency;
+    final int[] startCount;
+    final int[] endCount;
+    // successors of word w are successorIds[successorOffsets[w] .. successorOffsets[w + 1])
+    final int[] successorOffsets;
+    final int[] successorIds;
+    final int[] successorCounts;
+    // successorCumulative[slot] = sum of successorCounts from the start of the slot's row through slot
+    final long[] successorCumulative;
+    // predecessors of word w, laid out like the successors; all null if the predecessor index was not built
+    final int[] predecessorOffsets;
+    final int[] predecessorIds;
+    final int[] predecessorCounts;
+    final long[] predecessorCumulative;
+    // distance value for words that can't reach the target at all
+    static final int UNREACHABLE = Integer.MAX_VALUE;
+    // shortest number of words to generate after each word to reach an end word, computed on first use
+    private volatile int[] distanceToEnd = null;
+    private volatile GreedyChains greedyChains = null;
+    private volatile FuzzyIndex fuzzyIndex = null;
+    private volatile PrefixIndex prefixIndex = null;
+    // running totals of temperature reshaped weights, newest first, one per row set, exponent and smoothing setting
+    private static final int MAX_TEMPERATURE_TABLES = 4;
+    private volatile TemperatureTable[] temperatureTables = new TemperatureTable[0];
+
+    private static final class TemperatureTable {
+        final boolean predecessors;
+        final double exponent;
+        final boolean smoothing;
+        final double[] cumulative;
+
+        TemperatureTable(boolean predecessors, double exponent, boolean smoothing, double[] cumulative) {
+            this.predecessors = predecessors;
+            this.exponent = exponent;
+            this.smoothing = smoothing;
+            this.cumulative = cumulative;
+        }
+    }
+
+    private BigramModel(String[] words, HashMap<String, Integer> ids, int[] frequency, int[] startCount,
+                        int[] endCount, int[] successorOffsets, int[] successorIds, int[] successorCounts,
+                        int[] predecessorOffsets, int[] predecessorIds, int[] predecessorCounts) {
+        this.words = words;
+        this.ids = ids;
+        this.frequency = frequency;
+        this.startCount = startCount;
+        this.endCount = endCount;
+        this.successorOffsets = successorOffsets;
+        this.successorIds = successorIds;
+        this.successorCounts = successorCounts;
+        this.successorCumulative = runningTotals(successorOffsets, successorCounts);
+        this.predecessorOffsets = predecessorOffsets;
+        this.predecessorIds = predecessorIds;
+        this.predecessorCounts = predecessorCounts;
+        this.predecessorCumulative = predecessorCounts == null ? null
+                : runningTotals(predecessorOffsets, predecessorCounts);
+    }
+
+    /**
+     * Running totals of the counts within each row
+     * Written by Andersen Breyel
+     */
+    private static long[] runningTotals(int[] offsets, int[] counts) {
+        long[] cumulative = new long[counts.length];
+        for (int w = 0; w + 1 < offsets.length; w++) {
+            long total = 0;
+            for (int slot = offsets[w]; slot < offsets[w + 1]; slot++) {
+                total += counts[slot];
+                cumulative[slot] = total;
+            }
+        }
+        return cumulative;
+    }
+
+    /**
+     * Builds the model from the word and bigram hashmaps loaded from the database
+     * @param wordMap      word text -> Word
+     * @param bigramMap    "word1 word2" -> combination count
+     * @param predecessors whether to also build the predecessor index
+     * @return             the compact model
+     * Written by Andersen Breyel
+     */
+    static BigramModel build(Map<String, Word> wordMap, Map<String, Integer> bigramMap, boolean predecessors) {
+        return build(wordMap, bigramMap.size(), handler -> {
+            for (Map.Entry<String, Integer> entry : bigramMap.entrySet()) {
+                String key = entry.getKey();
+                int split = key.indexOf(' ');
+                if (split < 0) continue;
+                handler.accept(key.substring(0, split), key.substring(split + 1), entry.getValue());
+            }
+        }, predecessors);
+    }
+
+    /**
+     * Builds the model from the word hashmap and a source that hands over the bigrams one at a time, e.g. straight
+     * from the database, so no string keyed bigram map has to exist at any point
+     * @param wordMap       word text -> Word
+     * @param expectedEdges number of bigrams expected, to size the edge arrays
+     * @param bigrams       calls the given handler once per bigram
+     * @param predecessors  whether to also build the predecessor index
+     * @return              the compact model
+     * Written by Andersen Breyel
+     */
+    static BigramModel build(Map<String, Word> wordMap, int expectedEdges,
+                             Consumer<DatabaseManager.BigramRowHandler> bigrams, boolean predecessors) {
+        int vocabSize = wordMap.size();
+        String[] words = new String[vocabSize];
+        HashMap<String, Integer> ids = new HashMap<>(vocabSize * 2);
+        int[] frequency = new int[vocabSize];
+        int[] startCount = new int[vocabSize];
+        int[] endCount = new int[vocabSize];
+
+        // Assign ids and copy the unigram counts
+        int nextId = 0;
+        for (Word word : wordMap.values()) {
+            words[nextId] = word.getWordText();
+            ids.put(word.getWordText(), nextId);
+            frequency[nextId] = word.getFrequency();
+            startCount[nextId] = word.getStartWordCount();
+            endCount[nextId] = word.getEndWordCount();
+            nextId++;
+        }
+
+        // Resolve each bigram to a pair of ids, skipping any that reference unknown words
+        EdgeBuffer edges = new EdgeBuffer(expectedEdges);
+        bigrams.accept((currentWord, nextWord, count) -> {
+            Integer prefixId = ids.get(currentWord);
+            Integer suffixId = ids.get(nextWord);
+            if (prefixId != null && suffixId != null) {
+                edges.add(prefixId, suffixId, count);
+            }
+        });
+        return fromEdges(words, ids, frequency, startCount, endCount, edges.prefixes, edges.suffixes, edges.counts,
+                edges.size, predecessors);
+    }
+
+    /**
+     * Growable (prefix, suffix, count) edge arrays
+     */
+    private static final class EdgeBuffer {
+        int[] prefixes;
+        int[] suffixes;
+        int[] counts;
+        int size = 0;
+
+        EdgeBuffer(int capacity) {
+            prefixes = new int[Math.max(16, capacity)];
+            suffixes = new int[prefixes.length];
+            counts = new int[prefixes.length];
+        }
+
+        void add(int prefix, int suffix, int count) {
+            if (size == prefixes.length) {
+                int capacity = size + (size >> 1);
+                prefixes = Arrays.copyOf(prefixes, capacity);
+                suffixes = Arrays.copyOf(suffixes, capacity);
+                counts = Arrays.copyOf(counts, capacity);
+            }
+            prefixes[size] = prefix;
+            suffixes[size] = suffix;
+            counts[size] = count;
+            size++;
+        }
+    }
+
+    /**
+     * Lays out a list of (prefix, suffix, count) edges as compressed sparse rows with each row sorted by count,
+     * and the same edges reversed for the predecessor index if it is wanted
+     * Written by Andersen Breyel
+     */
+    static BigramModel fromEdges(String[] words, HashMap<String, Integer> ids, int[] frequency,
+                                 int[] startCount, int[] endCount, int[] prefixes, int[] suffixes,
+                                 int[] counts, int edgeCount, boolean predecessors) {
+        int vocabSize = words.length;
+        int[] successorOffsets = new int[vocabSize + 1];
+        int[] successorIds = new int[edgeCount];
+        int[] successorCounts = new int[edgeCount];
+        layoutRows(vocabSize, prefixes, suffixes, counts, edgeCount, successorOffsets, successorIds, successorCounts);
+
+        int[] predecessorOffsets = null;
+        int[] predecessorIds = null;
+        int[] predecessorCounts = null;
+        if (predecessors) {
+            predecessorOffsets = new int[vocabSize + 1];
+            predecessorIds = new int[edgeCount];
+            predecessorCounts = new int[edgeCount];
+            layoutRows(vocabSize, suffixes, prefixes, counts, edgeCount, predecessorOffsets, predecessorIds,
+                    predecessorCounts);
+        }
+        return new BigramModel(words, ids, frequency, startCount, endCount, successorOffsets, successorIds,
+                successorCounts, predecessorOffsets, predecessorIds, predecessorCounts);
+    }
+
+    /**
+     * Builds the model left after taking away some counts, e.g. those of one imported file. Rows are copied by id
+     * with the subtracted counts looked up in a sorted array, so only the removed words and bigrams are hashed.
+     * Words and bigrams whose count reaches zero are dropped and the remaining words renumbered.
+     * @param wordDelta   words to subtract with their counts
+     * @param bigramDelta "word1 word2" -> count to subtract
+     * @return            the reduced model, with a predecessor index if this model has one
+     * Written by Andersen Breyel
+     */
+    BigramModel minus(Map<String, Word> wordDelta, Map<String, Integer> bigramDelta) {
+        int vocabSize = vocabSize();
+        int[] newFrequency = frequency.clone();
+        int[] newStartCount = startCount.clone();
+        int[] newEndCount = endCount.clone();
+        for (Word word : wordDelta.values()) {
+            int id = idOf(word.getWordText());
+            if (id < 0) continue;
+            newFrequency[id] = Math.max(0, newFrequency[id] - word.getFrequency());
+            newStartCount[id] = Math.max(0, newStartCount[id] - word.getStartWordCount());
+            newEndCount[id] = Math.max(0, newEndCount[id] - word.getEndWordCount());
+        }
+
+        // Subtracted bigrams as (prefix id << 32 | suffix id) keys in ascending order, with their counts
+        long[] unsorted = new long[bigramDelta.size()];
+        int[] unsortedCounts = new int[unsorted.length];
+        int keyCount = 0;
+        for (Map.Entry<String, Integer> entry : bigramDelta.entrySet()) {
+            String key = entry.getKey();
+            int split = key.indexOf(' ');
+            if (split < 0) continue;
+            int prefixId = idOf(key.substring(0, split));
+            int suffixId = idOf(key.substring(split + 1));
+            if (prefixId < 0 || suffixId < 0) continue;
+            unsorted[keyCount] = ((long) prefixId << 32) | suffixId;
+            unsortedCounts[keyCount++] = entry.getValue();
+        }
+        long[] keys = Arrays.copyOf(unsorted, keyCount);
+        Arrays.sort(keys);
+        int[] removed = new int[keyCount];
+        for (int e = 0; e < keyCount; e++) {
+            removed[Arrays.binarySearch(keys, unsorted[e])] = unsortedCounts[e];
+        }
+
+        // Keep the words that still occur, renumbered from 0
+        int[] newId = new int[vocabSize];
+        int newSize = 0;
+        for (int w = 0; w < vocabSize; w++) {
+            newId[w] = newFrequency[w] > 0 ? newSize++ : -1;
+        }
+        String[] newWords = new String[newSize];
+        HashMap<String, Integer> newIds = new HashMap<>(newSize * 2);
+        int[] keptFrequency = new int[newSize];
+        int[] keptStartCount = new int[newSize];
+        int[] keptEndCount = new int[newSize];
+        for (int w = 0; w < vocabSize; w++) {
+            int id = newId[w];
+            if (id < 0) continue;
+            newWords[id] = words[w];
+            newIds.put(words[w], id);
+            keptFrequency[id] = newFrequency[w];
+            keptStartCount[id] = newStartCount[w];
+            keptEndCount[id] = newEndCount[w];
+        }
+
+        // Copy every edge that keeps a positive count
+        int[] prefixes = new int[successorIds.length];
+        int[] suffixes = new int[successorIds.length];
+        int[] counts = new int[successorIds.length];
+        int edgeCount = 0;
+        for (int w = 0; w < vocabSize; w++) {
+            if (newId[w] < 0) continue;
+            for (int slot = successorOffsets[w]; slot < successorOffsets[w + 1]; slot++) {
+                int suffix = successorIds[slot];
+                if (newId[suffix] < 0) continue;
+                int count = successorCounts[slot];
+                if (keyCount > 0) {
+                    int k = Arrays.binarySearch(keys, ((long) w << 32) | suffix);
+                    if (k >= 0) count -= removed[k];
+                }
+                if (count <= 0) continue;
+                prefixes[edgeCount] = newId[w];
+                suffixes[edgeCount] = newId[suffix];
+                counts[edgeCount] = count;
+                edgeCount++;
+            }
+        }
+        return fromEdges(newWords, newIds, keptFrequency, keptStartCount, keptEndCount, prefixes, suffixes, counts,
+                edgeCount, hasPredecessors());
+    }
+
+    /**
+     * Builds the model after adding some counts, e.g. those of a newly imported file; the counterpart of minus.
+     * Known words keep their ids and new words are numbered after them. Rows are copied by id with the added counts
+     * looked up in a sorted array, and bigrams the model did not have yet are appended as new edges.
+     * @param wordDelta   words to add with their counts
+     * @param bigramDelta "word1 word2" -> count to add
+     * @return            the extended model, with a predecessor index if this model has one
+     * Written by Andersen Breyel
+     */
+    BigramModel plus(Map<String, Word> wordDelta, Map<String, Integer> bigramDelta) {
+        int vocabSize = vocabSize();
+        HashMap<String, Integer> newIds = new HashMap<>(ids);
+        ArrayList<String> addedWords = new ArrayList<>();
+        for (Word word : wordDelta.values()) {
+            if (newIds.putIfAbsent(word.getWordText(), vocabSize + addedWords.size()) == null) {
+                addedWords.add(word.getWordText());
+            }
+        }
+        int newSize = vocabSize + addedWords.size();
+        String[] newWords = Arrays.copyOf(words, newSize);
+        for (int w = vocabSize; w < newSize; w++) {
+            newWords[w] = addedWords.get(w - vocabSize);
+        }
+        int[] newFrequency = Arrays.copyOf(frequency, newSize);
+        int[] newStartCount = Arrays.copyOf(startCount, newSize);
+        int[] newEndCount = Arrays.copyOf(endCount, newSize);
+        for (Word word : wordDelta.values()) {
+            int id = newIds.get(word.getWordText());
+            newFrequency[id] += word.getFrequency();
+            newStartCount[id] += word.getStartWordCount();
+            newEndCount[id] += word.getEndWordCount();
+        }
+
+        // Added bigrams as (prefix id << 32 | suffix id) keys in ascending order, with their counts
+        long[] unsorted = new long[bigramDelta.size()];
+        int[] unsortedCounts = new int[unsorted.length];
+        int keyCount = 0;
+        for (Map.Entry<String, Integer> entry : bigramDelta.entrySet()) {
+            String key = entry.getKey();
+            int split = key.indexOf(' ');
+            if (split < 0) continue;
+            Integer prefixId = newIds.get(key.substring(0, split));
+            Integer suffixId = newIds.get(key.substring(split + 1));
+            if (prefixId == null || suffixId == null) continue;
+            unsorted[keyCount] = ((long) prefixId << 32) | suffixId;
+            unsortedCounts[keyCount++] = entry.getValue();
+        }
+        long[] keys = Arrays.copyOf(unsorted, keyCount);
+        Arrays.sort(keys);
+        int[] added = new int[keyCount];
+        for (int e = 0; e < keyCount; e++) {
+            added[Arrays.binarySearch(keys, unsorted[e])] = unsortedCounts[e];
+        }
+
+        // Copy every edge with its added count, marking the bigrams that were already known
+        int capacity = successorIds.length + keyCount;
+        int[] prefixes = new int[capacity];
+        int[] suffixes = new int[capacity];
+        int[] counts = new int[capacity];
+        boolean[] known = new boolean[keyCount];
+        int edgeCount = 0;
+        for (int w = 0; w < vocabSize; w++) {
+            for (int slot = successorOffsets[w]; slot < successorOffsets[w + 1]; slot++) {
+                int suffix = successorIds[slot];
+                int count = successorCounts[slot];
+                if (keyCount > 0) {
+                    int k = Arrays.binarySearch(keys, ((long) w << 32) | suffix);
+                    if (k >= 0) {
+                        count += added[k];
+                        known[k] = true;
+                    }
+                }
+                prefixes[edgeCount] = w;
+                suffixes[edgeCount] = suffix;
+                counts[edgeCount] = count;
+                edgeCount++;
+            }
+        }
+        // Then the bigrams seen for the first time
+        for (int k = 0; k < keyCount; k++) {
+            if (known[k] || added[k] <= 0) continue;
+            prefixes[edgeCount] = (int) (keys[k] >>> 32);
+            suffixes[edgeCount] = (int) keys[k];
+            counts[edgeCount] = added[k];
+            edgeCount++;
+        }
+        return fromEdges(newWords, newIds, newFrequency, newStartCount, newEndCount, prefixes, suffixes, counts,
+                edgeCount, hasPredecessors());
+    }
+
+    /**
+     * Groups edges into one row per key word, sorted by count
+     * @param vocabSize number of words
+     * @param keys      word id whose row each edge belongs to
+     * @param values    word id each edge points to
+     * @param counts    count of each edge
+     * @param edgeCount number of edges
+     * @param offsets   receives the row offsets, length vocabSize + 1
+     * @param rowIds    receives the value word ids grouped by row
+     * @param rowCounts receives the counts grouped by row
+     * Written by Andersen Breyel
+     */
+    private static void layoutRows(int vocabSize, int[] keys, int[] values, int[] counts, int edgeCount,
+                                   int[] offsets, int[] rowIds, int[] rowCounts) {
+        // Count the entries of each row, then turn the counts into row offsets
+        for (int e = 0; e < edgeCount; e++) {
+            offsets[keys[e] + 1]++;
+        }
+        for (int w = 0; w < vocabSize; w++) {
+            offsets[w + 1] += offsets[w];
+        }
+
+        // Scatter every edge into its row
+        int[] cursor = new int[vocabSize];
+        for (int e = 0; e < edgeCount; e++) {
+            int slot = offsets[keys[e]] + cursor[keys[e]]++;
+            rowIds[slot] = values[e];
+            rowCounts[slot] = counts[e];
+        }
+
+        // Sort each row by count, most common first
+        for (int w = 0; w < vocabSize; w++) {
+            sortRow(rowIds, rowCounts, offsets[w], offsets[w + 1]);
+        }
+    }
+
+    /**
+     * Sorts one row by count descending, breaking ties by id so the layout is deterministic.
+     * Rows are short on average, so insertion sort handles most of them and longer rows fall back to a
+     * sort on packed longs.
+     * Written by Andersen Breyel
+     */
+    private static void sortRow(int[] rowIds, int[] rowCounts, int from, int to) {
+        int length = to - from;
+        if (length < 2) return;
+        if (length <= 32) {
+            for (int i = from + 1; i < to; i++) {
+                int id = rowIds[i];
+                int count = rowCounts[i];
+                int j = i - 1;
+                while (j >= from && (rowCounts[j] < count
+                        || (rowCounts[j] == count && rowIds[j] > id))) {
+                    rowIds[j + 1] = rowIds[j];
+                    rowCounts[j + 1] = rowCounts[j];
+                    j--;
+                }
+                rowIds[j + 1] = id;
+                rowCounts[j + 1] = count;
+            }
+            return;
+        }
+        // Pack (inverted count, id) so an ascending sort gives count descending then id ascending
+        long[] packed = new long[length];
+        for (int i = 0; i < length; i++) {
+            packed[i] = ((long) (Integer.MAX_VALUE - rowCounts[from + i]) << 32) | rowIds[from + i];
+        }
+        Arrays.sort(packed);
+        for (int i = 0; i < length; i++) {
+            rowCounts[from + i] = Integer.MAX_VALUE - (int) (packed[i] >>> 32);
+            rowIds[from + i] = (int) packed[i];
+        }
+    }
+
+    /**
+     * @return number of words in the vocabulary
+     */
+    int vocabSize() {
+        return words.length;
+    }
+
+    /**
+     * @return true if the predecessor index was built
+     */
+    boolean hasPredecessors() {
+        return predecessorOffsets != null;
+    }
+
+    /**
+     * @param word word text
+     * @return     id of the word, or -1 if it is not in the vocabulary
+     */
+    int idOf(String word) {
+        Integer id = ids.get(word);
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * @param wordId id of a word
+     * @return       true if the word ends a sentence at least once in the corpus
+     */
+    boolean isEndWord(int wordId) {
+        return endCount[wordId] > 0;
+    }
+
+    /**
+     * Log probability of the successor in the given slot, with the same formula as getBigramProbabilities
+     * @param prefixId  id of the prefix word
+     * @param slot      index into successorIds/successorCounts within the prefix's row
+     * @param smoothing whether to apply laplace smoothing
+     * @return          natural log of the bigram probability
+     */
+    double logProbability(int prefixId, int slot, boolean smoothing) {
+        return logProbabilityOfCount(prefixId, successorCounts[slot], smoothing);
+    }
+
+    /**
+     * Log probability of a bigram given its count, so predecessor rows can be scored in the forward direction
+     * @param prefixId  id of the prefix word
+     * @param count     number of times the bigram occurred
+     * @param smoothing whether to apply laplace smoothing
+     * @return          natural log of the bigram probability
+     */
+    double logProbabilityOfCount(int prefixId, int count, boolean smoothing) {
+        if (smoothing) {
+            return Math.log((double) (count + 1) / (frequency[prefixId] + vocabSize()));
+        }
+        return Math.log((double) count / frequency[prefixId]);
+    }
+
+    /**
+     * Count of a bigram, found by scanning the prefix's row, the only per bigram lookup the model keeps
+     * @param prefixId id of the prefix word
+     * @param suffixId id of the suffix word
+     * @return         number of times the bigram occurred, 0 if never
+     */
+    int bigramCount(int prefixId, int suffixId) {
+        for (int slot = successorOffsets[prefixId]; slot < successorOffsets[prefixId + 1]; slot++) {
+            if (successorIds[slot] == suffixId) return successorCounts[slot];
+        }
+        return 0;
+    }
+
+    /**
+     * @return estimated heap used by the derived structures built for this model so far
+     */
+    long cacheBytes() {
+        long bytes = 0;
+        int[] distances = distanceToEnd;
+        if (distances != null) bytes += MemoryFootprint.intArray(distances.length);
+        GreedyChains chains = greedyChains;
+        if (chains != null) bytes += chains.bytes();
+        FuzzyIndex fuzzy = fuzzyIndex;
+        if (fuzzy != null) bytes += fuzzy.bytes();
+        PrefixIndex prefixes = prefixIndex;
+        if (prefixes != null) bytes += prefixes.bytes();
+        for (TemperatureTable table : temperatureTables) {
+            bytes += MemoryFootprint.doubleArray(table.cumulative.length);
+        }
+        return bytes;
+    }
+
+    /**
+     * Picks a slot from a successor or predecessor row with the given sampler. Temperature sampling reads running
+     * totals of its reshaped weights that are built once per model and kept with it.
+     * @param sampler      how to pick
+     * @param predecessors pick from the predecessor rows instead of the successor rows
+     * @param from         first slot of the row
+     * @param to           end of the row, exclusive
+     * @param smoothing    add one to every count
+     * @param rng          source of randomness
+     * @return             the picked slot
+     * Written by Andersen Breyel
+     */
+    int pick(Sampler sampler, boolean predecessors, int from, int to, boolean smoothing, RandomGenerator rng) {
+        int[] counts = predecessors ? predecessorCounts : successorCounts;
+        long[] cumulative = predecessors ? predecessorCumulative : successorCumulative;
+        if (sampler instanceof Samplers.Temperature temperature) {
+            return temperature.pick(temperatureTable(predecessors, temperature.exponent(), smoothing), from, to, rng);
+        }
+        return sampler.pick(counts, cumulative, from, to, smoothing, rng);
+    }
+
+    private double[] temperatureTable(boolean predecessors, double exponent, boolean smoothing) {
+        double[] found = findTemperatureTable(temperatureTables, predecessors, exponent, smoothing);
+        if (found != null) {
+            return found;
+        }
+        synchronized (this) {
+            TemperatureTable[] current = temperatureTables;
+            found = findTemperatureTable(current, predecessors, exponent, smoothing);
+            if (found == null) {
+                found = predecessors
+                        ? Samplers.Temperature.buildTable(predecessorCounts, predecessorCumulative, smoothing, exponent)
+                        : Samplers.Temperature.buildTable(successorCounts, successorCumulative, smoothing, exponent);
+                // Dropping the oldest once there are too many, so callers trying many temperatures don't pile them up
+                TemperatureTable[] updated = new TemperatureTable[Math.min(current.length + 1, MAX_TEMPERATURE_TABLES)];
+                updated[0] = new TemperatureTable(predecessors, exponent, smoothing, found);
+                System.arraycopy(current, 0, updated, 1, updated.length - 1);
+                temperatureTables = updated;
+            }
+            return found;
+        }
+    }
+
+    private static double[] findTemperatureTable(TemperatureTable[] tables, boolean predecessors, double exponent,
+                                                 boolean smoothing) {
+        for (TemperatureTable table : tables) {
+            if (table.predecessors == predecessors && table.exponent == exponent && table.smoothing == smoothing) {
+                return table.cumulative;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Shortest number of words that must be generated after each word before an end-of-sentence word is generated
+     * (0 for end words themselves, UNREACHABLE if no end word can be reached). Computed once per model and cached.
+     * @return distances indexed by word id; callers must not modify the array
+     * Written by Andersen Breyel
+     */
+    int[] distanceToEnd() {
+        int[] distances = distanceToEnd;
+        if (distances == null) {
+            synchronized (this) {
+                distances = distanceToEnd;
+                if (distances == null) {
+                    distances = distancesTo(endWords(), null, UNREACHABLE);
+                    distanceToEnd = distances;
+                }
+            }
+        }
+        return distances;
+    }
+
+    /**
+     * Best-next-word pointers and memoized TopOne chains. Computed once per model and cached.
+     * @return the greedy chains of this model
+     * Written by Andersen Breyel
+     */
+    GreedyChains greedyChains() {
+        GreedyChains chains = greedyChains;
+        if (chains == null) {
+            synchronized (this) {
+                chains = greedyChains;
+                if (chains == null) {
+                    chains = GreedyChains.build(this);
+                    greedyChains = chains;
+                }
+            }
+        }
+        return chains;
+    }
+
+    /**
+     * Symmetric delete index over the vocabulary for finding words close to unknown input. Built on first use and
+     * cached.
+     * @return the fuzzy index of this model
+     * Written by Andersen Breyel
+     */
+    FuzzyIndex fuzzyIndex() {
+        FuzzyIndex index = fuzzyIndex;
+        if (index == null) {
+            synchronized (this) {
+                index = fuzzyIndex;
+                if (index == null) {
+                    index = FuzzyIndex.build(words, frequency);
+                    fuzzyIndex = index;
+                }
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Prefix index over the vocabulary for typeahead. Built on first use and cached.
+     * @return the prefix index of this model
+     * Written by Andersen Breyel
+     */
+    PrefixIndex prefixIndex() {
+        PrefixIndex index = prefixIndex;
+        if (index == null) {
+            synchronized (this) {
+                index = prefixIndex;
+                if (index == null) {
+                    index = PrefixIndex.build(words, frequency, startCount);
+                    prefixIndex = index;
+                }
+            }
+        }
+        return index;
+    }
+
+    /**
+     * @return array indexed by word id that is true for every end-of-sentence word
+     */
+    boolean[] endWords() {
+        boolean[] endWords = new boolean[vocabSize()];
+        for (int w = 0; w < endWords.length; w++) {
+            endWords[w] = isEndWord(w);
+        }
+        return endWords;
+    }
+
+    /**
+     * Reverse breadth-first search over the bigram graph: for every word, the shortest number of words that must be
+     * generated after it to generate one of the target words. Generation stops at end words, so a non-target end word
+     * can never be passed through, and excluded words can never be used at all.
+     * Each level is computed bottom-up in parallel: every word that is still unassigned checks whether any of its
+     * successors was reached in the previous level. Words only ever write their own entry, so no locking is needed.
+     * @param targets  words at distance 0, indexed by word id
+     * @param excluded words that may not be generated, indexed by word id, or null for none
+     * @param maxDepth stop searching after this many levels
+     * @return         distances indexed by word id, UNREACHABLE where no target is reachable within maxDepth
+     * Written by Andersen Breyel
+     */
+    int[] distancesTo(boolean[] targets, boolean[] excluded, int maxDepth) {
+        int[] distances = new int[vocabSize()];
+        for (int w = 0; w < distances.length; w++) {
+            boolean allowed = excluded == null || !excluded[w];
+            distances[w] = targets[w] && allowed ? 0 : UNREACHABLE;
+        }
+        for (int level = 1; level <= maxDepth; level++) {
+            final int previous = level - 1;
+            final int current = level;
+            int assigned = IntStream.range(0, distances.length).parallel().map(w -> {
+                if (distances[w] != UNREACHABLE || isEndWord(w) || (excluded != null && excluded[w])) {
+                    return 0;
+                }
+                for (int slot = successorOffsets[w]; slot < successorOffsets[w + 1]; slot++) {
+                    if (distances[successorIds[slot]] == previous) {
+                        distances[w] = current;
+                        return 1;
+                    }
+                }
+                return 0;
+            }).sum();
+            // Nothing new was reached, so nothing further can be reached either
+            if (assigned == 0) break;
+        }
+        return distances;
+    }
+}
@@ -11,11 +11,55 @@ package backend;
  * Written by Andersen, Sneha, Rida
  **/
 import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.random.RandomGenerator;
 import java.sql.*;
 
 public class BigramProcessor {
-    private static HashMap<String, Word> wordHashMap = null;
-    private static HashMap<String, Integer> wordsHashMap = null;
+    // Counts of the whole library, replaced as a whole whenever they change
+    private static volatile Library library = null;
+    // Model the generation algorithms use: the library's, or the merged model of the selected files. Swapped while
+    // other threads generate, so every call reads it once and works on that copy
+    private static volatile BigramModel model = null;
+    // Merged models over subsets of the imported files
+    private static final CorpusOverlays overlays = new CorpusOverlays();
+    // file_ids the generation algorithms currently use, empty for the whole library. Written under the lock, read
+    // without it
+    private static volatile List<Integer> selectedFiles = List.of();
+    // Whether the next model load also builds the predecessor index used for backward generation
+    private static boolean predecessorIndexEnabled = true;
+    // Most heap the loaded model may take, by default three quarters of the max heap
+    private static long heapBudget = Runtime.getRuntime().maxMemory() / 4 * 3;
+    // Whether a load over the budget falls back to lazy mode instead of failing
+    private static boolean lazyFallback = true;
+    // True when the model was loaded without the string keyed bigram map and the predecessor index
+    private static boolean lazyMode = false;
+    // Latency of model loads and switches, see Metrics
+    private static final LatencyHistogram LOAD_TIMER = Metrics.histogram("model.load");
+    private static final LatencyHistogram SELECT_FILES_TIMER = Metrics.histogram("model.selectFiles");
+    private static final LatencyHistogram REMOVE_FILE_TIMER = Metrics.histogram("model.removeFile");
+    private static final LatencyHistogram ADD_FILE_TIMER = Metrics.histogram("model.addFile");
+
+    /**
+     * Immutable snapshot of the library's counts, so readers see the start total and the model of the same moment
+     * without locking. The model's arrays are the only copy of the counts kept, so ingesting or unloading a file
+     * does not rehash every word and bigram string.
+     */
+    static final class Library {
+        // Sum of starting_word_occurences over the vocabulary, used for sentence start probabilities
+        final long totalStartCount;
+        // Compact id based copy of the Words and Relationships tables
+        final BigramModel model;
+
+        Library(BigramModel model) {
+            long starts = 0;
+            for (int count : model.startCount) {
+                starts += count;
+            }
+            this.totalStartCount = starts;
+            this.model = model;
+        }
+    }
 
     /**
      * Constructor creates dbmaanger instance and imports db tables into hashmaps
@@ -24,158 +68,408 @@ public class BigramProcessor {
      * Written by Andersen
      */
     public BigramProcessor( ){
-        wordHashMap = DatabaseManager.loadAllWordsOptimized();
-        wordsHashMap = DatabaseManager.loadAllBigramsOptimized();
+        long started = System.nanoTime();
+        // Check the corpus fits in the heap budget before loading anything
+        FlightEvents.ModelLoadPhase phase = new FlightEvents.ModelLoadPhase("count");
+        long[] sizes = DatabaseManager.countCorpus();
+        phase.finish(sizes[0] + sizes[2]);
+        MemoryFootprint full = MemoryFootprint.estimate(sizes[0], sizes[1], sizes[2], predecessorIndexEnabled, true);
+        lazyMode = false;
+        if (full.getTotalBytes() > heapBudget) {
+            MemoryFootprint lazy = MemoryFootprint.estimate(sizes[0], sizes[1], sizes[2], false, false);
+            if (!lazyFallback || lazy.getTotalBytes() > heapBudget) {
+                throw new IllegalStateException("Corpus does not fit in the heap budget of "
+                        + MemoryFootprint.megabytes(heapBudget) + " (lazy mode would need "
+                        + MemoryFootprint.megabytes(lazy.getTotalBytes()) + ")\n" + full);
+            }
+            System.out.println("Estimated " + MemoryFootprint.megabytes(full.getTotalBytes())
+                    + " is over the heap budget of " + MemoryFootprint.megabytes(heapBudget)
+                    + ", loading in lazy mode");
+            lazyMode = true;
+        }
+
+        phase = new FlightEvents.ModelLoadPhase("words");
+        HashMap<String, Word> words = DatabaseManager.loadAllWordsOptimized();
+        phase.finish(words.size());
+        BigramModel loaded;
+        if (lazyMode) {
+            // Stream the bigrams straight into the model, without the string keyed map or the predecessor index
+            phase = new FlightEvents.ModelLoadPhase("bigrams and model");
+            loaded = BigramModel.build(words, (int) sizes[2], DatabaseManager::forEachBigram, false);
+            phase.finish(loaded.successorIds.length);
+        } else {
+            phase = new FlightEvents.ModelLoadPhase("bigrams");
+            HashMap<String, Integer> bigrams = DatabaseManager.loadAllBigramsOptimized();
+            phase.finish(bigrams.size());
+            phase = new FlightEvents.ModelLoadPhase("model");
+            loaded = BigramModel.build(words, bigrams, predecessorIndexEnabled);
+            phase.finish(loaded.successorIds.length);
+        }
+        useLibrary(new Library(loaded));
+        phase = new FlightEvents.ModelLoadPhase("start words");
+        StartWordIndex.rebuild(words);
+        phase.finish(words.size());
+        LOAD_TIMER.recordSince(started);
+        System.out.println(getMemoryFootprint());
     }
 
     /**
-     * Helper function that returns all the words that have followed the given prefix
-     * across the documents
-     *
-     * @param prefix given word used to query the Words hashmap for all the possible bigram suffixes
-     * @return an array list of all words that follow the given word across the documents
+     * Loads the model from counts gathered without the database, e.g. by UpdatedPreProcessing.countFile, in place of
+     * whatever was loaded before. Used to benchmark and test the generation algorithms on the bundled books without
+     * a MySQL server; the heap budget is not checked.
+     * @param words   word -> counts
+     * @param bigrams "word1 word2" -> count
      * Written by Andersen Breyel
      */
-    public static ArrayList<String> getPossibleBigrams(String prefix) {
-        ArrayList<String> suffixList = new ArrayList<>();
-        // Loop through each key in the hash map
-        for(String key : wordsHashMap.keySet()) {
-            // Split the key into the prefix and suffix
-            String[] splitKey = key.split(" ");
-            // If the current prefix matches the given one append the current prefix to the list
-            if(splitKey[0].equals(prefix)) {
-                suffixList.add(splitKey[1]);
+    public static void loadCounts(HashMap<String, Word> words, HashMap<String, Integer> bigrams) {
+        long started = System.nanoTime();
+        lazyMode = false;
+        FlightEvents.ModelLoadPhase phase = new FlightEvents.ModelLoadPhase("model");
+        BigramModel loaded = BigramModel.build(words, bigrams, predecessorIndexEnabled);
+        phase.finish(loaded.successorIds.length);
+        useLibrary(new Library(loaded));
+        StartWordIndex.rebuild(words);
+        LOAD_TIMER.recordSince(started);
+    }
+
+    /**
+     * Replaces the library and generates from the whole of it
+     */
+    private static synchronized void useLibrary(Library loaded) {
+        library = loaded;
+        model = loaded.model;
+        selectedFiles = List.of();
+    }
+
+    /**
+     * Builds every cache the generation and suggestion algorithms otherwise build on first use, so the first
+     * requests after a load do not wait for them. Does nothing if no model is loaded.
+     * Written by Andersen Breyel
+     */
+    public static void buildCaches() {
+        BigramModel current = model;
+        if (current == null) {
+            return;
+        }
+        current.distanceToEnd();
+        current.greedyChains();
+        current.fuzzyIndex();
+        current.prefixIndex();
+    }
+
+    /**
+     * Sets the most heap the model may take. Takes effect the next time a BigramProcessor is created, which checks
+     * the estimated footprint against it before loading anything.
+     * @param bytes        heap budget in bytes
+     * @param lazyFallback whether a corpus over the budget is loaded in lazy mode, without the string keyed bigram
+     *                     map and the predecessor index, instead of failing; the load fails anyway if even lazy mode
+     *                     does not fit
+     * Written by Andersen Breyel
+     */
+    public static void setHeapBudget(long bytes, boolean lazyFallback) {
+        heapBudget = bytes;
+        BigramProcessor.lazyFallback = lazyFallback;
+    }
+
+    /**
+     * @return why the model has no predecessor index: it was disabled, or the model was loaded in lazy mode
+     */
+    private static String missingPredecessorsMessage() {
+        if (lazyMode) {
+            return "Predecessor index is not built in lazy mode. Raise the heap budget and reload the model.";
+        }
+        return "Predecessor index is disabled. Enable it before loading the model.";
+    }
+
+    /**
+     * @return true if the model was loaded in lazy mode because the full model was over the heap budget
+     * Written by Andersen Breyel
+     */
+    public static boolean isLazyMode() {
+        return lazyMode;
+    }
+
+    /**
+     * Estimates the heap used by the loaded model, the maps kept next to it and the caches built so far
+     * @return the footprint report, or null if nothing is loaded
+     * Written by Andersen Breyel
+     */
+    public static MemoryFootprint getMemoryFootprint() {
+        Library current = library;
+        if (current == null) {
+            return null;
+        }
+        return MemoryFootprint.of(current.model, false, null);
+    }
+
+    /**
+     * Restricts generation and suggestions to the given imported files, as if only they had been ingested.
+     * The merged model of a subset is built the first time it is selected and cached, so switching between recently
+     * used subsets is immediate. Scoring with the smoothed probabilities keeps using the whole library.
+     * @param fileIds file_ids of the files to use; null or empty to use the whole library again
+     * Written by Andersen Breyel
+     */
+    public static synchronized void selectFiles(Collection<Integer> fileIds) {
+        long started = System.nanoTime();
+        if (fileIds == null || fileIds.isEmpty()) {
+            Library current = library;
+            // Before the first load there is no library to go back to
+            if (current != null) {
+                model = current.model;
             }
+            selectedFiles = List.of();
+        } else {
+            FlightEvents.ModelLoadPhase phase = new FlightEvents.ModelLoadPhase("file overlay");
+            model = overlays.overlay(fileIds, predecessorIndexEnabled && !lazyMode);
+            selectedFiles = List.copyOf(new TreeSet<>(fileIds));
+            phase.finish(selectedFiles.size());
         }
-        return suffixList;
+        SELECT_FILES_TIMER.recordSince(started);
+    }
+
+    /**
+     * Adds a newly ingested file's counts to the in-memory model, so generation uses the file right away without
+     * reloading the tables; the counterpart of removeFileCounts. Does nothing if no model is loaded.
+     * @param fileId  file_id the file was stored under
+     * @param words   the file's words with their counts within the file
+     * @param bigrams "word1 word2" -> count within the file
+     * Written by Andersen Breyel
+     */
+    public static synchronized void addFileCounts(int fileId, Map<String, Word> words,
+                                                  Map<String, Integer> bigrams) {
+        Library current = library;
+        if (current == null) {
+            return;
+        }
+        long started = System.nanoTime();
+        // Readers keep using the current snapshot until the new one replaces it
+        FlightEvents.ModelLoadPhase phase = new FlightEvents.ModelLoadPhase("file addition");
+        library = new Library(current.model.plus(words, bigrams));
+        phase.finish(words.size() + bigrams.size());
+        // The file is ready to be selected without reading it back from the database
+        overlays.addFile(fileId, words, bigrams);
+        // Pick up the new library model unless generation is limited to other files
+        selectFiles(selectedFiles);
+        ADD_FILE_TIMER.recordSince(started);
     }
 
+    /**
+     * Takes an unloaded file's counts out of the in-memory model, so generation behaves as if the file had never
+     * been ingested without reloading the tables. Does nothing if no model is loaded.
+     * @param fileId  file_id of the unloaded file
+     * @param words   the file's words with their counts within the file
+     * @param bigrams "word1 word2" -> count within the file
+     * Written by Andersen Breyel
+     */
+    public static synchronized void removeFileCounts(int fileId, Map<String, Word> words,
+                                                     Map<String, Integer> bigrams) {
+        Library current = library;
+        if (current == null) {
+            return;
+        }
+        long started = System.nanoTime();
+        // Readers keep using the current snapshot until the new one replaces it
+        FlightEvents.ModelLoadPhase phase = new FlightEvents.ModelLoadPhase("file removal");
+        library = new Library(current.model.minus(words, bigrams));
+        phase.finish(words.size() + bigrams.size());
+        overlays.forget(fileId);
+        // Keep the selection without the file; selecting nothing falls back to the whole library
+        List<Integer> remaining = new ArrayList<>(selectedFiles);
+        remaining.remove(Integer.valueOf(fileId));
+        selectFiles(remaining);
+        REMOVE_FILE_TIMER.recordSince(started);
+    }
+
+    /**
+     * @return file_ids generation currently uses in ascending order, empty when it uses the whole library
+     * Written by Andersen Breyel
+     */
+    public static List<Integer> getSelectedFiles() {
+        return selectedFiles;
+    }
+
+    /**
+     * Turns the predecessor index on or off. It roughly doubles the memory used by the bigram rows and is only needed
+     * by generateSentenceBackward. Takes effect the next time a BigramProcessor is created.
+     * @param enabled whether to build the predecessor index
+     * Written by Andersen Breyel
+     */
+    public static void setPredecessorIndexEnabled(boolean enabled) {
+        predecessorIndexEnabled = enabled;
+    }
 
     /**
-     * Sorts a HashMap of words and their probabilities by probability in descending order
-     * @param unsortedMap HashMap containing words as keys and their probabilities as values
-     * @return ArrayList of words sorted by their probabilities in descending order
-     * Written by Sneha Shrinivas
+     * Returns true once the constructor has loaded the words and bigrams into memory
+     * Written by Andersen Breyel
      */
-    private static ArrayList<String> sortHashMap(HashMap<String, Double> unsortedMap) {
-        // convert HashMap entries to a List for sorting
-        List<Map.Entry<String, Double>> list = new ArrayList<>(unsortedMap.entrySet());
+    public static boolean isLoaded() {
+        return library != null;
+    }
 
-        // Sort the list based on values (probabilities) in descending order
-        Collections.sort(list, (o1, o2) -> o2.getValue().compareTo(o1.getValue()));
+    /**
+     * @return the library as it is now, for scoring many tokens against the same counts; null if nothing is loaded
+     * Written by Andersen Breyel
+     */
+    static Library currentLibrary() {
+        return library;
+    }
 
-        // Create an ArrayList to store just the words in sorted order
-        ArrayList<String> sortedList = new ArrayList<>();
-        for (Map.Entry<String, Double> entry : list) {
-            sortedList.add(entry.getKey());
+    /**
+     * Natural log of the Laplace smoothed probability that suffix follows prefix. Unlike BigramProbability this never
+     * prints and gives unseen words and bigrams a small non-zero probability, so it can be used to score held-out text.
+     * @param library Library - counts to score against, from currentLibrary
+     * @param prefix  String - first word in the bigram
+     * @param suffix  String - second word in the bigram
+     * @return        double - log((bigramCount + 1) / (prefixUnigramCount + vocabSize))
+     * Written by Andersen Breyel
+     */
+    static double smoothedLogProbability(Library library, String prefix, String suffix) {
+        BigramModel current = library.model;
+        int prefixId = current.idOf(prefix);
+        int prefixUnigramCount = 0;
+        int bigramCount = 0;
+        if (prefixId >= 0) {
+            prefixUnigramCount = current.frequency[prefixId];
+            int suffixId = current.idOf(suffix);
+            bigramCount = suffixId < 0 ? 0 : current.bigramCount(prefixId, suffixId);
         }
+        return Math.log((double) (bigramCount + 1) / (prefixUnigramCount + current.vocabSize()));
+    }
 
-        return sortedList;
+    /**
+     * Natural log of the Laplace smoothed probability that a sentence starts with the given word
+     * @param library Library - counts to score against, from currentLibrary
+     * @param word    String - first word of a sentence
+     * @return        double - log((startCount + 1) / (totalStartCount + vocabSize))
+     * Written by Andersen Breyel
+     */
+    static double smoothedLogStartProbability(Library library, String word) {
+        int wordId = library.model.idOf(word);
+        int startCount = wordId < 0 ? 0 : library.model.startCount[wordId];
+        return Math.log((double) (startCount + 1) / (library.totalStartCount + library.model.vocabSize()));
     }
 
     /**
-     * Finds the probability of the suffix following the prefix by dividing the number of times the given bigram appears
-     * by the number of times the prefix appears. If smoothing is true, laplace smoothing is applied and
-     * each bigram count is incremented by 1 and each prefix count is incremented by the number of words in the vocabulary.
-     * This is done to reduce overfitting by reducing the model's confidence in one bigram at the cost of increasing the
-     * perplexity of the prediction
-     * @param prefix    String - first word in the bigram
-     * @param suffix    String - second word in the bigram
-     * @param smoothing boolean - used to determine if laplace smoothing
-     * @return          double - probability of the given bigram appearing in the data
+     * Helper function that returns all the words that have followed the given prefix
+     * across the documents
+     *
+     * @param prefix given word used to query the Words hashmap for all the possible bigram suffixes
+     * @return an array list of all words that follow the given word across the documents, most common first
      * Written by Andersen Breyel
      */
-    private static double BigramProbability(String prefix, String suffix, boolean smoothing) {
-        double prob;
-        String bigramKey = prefix + " " + suffix;
-        // Used if laplace smoothing is being applied, number of rows in the Words table
-        int vocabSize = wordHashMap.size();
-        // If either of the words or the bigram do not appear in the database, the bigram has a 0% chance of appearing
-        // give error handling --> check if bigram exists in hasmaps, if not return 0
-        if (!wordHashMap.containsKey(prefix) || !wordHashMap.containsKey(suffix) || !wordsHashMap.containsKey(bigramKey)) {
-            System.out.println("prefix " + prefix + " in wordHashMap: " + wordHashMap.containsKey(prefix));
-            System.out.println("suffix " + suffix + " in wordHashMap: " + wordHashMap.containsKey(suffix));
-            System.out.println("prefix and suffix in wordsHashMap: " + wordsHashMap.containsKey(bigramKey));
-            return 0.0;
+    public static ArrayList<String> getPossibleBigrams(String prefix) {
+        BigramModel current = model;
+        ArrayList<String> suffixList = new ArrayList<>();
+        int prefixId = current.idOf(prefix);
+        if (prefixId < 0) {
+            return suffixList;
         }
-        // Word frequency of the prefix word in the Words table
-        int prefixUnigramCount = wordHashMap.get(prefix).getFrequency();
-        // Frequency of the bigram in the Relationships table
-        int bigramCount = wordsHashMap.get(bigramKey);
-        // If smoothing is true apply laplace smoothing
-        if (smoothing) {
-            bigramCount += 1;
-            prefixUnigramCount += vocabSize;
-            prob = (double) bigramCount / prefixUnigramCount;
-            // Otherwise calculate the probability as normal
-        } else {
-            prob = (double) bigramCount / prefixUnigramCount;
+        // The successors of the prefix are one contiguous row of the model, already sorted by count
+        for (int slot = current.successorOffsets[prefixId]; slot < current.successorOffsets[prefixId + 1]; slot++) {
+            suffixList.add(current.words[current.successorIds[slot]]);
         }
-        return prob;
+        return suffixList;
     }
 
+    /**
+     * Returns the lowercase last word of a sentence, which is the word generation continues from
+     * @param sentence String - sentence or single word
+     * @return         String - the last whitespace separated word, lowercased
+     * Written by Andersen Breyel
+     */
+    private static String lastWord(String sentence) {
+        String trimmed = sentence.trim();
+        int lastSpace = Math.max(trimmed.lastIndexOf(' '), trimmed.lastIndexOf('\t'));
+        return trimmed.substring(lastSpace + 1).toLowerCase();
+    }
 
+    /**
+     * Number of distinct words that have followed the last word of the prefix, i.e. its out-degree in the bigram graph
+     * @param prefix String - sentence or single word
+     * @return       int - number of distinct successors, 0 if the word is unknown or no model is loaded
+     * Written by Andersen Breyel
+     */
+    public static int getSuccessorCount(String prefix) {
+        BigramModel current = model;
+        if (current == null || prefix == null || prefix.isBlank()) {
+            return 0;
+        }
+        int id = current.idOf(lastWord(prefix));
+        return id < 0 ? 0 : current.successorOffsets[id + 1] - current.successorOffsets[id];
+    }
 
     /**
-     * From the prefix sentence generate a list of all possible next words and their probabilities
-     * @param prefixSentence String - Starting point for the next possible words
-     * @param smoothing      boolean - determines if laplace smoothing will be applied when calculated the bigram probability
-     * @return               ArrayList<String> - List of next possible words sorted by how likely they are to appear
+     * Finds the known words closest to a possibly misspelled word, within FuzzyIndex.MAX_DISTANCE edits
+     * @param word  String - word to look up
+     * @param limit int - max number of words to return
+     * @return      List of known words, closest first and the most frequent first among equally close words
      * Written by Andersen Breyel
      */
-    private static ArrayList<String> getNextWords(String prefixSentence, boolean smoothing) {
-        // Tokenize the sentence into an array of words by splitting it on whitespaces
-        String[] tokenizedSentence = prefixSentence.split(" ");
-        // Convert to lowercase and clean each word so they match words in the database
-        // Calculate the next words using the last word of the prefix sentence
-        String prefixWord = tokenizedSentence[tokenizedSentence.length - 1].toLowerCase();
+    public static List<String> suggestWords(String word, int limit) {
+        BigramModel current = model;
+        List<String> suggestions = new ArrayList<>();
+        if (word == null || word.isBlank() || limit < 1) {
+            return suggestions;
+        }
+        for (int id : current.fuzzyIndex().lookup(lastWord(word), FuzzyIndex.MAX_DISTANCE, limit)) {
+            suggestions.add(current.words[id]);
+        }
+        return suggestions;
+    }
 
-        // Create an array list of all the words that succeed the current word in the Relationships table
-        ArrayList<String> bigrams = getPossibleBigrams(prefixWord);
-        // List of sorted words to be returned
-        ArrayList<String> sortedList = new ArrayList<>();
-        // Hashmap of unsorted word-bigram probability pairs
-        HashMap<String, Double> unsortedList = new HashMap<>();
-        // If the list of possible words is empty print and error
-        if (bigrams.isEmpty()) {
-            System.out.println("error word no suffixes found");
-            return sortedList;
+    /**
+     * Typeahead: completes a typed prefix with known words
+     * @param prefix       String - the letters typed so far
+     * @param limit        int - max number of words to return, at most PrefixIndex.CACHE_SIZE are
+     * @param byStartCount boolean - rank by how often each word starts a sentence, leaving out words that never do,
+     *                     instead of by word frequency
+     * @return             List of known words starting with the prefix, best first
+     * Written by Andersen Breyel
+     */
+    public static List<String> getCompletions(String prefix, int limit, boolean byStartCount) {
+        BigramModel current = model;
+        List<String> completions = new ArrayList<>();
+        if (prefix == null || limit < 1) {
+            return completions;
         }
-        // For each word in the possible words list calculate its probability and put them into the hash map
-        for (String newWord : bigrams) {
-            Double newProb = BigramProbability(prefixWord, newWord, smoothing);
-            unsortedList.put(newWord, newProb);
+        for (int id : current.prefixIndex().complete(prefix.trim().toLowerCase(), limit, byStartCount)) {
+            completions.add(current.words[id]);
         }
-        // Sort the hash map based on its probabilities and return a sorted list of words
-        sortedList = sortHashMap(unsortedList);
-        return sortedList;
+        return completions;
     }
 
     /**
-     * Function to pick a random word based on probability weights
-     * @param candidates HashMap of words and their probabilities
-     * @return String representing the random word chosen
-     * Written by Andersen Breyel and edited by Rida Basit
+     * Auto-corrects a word against the vocabulary
+     * @param word String - word to correct
+     * @return     the word in lowercase if it is known, otherwise the most frequent known word one edit away,
+     *             or null if there is none
+     * Written by Andersen Breyel
      */
-    private static String pickFromProbabilitiesWeighted(HashMap<String, Double> candidates) {
-        if (candidates.isEmpty()) return "";//prevent crash if no candidates
-        //sum up all probabilities to normalize the random selection range
-        double total = candidates.values().stream().mapToDouble(Double::doubleValue).sum();
-        //generate a random number between 0 and the total probability sum
-        double rand = Math.random() * total;
-        //keep track of running total while looping
-        double cumulative = 0.0;
-
-        for (Map.Entry<String, Double> entry : candidates.entrySet()) {
-            //add this word’s probability to the running total
-            cumulative += entry.getValue();
-            //when threshold is reached, use that word
-            if (rand <= cumulative) {
-                return entry.getKey();
-            }
+    public static String correctWord(String word) {
+        BigramModel current = model;
+        if (word == null || word.isBlank()) {
+            return null;
+        }
+        String cleaned = lastWord(word);
+        if (current.idOf(cleaned) >= 0) {
+            return cleaned;
         }
-        // fallback (shouldn't happen)
-        return candidates.keySet().iterator().next();
+        int[] closest = current.fuzzyIndex().lookup(cleaned, 1, 1);
+        return closest.length == 0 ? null : current.words[closest[0]];
+    }
+
+    /**
+     * From the prefix sentence generate a list of all possible next words sorted by probability.
+     * Bigram probabilities for a given prefix only differ in their bigram counts, with or without laplace smoothing,
+     * so the successors in the model are already in probability order.
+     * @param prefixSentence String - Starting point for the next possible words
+     * @param smoothing      boolean - determines if laplace smoothing will be applied when calculated the bigram probability
+     * @return               ArrayList<String> - List of next possible words sorted by how likely they are to appear
+     * Written by Andersen Breyel
+     */
+    private static ArrayList<String> getNextWords(String prefixSentence, boolean smoothing) {
+        // Calculate the next words using the last word of the prefix sentence
+        return getPossibleBigrams(lastWord(prefixSentence));
     }
 
     /**
@@ -192,21 +486,8 @@ public class BigramProcessor {
         if (prefixSentence == null || prefixSentence.isBlank()) {
             return new ArrayList<>();
         }
-        // Take the last word of the sentence
-        String[] tokens = prefixSentence.split(" ");
-        String prefixWord = tokens[tokens.length - 1].toLowerCase();
-        // Ask the hashmap once for all next-word probabilities for this prefix
-        HashMap<String, Double> nextProbs = getBigramProbabilities(prefixWord, smoothing);
-        if (nextProbs.isEmpty()) {
-            return new ArrayList<>();
-        }
-        // Sort by probability descending and return just the words
-        ArrayList<String> sorted = sortHashMap(nextProbs);
-        // (Optional tiny optimization: only keep top N, e.g. 50)
-        // if (sorted.size() > 50) {
-        //     return new ArrayList<>(sorted.subList(0, 50));
-        // }
-        return sorted;
+        // Successors of the last word, most probable first
+        return getNextWords(prefixSentence, smoothing);
     }
 
     /**
@@ -215,46 +496,82 @@ public class BigramProcessor {
      * Written by Rida Basit
      */
     public static HashMap<String, Double> getBigramProbabilities(String prefixWord, boolean smoothing) {
+        BigramModel current = model;
         // create an empty list to store each next word and its probability
         HashMap<String, Double> probs = new HashMap<>();
 
-        // Check if prefix word exists in HashMap
-        if (!wordHashMap.containsKey(prefixWord)) {
+        // Check if prefix word exists in the model
+        int prefixId = current.idOf(prefixWord);
+        if (prefixId < 0) {
             return probs; // Return empty map if word not found
         }
 
-        // Get all bigrams that start with prefixWord from HashMap
-        ArrayList<String> nextWords = new ArrayList<>();
-        for (String bigramKey : wordsHashMap.keySet()) {
-            String[] parts = bigramKey.split(" ");
-            if (parts.length == 2 && parts[0].equals(prefixWord)) {
-                nextWords.add(parts[1]);
-            }
+        for (int slot = current.successorOffsets[prefixId]; slot < current.successorOffsets[prefixId + 1]; slot++) {
+            // store the next word and its (optionally smoothed) probability
+            probs.put(current.words[current.successorIds[slot]], Math.exp(current.logProbability(prefixId, slot, smoothing)));
         }
+        return probs;
+    } // added
 
-        // count how many unique words are in the whole HashMap
-        int vocabSize = wordHashMap.size();
-        // get how many times the prefix word appears in total from HashMap
-        int prefixUnigramCount = wordHashMap.get(prefixWord).getFrequency();
-
-        for (String next : nextWords) {
-            // how many times the two words appear together in that order from HashMap
-            String bigramKey = prefixWord + " " + next;
-            int bigramCount = wordsHashMap.getOrDefault(bigramKey, 0);
-
-            double prob; //store
-            // check if smoothing should be applied
-            if (smoothing) {
-                prob = (double) (bigramCount + 1) / (prefixUnigramCount + vocabSize);
-            } else {
-                //no smoothing, divide the bigram count by the prefix word count
-                prob = prefixUnigramCount > 0 ? (double) bigramCount / prefixUnigramCount : 0.0;
+    /**
+     * Generation loop shared by every algorithm. Works only on word ids: each chosen word id is written to out and
+     * nothing is allocated or printed per word. Stops after n words, when the current word has no successors, or
+     * after a word that ends a sentence in the corpus.
+     * @param current   model to generate from
+     * @param startId   id of the word to continue from
+     * @param sampler   picks the successor used at each step
+     * @param n         max number of words to be generated, out must hold at least n ids
+     * @param smoothing whether laplace smoothing is applied
+     * @param rng       source of randomness for the random samplers
+     * @param out       receives the generated word ids
+     * @return          number of word ids written to out
+     * Written by Andersen Breyel
+     */
+    private static int generateIds(BigramModel current, int startId, Sampler sampler, int n, boolean smoothing,
+                                   RandomGenerator rng, int[] out) {
+        int currentId = startId;
+        int length = 0;
+        while (length < n) {
+            int from = current.successorOffsets[currentId];
+            int to = current.successorOffsets[currentId + 1];
+            // No next words found — stop generation
+            if (from == to) {
+                break;
             }
-            // store the next word and its calculated probability
-            probs.put(next, prob);
+            int slot = current.pick(sampler, false, from, to, smoothing, rng);
+            int nextId = current.successorIds[slot];
+            out[length++] = nextId;
+            // If the newly appended word ever ends a sentence in the corpus finish the current sentence
+            if (current.isEndWord(nextId)) {
+                break;
+            }
+            // Update the current word to be the newly appended word
+            currentId = nextId;
         }
-        return probs;
-    } // added
+        return length;
+    }
+
+    /**
+     * Builds the output sentence from the prefix and the generated word ids in a single presized buffer
+     * @param current        model the ids belong to
+     * @param prefixSentence String - Starting point for the generated sentence
+     * @param ids            generated word ids
+     * @param length         number of ids to use
+     * @return               String - prefix followed by the generated words, separated by spaces
+     * Written by Andersen Breyel
+     */
+    private static String render(BigramModel current, String prefixSentence, int[] ids, int length) {
+        int size = prefixSentence.length();
+        for (int i = 0; i < length; i++) {
+            size += 1 + current.words[ids[i]].length();
+        }
+        StringBuilder sentence = new StringBuilder(size);
+        sentence.append(prefixSentence);
+        for (int i = 0; i < length; i++) {
+            sentence.append(' ').append(current.words[ids[i]]);
+        }
+        return sentence.toString();
+    }
 
     /**
      * Uses bigram probabilities to generate the next n words of a given prefix sentence or until the eos token is generated
@@ -265,194 +582,482 @@ public class BigramProcessor {
      * Written by Andersen Breyel and edited by Rida Basit
      */
     public static String generateSentenceWeighted(String prefixSentence, int n, boolean smoothing) {
-        // Tokenize the sentence into an array of words by splitting it on whitespaces
-        String[] tokenizedSentence = prefixSentence.toLowerCase().split(" ");
-        // Start from the last word of the prefix sentence
-        String currentWord = tokenizedSentence[tokenizedSentence.length - 1];
-        System.out.println("this is " + currentWord);
-        String generatedSentence = prefixSentence + " ";
-
-        // Generate a maximum of n words
-        //add up to n words to the sentence.
-        for (int i = 0; i < n; i++) {
-            System.out.println("entered loop");
-            //current word exists in the database.
-            if (!wordHashMap.containsKey(currentWord)) {
-                System.out.println("error word not found");
-                break;
-            }
-            //possible words that can come after this one, and how likely is each
-            HashMap<String, Double> nextProbs = getBigramProbabilities(currentWord, smoothing);
-            if (nextProbs.isEmpty()) {
-                System.out.println("No next words found — stopping generation.");
-                break;
-            }
-            String nextWord = pickFromProbabilitiesWeighted(nextProbs);
+        return generateSentenceWeighted(prefixSentence, n, smoothing, ThreadLocalRandom.current());
+    }
 
-            // Append the new word to the generated sentence
-            generatedSentence = generatedSentence + nextWord + " ";
-            System.out.println(generatedSentence);
+    /**
+     * Same as generateSentenceWeighted(prefixSentence, n, smoothing) but draws from the given random generator,
+     * so a seeded generator always produces the same sentence
+     * @param rng source of randomness
+     * Written by Andersen Breyel
+     */
+    public static String generateSentenceWeighted(String prefixSentence, int n, boolean smoothing, RandomGenerator rng) {
+        return generateSentence(prefixSentence, GenerationAlgorithm.WEIGHTED, n, smoothing, rng);
+    }
 
-            // If the newly appended word ever ends a sentence in the corpus finish the current sentence
-            if (wordHashMap.get(nextWord).getEndWordCount() > 0) {
-                break;
-            }
-            // Update the current word to be the newly appended word
-            currentWord = nextWord;
+    /**
+     * Uses bigram probabilities to generate the next n words of a given prefix sentence or until the eos token is generated,
+     * picking each word at random from the three most probable next words
+     * @param prefixSentence String - Starting point for the generated sentence
+     * @param n              int - max number of words to be generated
+     * @param smoothing      boolean - determines if laplace smoothing will be applied when calculated the bigram probability
+     * @return               String - the sentence generated by the model based on the prefix sentence
+     * Written by Andersen Breyel
+     */
+    public static String generateSentenceThreeRandom(String prefixSentence, int n, boolean smoothing) {
+        return generateSentenceThreeRandom(prefixSentence, n, smoothing, ThreadLocalRandom.current());
+    }
+
+    /**
+     * Same as generateSentenceThreeRandom(prefixSentence, n, smoothing) but draws from the given random generator,
+     * so a seeded generator always produces the same sentence
+     * @param rng source of randomness
+     * Written by Andersen Breyel
+     */
+    public static String generateSentenceThreeRandom(String prefixSentence, int n, boolean smoothing,
+                                                     RandomGenerator rng) {
+        return generateSentence(prefixSentence, GenerationAlgorithm.THREE_RANDOM, n, smoothing, rng);
+    }
+
+    /**
+     * Uses bigram probabilities to generate the next n words of a given prefix sentence or until the eos token is generated,
+     * always picking the most probable next word. The most probable word never depends on smoothing, so the chain
+     * from each word is precomputed once and a call is a cached lookup. If the chain would repeat a word, the
+     * sentence stops right before it; use topOneLoops to tell that apart from a finished sentence.
+     * @param prefixSentence String - Starting point for the generated sentence
+     * @param n              int - max number of words to be generated
+     * @param smoothing      boolean - determines if laplace smoothing will be applied when calculated the bigram probability
+     * @return               String - the sentence generated by the model based on the prefix sentence
+     * Written by Andersen Breyel
+     */
+    public static String generateSentenceTopOne(String prefixSentence, int n, boolean smoothing) {
+        BigramModel current = model;
+        String prefix = prefixSentence.trim();
+        int startId = current.idOf(lastWord(prefix));
+        if (startId < 0 || n <= 0) {
+            return prefix;
         }
-        return generatedSentence.trim();
+        return prefix + current.greedyChains().continuation(startId, n);
     }
 
     /**
-     * Function to pick a random word from an array of 3
-     * @param possibleWords Array of Strings representing the 3 most likely next words
-     * @return              String representing the random word chosen
+     * Checks whether TopOne generation from the prefix sentence gets stuck in a loop, i.e. it would repeat a word
+     * before reaching an end-of-sentence word within n words
+     * @param prefixSentence String - Starting point for the generated sentence
+     * @param n              int - max number of words to be generated
+     * @return               true if the TopOne sentence was cut short by a loop
      * Written by Andersen Breyel
      */
-    private static String pickFromThree(String[] possibleWords) {
-        // Generate random number from 0-2 inclusive
-        int randomNum = (int)(Math.random() * 3);
-        return possibleWords[randomNum];
+    public static boolean topOneLoops(String prefixSentence, int n) {
+        BigramModel current = model;
+        int startId = current.idOf(lastWord(prefixSentence));
+        return startId >= 0 && current.greedyChains().loops(startId, n);
     }
 
     /**
-     * Uses bigram probabilities to generate the next n words of a given prefix sentence or until the eos token is generated
+     * Generates a sentence with the given algorithm. If the last word of the prefix is not in the database
+     * the prefix is returned unchanged.
      * @param prefixSentence String - Starting point for the generated sentence
+     * @param algorithm      GenerationAlgorithm - how each next word is picked
      * @param n              int - max number of words to be generated
      * @param smoothing      boolean - determines if laplace smoothing will be applied when calculated the bigram probability
+     * @param rng            source of randomness for the random algorithms
      * @return               String - the sentence generated by the model based on the prefix sentence
      * Written by Andersen Breyel
      */
-    public static String generateSentenceThreeRandom(String prefixSentence, int n, boolean smoothing) {
-        // Tokenize the sentence into an array of words by splitting it on whitespaces
-        String[] tokenizedSentence = prefixSentence.toLowerCase().split(" ");
+    public static String generateSentence(String prefixSentence, GenerationAlgorithm algorithm, int n,
+                                          boolean smoothing, RandomGenerator rng) {
+        if (algorithm == GenerationAlgorithm.TOP_ONE) {
+            return generateSentenceTopOne(prefixSentence, n, smoothing);
+        }
+        return generateSentence(prefixSentence, algorithm.getSampler(), n, smoothing, rng);
+    }
+
+    /**
+     * Generates a sentence with the given sampler, for samplers with settings other than the GenerationAlgorithm
+     * defaults (for example Sampler.topK(5) or Sampler.temperature(1.5)).
+     * @param prefixSentence String - Starting point for the generated sentence
+     * @param sampler        Sampler - picks each next word
+     * @param n              int - max number of words to be generated
+     * @param smoothing      boolean - determines if laplace smoothing will be applied when calculated the bigram probability
+     * @param rng            source of randomness for the random samplers
+     * @return               String - the sentence generated by the model based on the prefix sentence
+     * Written by Andersen Breyel
+     */
+    public static String generateSentence(String prefixSentence, Sampler sampler, int n,
+                                          boolean smoothing, RandomGenerator rng) {
+        BigramModel current = model;
+        String prefix = prefixSentence.trim();
         // Start from the last word of the prefix sentence
-        String currentWord = tokenizedSentence[(tokenizedSentence.length - 1)];
-        System.out.println("this is " + currentWord);
-        String generatedSentence =  prefixSentence + " ";
-        // Generate a maximum of n words
-        for (int i = 0; i < n; i++) {
-            // Don't know what the next word will be
-            String nextWord = "";
-            // If the word is not in the database print an error and exit
-            if (!wordHashMap.containsKey(currentWord)) {
-                System.out.println("error word not found");
-                break;
-            } else {
-                // Get the candidates for the next possible word
-                ArrayList<String> nextPossibleWords = getNextWords(currentWord, smoothing);
-
-                // Store the 3 highest candidates in an array to pick one at random
-                String firstHighestWord = "";
-                String secondHighestWord = "";
-                String thirdHighestWord = "";
-                double firstHighestProb = -1.0;
-                double secondHighestProb = -1.0;
-                double thirdHighestProb = -1.0;
-                double currentProb = 0.0;
-                for (int j = 0; j < nextPossibleWords.size(); j++) {
-                    currentProb =  BigramProbability(currentWord, nextPossibleWords.get(j), smoothing);
-                    // If the current probability is higher than the current highest probability shift
-                    // second to third then first to second before replacing first with the new values
-                    if (currentProb > firstHighestProb) {
-                        thirdHighestWord = secondHighestWord;
-                        thirdHighestProb = secondHighestProb;
-                        secondHighestWord = firstHighestWord;
-                        secondHighestProb = firstHighestProb;
-                        firstHighestWord = nextPossibleWords.get(j);
-                        firstHighestProb = currentProb;
-                        // If the new probability is only higher than the second highest probability shift second to third
-                        // and replace the second probability
-                    } else if(currentProb > secondHighestProb) {
-                        thirdHighestWord = secondHighestWord;
-                        thirdHighestProb =  secondHighestProb;
-                        secondHighestWord = nextPossibleWords.get(j);
-                        secondHighestProb = currentProb;
-                        // If the new probability is only higher than the third probability
-                    } else if (currentProb > thirdHighestProb) {
-                        thirdHighestWord = nextPossibleWords.get(j);
-                        thirdHighestProb = currentProb;
-                    }
+        int startId = current.idOf(lastWord(prefix));
+        if (startId < 0 || n <= 0) {
+            return prefix;
+        }
+        int[] ids = new int[n];
+        int length = generateIds(current, startId, sampler, n, smoothing, rng, ids);
+        return render(current, prefix, ids, length);
+    }
+
+    /**
+     * Generates a sentence that is guaranteed to end in an end-of-sentence word within maxWords words, optionally
+     * containing a required word and avoiding a set of excluded words. Returns null if no such sentence exists.
+     *
+     * Feasibility comes from shortest-distance tables over the bigram graph: how many more words each word needs
+     * to reach an end word, and (when a word is required) how many it needs to reach the required word. A candidate
+     * next word is allowed only if what it still needs fits in the remaining word budget, which is a constant-time
+     * check, so generation never paints itself into a corner and never has to backtrack. Without exclusions the
+     * distance-to-end table is computed once per model and cached; exclusions and required words get tables
+     * computed for the request, with the search depth capped at maxWords.
+     *
+     * The sampler is asked for a word as usual and asked again if its pick is not allowed, which keeps its
+     * distribution over the allowed words. If it keeps picking disallowed words the most probable allowed one is used.
+     * @param prefixSentence String - Starting point for the generated sentence
+     * @param sampler        Sampler - picks each next word
+     * @param maxWords       int - the sentence must end within this many generated words
+     * @param requiredWord   String - word that must appear in the sentence, or null for none
+     * @param excludedWords  words that may not be generated, or null for none
+     * @param smoothing      boolean - determines if laplace smoothing will be applied when calculated the bigram probability
+     * @param rng            source of randomness for the random samplers
+     * @return               String - the generated sentence, or null if the constraints can't be met
+     * Written by Andersen Breyel
+     */
+    public static String generateSentenceConstrained(String prefixSentence, Sampler sampler, int maxWords,
+                                                     String requiredWord, Collection<String> excludedWords,
+                                                     boolean smoothing, RandomGenerator rng) {
+        BigramModel current = model;
+        String prefix = prefixSentence.trim();
+        int startId = current.idOf(lastWord(prefix));
+        if (startId < 0 || maxWords <= 0) {
+            return null;
+        }
+
+        // Mark the excluded words
+        boolean[] excluded = null;
+        if (excludedWords != null && !excludedWords.isEmpty()) {
+            excluded = new boolean[current.vocabSize()];
+            for (String word : excludedWords) {
+                int id = word == null ? -1 : current.idOf(word.trim().toLowerCase());
+                if (id >= 0) excluded[id] = true;
+            }
+        }
+
+        // Distance from every word to the end of a sentence, avoiding excluded words
+        int[] toEnd = excluded == null ? current.distanceToEnd() : current.distancesTo(current.endWords(), excluded, maxWords);
+
+        // Distance from every word to the required word, unless the prefix already contains it
+        int requiredId = -1;
+        int[] toRequired = null;
+        if (requiredWord != null && !requiredWord.isBlank()) {
+            String required = requiredWord.trim().toLowerCase();
+            if (!Arrays.asList(prefix.toLowerCase().split("\\s+")).contains(required)) {
+                requiredId = current.idOf(required);
+                if (requiredId < 0 || (excluded != null && excluded[requiredId])
+                        || toEnd[requiredId] == BigramModel.UNREACHABLE) {
+                    return null;
                 }
-                // Store the 3 highest candidates in an array to pick one at random
-                String[] topThree = {firstHighestWord, secondHighestWord, thirdHighestWord};
-                nextWord = pickFromThree(topThree);
-                // Append the new word to the generated sentence
-                generatedSentence = generatedSentence + nextWord + " ";
-                System.out.println(generatedSentence);
-                // If the word ends a sentence in the corpus at least once finish the sentence
-                //Word wordObject = wordHashMap.get(nextWord);
-                //if (wordObject != null && wordObject.getEndWordCount() > 0) {     break; }
-
-                if (wordHashMap.get(nextWord).getEndWordCount() > 0) {
+                boolean[] target = new boolean[current.vocabSize()];
+                target[requiredId] = true;
+                toRequired = current.distancesTo(target, excluded, maxWords);
+            }
+        }
+
+        int[] ids = new int[maxWords];
+        int length = 0;
+        int currentId = startId;
+        boolean requiredDone = requiredId < 0;
+        while (true) {
+            int from = current.successorOffsets[currentId];
+            int to = current.successorOffsets[currentId + 1];
+            // Words still needed after the next one must fit in what is left of the budget
+            int budget = maxWords - length - 1;
+
+            int slot = -1;
+            for (int attempt = 0; attempt < 16 && from < to; attempt++) {
+                int candidate = current.pick(sampler, false, from, to, smoothing, rng);
+                if (isAllowed(current.successorIds[candidate], budget, excluded, toEnd, requiredDone, requiredId, toRequired)) {
+                    slot = candidate;
                     break;
                 }
-                // Update the current word to be the newly appended word
-                currentWord = nextWord;
             }
+            if (slot < 0) {
+                // Fall back to the most probable allowed word
+                for (int candidate = from; candidate < to; candidate++) {
+                    if (isAllowed(current.successorIds[candidate], budget, excluded, toEnd, requiredDone, requiredId, toRequired)) {
+                        slot = candidate;
+                        break;
+                    }
+                }
+            }
+            // Only possible on the first word: nothing reachable from the prefix satisfies the constraints
+            if (slot < 0) {
+                return null;
+            }
+
+            int nextId = current.successorIds[slot];
+            ids[length++] = nextId;
+            if (nextId == requiredId) {
+                requiredDone = true;
+            }
+            if (current.isEndWord(nextId)) {
+                break;
+            }
+            currentId = nextId;
         }
-        return generatedSentence;
+        return render(current, prefix, ids, length);
     }
 
     /**
-     * Uses bigram probabilities to generate the next n words of a given prefix sentence or until the eos token is generated
-     * @param prefixSentence String - Starting point for the generated sentence
-     * @param n              int - max number of words to be generated
-     * @param smoothing      boolean - determines if laplace smoothing will be applied when calculated the bigram probability
-     * @return               String - the sentence generated by the model based on the prefix sentence
+     * Checks whether generating the given word still leaves a way to satisfy the constraints
+     * @param wordId       candidate next word
+     * @param budget       words that may still be generated after the candidate
+     * @param excluded     excluded words indexed by id, or null for none
+     * @param toEnd        distance from each word to an end word
+     * @param requiredDone true if the required word has already appeared or there is none
+     * @param requiredId   id of the required word, or -1 for none
+     * @param toRequired   distance from each word to the required word, or null if requiredDone
+     * @return             true if the candidate can be generated
      * Written by Andersen Breyel
      */
-    public static String generateSentenceTopOne(String prefixSentence, int n, boolean smoothing) {
-        // Tokenize the sentence into an array of words by splitting it on whitespaces
-        String[] tokenizedSentence = prefixSentence.toLowerCase().split(" ");
+    private static boolean isAllowed(int wordId, int budget, boolean[] excluded, int[] toEnd, boolean requiredDone,
+                                     int requiredId, int[] toRequired) {
+        if (excluded != null && excluded[wordId]) {
+            return false;
+        }
+        if (requiredDone || wordId == requiredId) {
+            return toEnd[wordId] <= budget;
+        }
+        // Reach the required word first, then the end of the sentence from there
+        int needed = toRequired[wordId];
+        return needed != BigramModel.UNREACHABLE && (long) needed + toEnd[requiredId] <= budget;
+    }
 
-        // Start from the last word of the prefix sentence
-        String currentWord = tokenizedSentence[(tokenizedSentence.length - 1)];
-        String generatedSentence =  prefixSentence + " ";
-        // Generate a maximum of n words
-        for (int i = 0; i < n; i++) {
-            // Don't know what the next word will be
-            String nextWord = "";
-            // Initialize the highest prob for each word as negative so it will be replaced immediately
-            double highestProb = -1.0;
-            // Don't know the next word's probability yet
-            double newProb = 0.0;
-            // If the word is not in the database print an error and exit
-            if (!wordHashMap.containsKey(currentWord)) {
-                System.out.println("error word not found");
+    /**
+     * Generates a sentence backwards so that it ends in the chosen word. Starting from that word, each step picks a
+     * word that has come right before the current one in the corpus, using the sampler on the predecessor rows.
+     * After each word the sentence stops with the probability that the word starts a sentence
+     * (starting_word_occurences / word_frequency), so sentences tend to open with words that usually open sentences.
+     * If the word budget runs out first, the last word is picked by how often each candidate starts a sentence.
+     * @param finalWord String - word the sentence must end with
+     * @param sampler   Sampler - picks each previous word
+     * @param maxWords  int - max number of words to be generated before the final word
+     * @param smoothing boolean - determines if laplace smoothing will be applied when calculated the bigram probability
+     * @param rng       source of randomness
+     * @return          String - the generated sentence, or null if the final word is not in the database
+     * Written by Andersen Breyel
+     */
+    public static String generateSentenceBackward(String finalWord, Sampler sampler, int maxWords, boolean smoothing,
+                                                  RandomGenerator rng) {
+        BigramModel current = model;
+        if (!current.hasPredecessors()) {
+            throw new IllegalStateException(missingPredecessorsMessage());
+        }
+        if (finalWord == null || finalWord.isBlank() || maxWords < 0) {
+            return null;
+        }
+        int endId = current.idOf(lastWord(finalWord));
+        if (endId < 0) {
+            return null;
+        }
+
+        // ids[0] is the final word, ids[i] is the word i places before it
+        int[] ids = new int[maxWords + 1];
+        ids[0] = endId;
+        int length = 1;
+        int currentId = endId;
+        while (length <= maxWords) {
+            int from = current.predecessorOffsets[currentId];
+            int to = current.predecessorOffsets[currentId + 1];
+            // Nothing ever comes before this word, so it has to start the sentence
+            if (from == to) {
                 break;
-            } else {
-                // Create an array list of all the words that succeed the current word in the Relationships table
-                ArrayList<String> bigrams = getPossibleBigrams(currentWord);
-                // If the list is empty print an error and exit
-                if (bigrams.isEmpty()) {
-                    System.out.println("no bigrams found");
-                    return generatedSentence;
-                } else {
-                    // Otherwise for each word in the list compute its probability and compare to the old word
-                    for (int j = 0; j < bigrams.size(); j++) {
-                        // Get the next word
-                        String potentialWord = bigrams.get(j);
-                        // Compute the new word's probability
-                        newProb = BigramProbability(currentWord, potentialWord, smoothing);
-                        // If the new word has a higher probability update the highest probability and candidate next word
-                        if (newProb > highestProb) {
-                            highestProb = newProb;
-                            nextWord = potentialWord;
-                        }
-                    }
-                    // Append the new word to the generated sentence
-                    generatedSentence = generatedSentence + nextWord + " ";
-                    // If the newly appended word is the eos token break out of the loop
-                    if (wordHashMap.get(nextWord).getEndWordCount() > 0) {
+            }
+            int slot = length == maxWords
+                    ? pickLikeliestStart(current, from, to, rng)
+                    : current.pick(sampler, true, from, to, smoothing, rng);
+            int previousId = current.predecessorIds[slot];
+            ids[length++] = previousId;
+            // Stop here with the probability that this word starts a sentence
+            if (rng.nextDouble() * current.frequency[previousId] < current.startCount[previousId]) {
+                break;
+            }
+            currentId = previousId;
+        }
+
+        // Render from the first word to the final word, capitalizing the first letter
+        int size = 0;
+        for (int i = 0; i < length; i++) {
+            size += current.words[ids[i]].length() + 1;
+        }
+        StringBuilder sentence = new StringBuilder(size);
+        for (int i = length - 1; i >= 0; i--) {
+            if (sentence.length() > 0) sentence.append(' ');
+            sentence.append(current.words[ids[i]]);
+        }
+        sentence.setCharAt(0, Character.toUpperCase(sentence.charAt(0)));
+        return sentence.toString();
+    }
+
+    /**
+     * Picks a predecessor at random weighted by how often it starts a sentence, or the most common predecessor if
+     * none of them ever start one
+     * @param current model the row belongs to
+     * @param from    first slot of the predecessor row
+     * @param to      one past the last slot of the row
+     * @param rng     source of randomness
+     * @return        the chosen slot
+     * Written by Andersen Breyel
+     */
+    private static int pickLikeliestStart(BigramModel current, int from, int to, RandomGenerator rng) {
+        long total = 0;
+        for (int slot = from; slot < to; slot++) {
+            total += current.startCount[current.predecessorIds[slot]];
+        }
+        if (total == 0) {
+            return from;
+        }
+        double rand = rng.nextDouble() * total;
+        long cumulative = 0;
+        for (int slot = from; slot < to; slot++) {
+            cumulative += current.startCount[current.predecessorIds[slot]];
+            if (rand < cumulative) {
+                return slot;
+            }
+        }
+        return to - 1;
+    }
+
+    /**
+     * Beam search over the bigram graph. Starting from the last word of the prefix sentence, keeps the beamWidth most
+     * probable partial sentences at each step and collects every extension that ends in an end-of-sentence word.
+     * Hypotheses are stored as word ids with parent pointers and candidates are ranked in primitive top-K heaps,
+     * so sentences are only turned into strings once the search is over. Because each word's successors are sorted
+     * by count, the scan of a successor list stops as soon as no remaining successor could enter either heap, which
+     * bounds the work by beamWidth * maxLength * average out-degree.
+     * @param prefixSentence String - Starting point for the generated sentences
+     * @param beamWidth      int - number of partial sentences kept at each step
+     * @param maxLength      int - max number of words to be generated
+     * @param count          int - number of sentences to return
+     * @param smoothing      boolean - determines if laplace smoothing will be applied when calculated the bigram probability
+     * @return               List of up to count sentences ending in an end-of-sentence word, most probable first
+     * Written by Andersen Breyel
+     */
+    public static List<String> generateSentencesBeam(String prefixSentence, int beamWidth, int maxLength, int count,
+                                                     boolean smoothing) {
+        BigramModel current = model;
+        List<String> sentences = new ArrayList<>();
+        if (prefixSentence == null || prefixSentence.isBlank() || beamWidth < 1 || maxLength < 1 || count < 1) {
+            return sentences;
+        }
+        int startId = current.idOf(lastWord(prefixSentence));
+        if (startId < 0) {
+            return sentences;
+        }
+
+        // Hypothesis h is the word hypWord[h] following hypothesis hypParent[h]; hypothesis 0 is the prefix word
+        int[] hypWord = new int[1 + beamWidth * maxLength];
+        int[] hypParent = new int[hypWord.length];
+        double[] hypScore = new double[hypWord.length];
+        hypWord[0] = startId;
+        hypParent[0] = -1;
+        int beamStart = 0;
+        int beamEnd = 1;
+
+        // Candidates are packed as (parent hypothesis << 32 | word id)
+        TopKHeap nextBeam = new TopKHeap(beamWidth);
+        TopKHeap finished = new TopKHeap(count);
+        double[] drainedScores = new double[beamWidth];
+        long[] drainedPayloads = new long[beamWidth];
+
+        for (int step = 0; step < maxLength && beamStart < beamEnd; step++) {
+            nextBeam.clear();
+            for (int h = beamStart; h < beamEnd; h++) {
+                int word = hypWord[h];
+                double base = hypScore[h];
+                for (int slot = current.successorOffsets[word]; slot < current.successorOffsets[word + 1]; slot++) {
+                    double score = base + current.logProbability(word, slot, smoothing);
+                    // Successors are sorted by count, so once neither heap would take this one none of the rest will
+                    if (nextBeam.isFull() && score <= nextBeam.minScore()
+                            && finished.isFull() && score <= finished.minScore()) {
                         break;
                     }
-                    // Update the current word to be the newly appended word
-                    currentWord = nextWord;
+                    int nextWord = current.successorIds[slot];
+                    long payload = ((long) h << 32) | nextWord;
+                    if (current.isEndWord(nextWord)) {
+                        finished.offer(score, payload);
+                    } else {
+                        nextBeam.offer(score, payload);
+                    }
                 }
             }
+
+            // The surviving candidates become the next beam
+            int survivors = nextBeam.drainDescending(drainedScores, drainedPayloads);
+            beamStart = beamEnd;
+            for (int i = 0; i < survivors; i++) {
+                hypWord[beamEnd] = (int) drainedPayloads[i];
+                hypParent[beamEnd] = (int) (drainedPayloads[i] >>> 32);
+                hypScore[beamEnd] = drainedScores[i];
+                beamEnd++;
+            }
+            // Extending a sentence only lowers its score, so stop once the best live one can't beat the finished ones
+            if (survivors == 0 || (finished.isFull() && drainedScores[0] <= finished.minScore())) {
+                break;
+            }
+        }
+
+        // Render each finished sentence by walking its parent pointers back to the prefix
+        double[] finishedScores = new double[finished.size()];
+        long[] finishedPayloads = new long[finished.size()];
+        int finishedCount = finished.drainDescending(finishedScores, finishedPayloads);
+        int[] path = new int[maxLength + 1];
+        for (int i = 0; i < finishedCount; i++) {
+            int length = 0;
+            path[length++] = (int) finishedPayloads[i];
+            for (int h = (int) (finishedPayloads[i] >>> 32); h > 0; h = hypParent[h]) {
+                path[length++] = hypWord[h];
+            }
+            StringBuilder sentence = new StringBuilder(prefixSentence.trim());
+            for (int j = length - 1; j >= 0; j--) {
+                sentence.append(' ').append(current.words[path[j]]);
+            }
+            sentences.add(sentence.toString());
+        }
+        return sentences;
+    }
+
+    /**
+     * Finds the most probable sentences that start with one word and end with another, for "start with X, end with Y"
+     * requests. See PathSearch for how the search meets in the middle.
+     * @param startWord String - first word of the sentences (the last word is used if several are given)
+     * @param endWord   String - last word of the sentences
+     * @param maxWords  int - max number of words in a sentence, both given words included
+     * @param count     int - number of sentences to return
+     * @param smoothing boolean - determines if laplace smoothing will be applied when calculated the bigram probability
+     * @return          List of up to count sentences, most probable first; empty if either word is unknown
+     * Written by Andersen Breyel
+     */
+    public static List<String> generateSentencesBetween(String startWord, String endWord, int maxWords, int count,
+                                                        boolean smoothing) {
+        BigramModel current = model;
+        if (!current.hasPredecessors()) {
+            throw new IllegalStateException(missingPredecessorsMessage());
+        }
+        List<String> sentences = new ArrayList<>();
+        if (startWord == null || startWord.isBlank() || endWord == null || endWord.isBlank() || maxWords < 2
+                || count < 1) {
+            return sentences;
+        }
+        int startId = current.idOf(lastWord(startWord));
+        int endId = current.idOf(lastWord(endWord));
+        if (startId < 0 || endId < 0) {
+            return sentences;
+        }
+        for (int[] path : PathSearch.find(current, startId, endId, maxWords, count, PathSearch.DEFAULT_BEAM_WIDTH,
+                smoothing)) {
+            String sentence = render(current, current.words[path[0]], Arrays.copyOfRange(path, 1, path.length), path.length - 1);
+            sentences.add(Character.toUpperCase(sentence.charAt(0)) + sentence.substring(1));
         }
-        return generatedSentence;
+        return sentences;
     }
 
     /**
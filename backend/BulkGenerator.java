@@ -0,0 +1,107 @@
+package backend;
+/**
+ * Bulk versions of sentence generation and next-word suggestion for offline jobs that need results for
+ * thousands of prefixes at once. Work is split across cores on the common fork/join pool through parallel streams
+ * and results come back as an ordered stream, so callers can consume them as they are produced.
+ *
+ * Every generated sentence gets its own random generator seeded from the bulk seed and the sentence's position
+ * in the request, so the same request with the same seed always gives the same sentences regardless of how the
+ * work was scheduled across threads.
+ *
+ * Written by Andersen Breyel
+ **/
+
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+public class BulkGenerator {
+    // Spreads consecutive task indexes far apart before they are mixed into a seed
+    private static final long SEED_STRIDE = 0x9E3779B97F4A7C15L;
+
+    /**
+     * One sentence generated for one prefix
+     * Written by Andersen Breyel
+     */
+    public static final class GeneratedSentence {
+        private final String prefix;
+        private final int sample;
+        private final String sentence;
+
+        GeneratedSentence(String prefix, int sample, String sentence) {
+            this.prefix = prefix;
+            this.sample = sample;
+            this.sentence = sentence;
+        }
+
+        public String getPrefix() { return prefix; }
+
+        // Which of the count sentences for this prefix this is, starting at 0
+        public int getSample() { return sample; }
+
+        public String getSentence() { return sentence; }
+    }
+
+    /**
+     * Next-word suggestions for one prefix
+     * Written by Andersen Breyel
+     */
+    public static final class Suggestions {
+        private final String prefix;
+        private final List<String> words;
+
+        Suggestions(String prefix, List<String> words) {
+            this.prefix = prefix;
+            this.words = words;
+        }
+
+        public String getPrefix() { return prefix; }
+
+        public List<String> getWords() { return words; }
+    }
+
+    /**
+     * Generates count sentences for every prefix in parallel
+     * @param prefixes  starting points for the generated sentences
+     * @param algorithm algorithm used for every sentence
+     * @param count     number of sentences per prefix
+     * @param maxWords  max number of words generated per sentence
+     * @param smoothing whether to apply laplace smoothing
+     * @param seed      seed that makes the results reproducible
+     * @return          ordered stream of prefixes.size() * count results, grouped by prefix in input order
+     * Written by Andersen Breyel
+     */
+    public static Stream<GeneratedSentence> generate(List<String> prefixes, GenerationAlgorithm algorithm, int count,
+                                                     int maxWords, boolean smoothing, long seed) {
+        if (count < 1 || prefixes.isEmpty()) {
+            return Stream.empty();
+        }
+        int tasks = Math.multiplyExact(prefixes.size(), count);
+        return IntStream.range(0, tasks).parallel().mapToObj(task -> {
+            String prefix = prefixes.get(task / count);
+            // Per-task generator so the result only depends on the seed and the task's position
+            SplittableRandom rng = new SplittableRandom(seed + task * SEED_STRIDE);
+            String sentence = BigramProcessor.generateSentence(prefix, algorithm, maxWords, smoothing, rng);
+            return new GeneratedSentence(prefix, task % count, sentence.trim());
+        });
+    }
+
+    /**
+     * Looks up next-word suggestions for every prefix in parallel
+     * @param prefixes  sentences whose last word is used to look up suggestions
+     * @param limit     max suggestions per prefix, or 0 for all of them
+     * @param smoothing whether to apply laplace smoothing
+     * @return          ordered stream with one result per prefix in input order
+     * Written by Andersen Breyel
+     */
+    public static Stream<Suggestions> suggest(List<String> prefixes, int limit, boolean smoothing) {
+        return prefixes.parallelStream().map(prefix -> {
+            List<String> words = BigramProcessor.getNextWordSuggestions(prefix, smoothing);
+            if (limit > 0 && words.size() > limit) {
+                words = words.subList(0, limit);
+            }
+            return new Suggestions(prefix, words);
+        });
+    }
+}
@@ -0,0 +1,233 @@
+package backend;
+/**
+ * Bigram models over chosen subsets of the imported files, for generating "in the style of" some files only.
+ *
+ * The counts of each file are read from FileWords and FileRelationships the first time the file is used and kept
+ * in compact form: word ids from a vocabulary shared by all files, and bigrams as (prefix id << 32 | suffix id)
+ * keys in ascending order with their counts. A subset's model is a merged overlay: unigram counts are summed into
+ * arrays and the sorted bigram lists are merged pairwise, so no strings are hashed, then the result is laid out
+ * as a normal BigramModel over just the words the subset uses. Overlays are built on first request and the most
+ * recently used ones are cached, so switching back and forth between subsets does not rebuild anything.
+ *
+ * Written by Andersen Breyel
+ **/
+
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+final class CorpusOverlays {
+    // Number of merged models kept in memory
+    static final int MAX_OVERLAYS = 4;
+
+    /**
+     * Counts of one file over the shared vocabulary
+     */
+    private static final class FileCounts {
+        final int[] wordIds;
+        final int[] frequency;
+        final int[] startCount;
+        final int[] endCount;
+        // (prefix id << 32 | suffix id) in ascending order
+        final long[] bigrams;
+        final int[] bigramCounts;
+
+        FileCounts(int[] wordIds, int[] frequency, int[] startCount, int[] endCount, long[] bigrams,
+                   int[] bigramCounts) {
+            this.wordIds = wordIds;
+            this.frequency = frequency;
+            this.startCount = startCount;
+            this.endCount = endCount;
+            this.bigrams = bigrams;
+            this.bigramCounts = bigramCounts;
+        }
+    }
+
+    private final HashMap<String, Integer> vocabularyIds = new HashMap<>();
+    private final ArrayList<String> vocabulary = new ArrayList<>();
+    private final HashMap<Integer, FileCounts> files = new HashMap<>();
+    // Most recently used overlays, keyed by their file ids in ascending order
+    private final LinkedHashMap<List<Integer>, BigramModel> overlays = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<List<Integer>, BigramModel> eldest) {
+            return size() > MAX_OVERLAYS;
+        }
+    };
+
+    /**
+     * Returns the merged model of the given files, building it if it is not cached
+     * @param fileIds      file_ids of the files to merge, at least one
+     * @param predecessors whether to build the predecessor index
+     * @return             the merged model
+     */
+    synchronized BigramModel overlay(Collection<Integer> fileIds, boolean predecessors) {
+        List<Integer> key = List.copyOf(new TreeSet<>(fileIds));
+        BigramModel model = overlays.get(key);
+        if (model == null || model.hasPredecessors() != predecessors) {
+            model = merge(key, predecessors);
+            overlays.put(key, model);
+        }
+        return model;
+    }
+
+    /**
+     * Adds the counts of a file in the same form DatabaseManager loads the whole library in
+     * @param fileId  file_id of the file
+     * @param words   the file's words with their counts within the file
+     * @param bigrams "word1 word2" -> count within the file
+     */
+    synchronized void addFile(int fileId, Map<String, Word> words, Map<String, Integer> bigrams) {
+        int[] wordIds = new int[words.size()];
+        int[] frequency = new int[wordIds.length];
+        int[] startCount = new int[wordIds.length];
+        int[] endCount = new int[wordIds.length];
+        int i = 0;
+        for (Word word : words.values()) {
+            wordIds[i] = vocabularyId(word.getWordText());
+            frequency[i] = word.getFrequency();
+            startCount[i] = word.getStartWordCount();
+            endCount[i] = word.getEndWordCount();
+            i++;
+        }
+
+        long[] keys = new long[bigrams.size()];
+        int[] counts = new int[keys.length];
+        int edgeCount = 0;
+        for (Map.Entry<String, Integer> entry : bigrams.entrySet()) {
+            String key = entry.getKey();
+            int split = key.indexOf(' ');
+            if (split < 0) continue;
+            keys[edgeCount] = ((long) vocabularyId(key.substring(0, split)) << 32)
+                    | vocabularyId(key.substring(split + 1));
+            counts[edgeCount] = entry.getValue();
+            edgeCount++;
+        }
+        // Sort the keys, then put each count at its key's position; keys are distinct since the map keys are
+        long[] sortedKeys = Arrays.copyOf(keys, edgeCount);
+        Arrays.sort(sortedKeys);
+        int[] sortedCounts = new int[edgeCount];
+        for (int e = 0; e < edgeCount; e++) {
+            sortedCounts[Arrays.binarySearch(sortedKeys, keys[e])] = counts[e];
+        }
+        files.put(fileId, new FileCounts(wordIds, frequency, startCount, endCount, sortedKeys, sortedCounts));
+    }
+
+    /**
+     * Drops the counts of an unloaded file and every cached overlay that includes it
+     * @param fileId file_id of the file
+     */
+    synchronized void forget(int fileId) {
+        files.remove(fileId);
+        overlays.keySet().removeIf(key -> key.contains(fileId));
+    }
+
+    private int vocabularyId(String word) {
+        Integer id = vocabularyIds.get(word);
+        if (id == null) {
+            id = vocabulary.size();
+            vocabularyIds.put(word, id);
+            vocabulary.add(word);
+        }
+        return id;
+    }
+
+    /**
+     * Reads a file's counts from the database the first time it is used
+     */
+    private FileCounts file(int fileId) {
+        FileCounts counts = files.get(fileId);
+        if (counts == null) {
+            try {
+                addFile(fileId, DatabaseManager.loadFileWords(fileId), DatabaseManager.loadFileBigrams(fileId));
+            } catch (SQLException e) {
+                // Merging without the file would quietly build the wrong model
+                throw new IllegalStateException("Could not read the counts of file " + fileId, e);
+            }
+            counts = files.get(fileId);
+        }
+        return counts;
+    }
+
+    /**
+     * Sums the counts of the given files into one model
+     */
+    private BigramModel merge(Collection<Integer> fileIds, boolean predecessors) {
+        ArrayList<FileCounts> selected = new ArrayList<>();
+        for (int fileId : fileIds) {
+            selected.add(file(fileId));
+        }
+
+        // Sum the unigram counts over the shared vocabulary
+        int vocabSize = vocabulary.size();
+        int[] frequency = new int[vocabSize];
+        int[] startCount = new int[vocabSize];
+        int[] endCount = new int[vocabSize];
+        for (FileCounts counts : selected) {
+            for (int i = 0; i < counts.wordIds.length; i++) {
+                frequency[counts.wordIds[i]] += counts.frequency[i];
+                startCount[counts.wordIds[i]] += counts.startCount[i];
+                endCount[counts.wordIds[i]] += counts.endCount[i];
+            }
+        }
+
+        // Merge the sorted bigram lists, adding the counts of bigrams shared by several files
+        long[] keys = new long[0];
+        int[] counts = new int[0];
+        for (FileCounts file : selected) {
+            long[] mergedKeys = new long[keys.length + file.bigrams.length];
+            int[] mergedCounts = new int[mergedKeys.length];
+            int a = 0;
+            int b = 0;
+            int size = 0;
+            while (a < keys.length || b < file.bigrams.length) {
+                if (b == file.bigrams.length || (a < keys.length && keys[a] < file.bigrams[b])) {
+                    mergedKeys[size] = keys[a];
+                    mergedCounts[size++] = counts[a++];
+                } else if (a == keys.length || file.bigrams[b] < keys[a]) {
+                    mergedKeys[size] = file.bigrams[b];
+                    mergedCounts[size++] = file.bigramCounts[b++];
+                } else {
+                    mergedKeys[size] = keys[a];
+                    mergedCounts[size++] = counts[a++] + file.bigramCounts[b++];
+                }
+            }
+            keys = Arrays.copyOf(mergedKeys, size);
+            counts = Arrays.copyOf(mergedCounts, size);
+        }
+
+        // Keep only the words the subset uses, renumbered from 0
+        int[] modelId = new int[vocabSize];
+        int modelSize = 0;
+        for (int w = 0; w < vocabSize; w++) {
+            modelId[w] = frequency[w] > 0 ? modelSize++ : -1;
+        }
+        String[] words = new String[modelSize];
+        HashMap<String, Integer> ids = new HashMap<>(modelSize * 2);
+        int[] modelFrequency = new int[modelSize];
+        int[] modelStartCount = new int[modelSize];
+        int[] modelEndCount = new int[modelSize];
+        for (int w = 0; w < vocabSize; w++) {
+            int id = modelId[w];
+            if (id < 0) continue;
+            words[id] = vocabulary.get(w);
+            ids.put(words[id], id);
+            modelFrequency[id] = frequency[w];
+            modelStartCount[id] = startCount[w];
+            modelEndCount[id] = endCount[w];
+        }
+        int[] prefixes = new int[keys.length];
+        int[] suffixes = new int[keys.length];
+        for (int e = 0; e < keys.length; e++) {
+            prefixes[e] = modelId[(int) (keys[e] >>> 32)];
+            suffixes[e] = modelId[(int) keys[e]];
+        }
+        return BigramModel.fromEdges(words, ids, modelFrequency, modelStartCount, modelEndCount, prefixes, suffixes,
+                counts, keys.length, predecessors);
+    }
+}
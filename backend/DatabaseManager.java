@@ -15,12 +15,31 @@ import java.sql.Connection;
 import java.sql.*;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 public class DatabaseManager {
     // Database connection details --> change credentials here
     private static final String DB_URL = "jdbc:mysql://localhost:3306/SentenceBuilder";
     private static final String DB_USER = "root";
     private static final String DB_PASSWORD = "your_new_password";
+    // Rows sent per JDBC batch by the bulk inserts
+    private static final int BATCH_SIZE = 1000;
+    // Latency of every query, see Metrics
+    private static final LatencyHistogram GET_WORD_ID = Metrics.histogram("db.getWordId");
+    private static final LatencyHistogram INSERT_FILE_METADATA = Metrics.histogram("db.insertFileMetadata");
+    private static final LatencyHistogram INSERT_FILE_COUNTS = Metrics.histogram("db.insertFileCounts");
+    private static final LatencyHistogram REMOVE_FILE_COUNTS = Metrics.histogram("db.removeFileCounts");
+    private static final LatencyHistogram INSERT_WORD = Metrics.histogram("db.insertWord");
+    private static final LatencyHistogram INSERT_BIGRAM = Metrics.histogram("db.insertBigram");
+    private static final LatencyHistogram LOAD_ALL_WORDS = Metrics.histogram("db.loadAllWords");
+    private static final LatencyHistogram LOAD_ALL_BIGRAMS = Metrics.histogram("db.loadAllBigrams");
+    private static final LatencyHistogram COUNT_CORPUS = Metrics.histogram("db.countCorpus");
+    private static final LatencyHistogram LOAD_FILES = Metrics.histogram("db.loadFiles");
+    private static final LatencyHistogram LOAD_FILE_WORD_COUNT = Metrics.histogram("db.loadFileWordCount");
+    private static final LatencyHistogram LOAD_FILE_WORDS = Metrics.histogram("db.loadFileWords");
+    private static final LatencyHistogram LOAD_FILE_BIGRAMS = Metrics.histogram("db.loadFileBigrams");
+    private static final LatencyHistogram INGEST_FLUSH = Metrics.histogram("ingest.flush");
 
     /**
      * Default constructor
@@ -55,6 +74,7 @@ public class DatabaseManager {
      * Written by Ezzah Qureshi
      */
     public static int getWordId(String word) {
+        long started = System.nanoTime();
         // try to get db connection
         try (Connection conn = getConnection();
              PreparedStatement stmt = conn.prepareStatement("SELECT word_id FROM Words WHERE word = ?;")) {
@@ -71,10 +91,22 @@ public class DatabaseManager {
             System.err.println("Word not found: " + word);
         } catch (SQLException ex) {
             System.err.println("SQL error getting number of rows of Words table: " + ex.getMessage());
+        } finally {
+            GET_WORD_ID.recordSince(started);
         }
         return 0;
     }
 
+    /**
+     * Instance form of getWordId used by ingestion, so a stand-in for the database can supply its own ids
+     * @param word String - word whose ID should be retrieved
+     * @return     the word_id, or 0 if the word is not in the Words table
+     * Written by Andersen Breyel
+     */
+    public int lookupWordId(String word) {
+        return getWordId(word);
+    }
+
     /**
      * Inserts file metadata into the Files table using a Document object
      * @param document the Document object containing file metadata
@@ -84,6 +116,7 @@ public class DatabaseManager {
      * Written by Ezzah and Khushi
      */
     public int insertFileMetadata(Document document) throws SQLException {
+        long started = System.nanoTime();
         // define query to insert file metadata into Files db
         // use CURRENT_TIMESTAMP to record when the file was inserted
         String insertFileSQL = """
@@ -111,43 +144,172 @@ public class DatabaseManager {
                     throw new SQLException("Failed to retrieve generated file_id");
                 }
             }
+        } finally {
+            INSERT_FILE_METADATA.recordSince(started);
         }
     }
 
     /**
-     * Returns the top N starting words ordered by starting_word_occurences
-     * (and word_frequency as a tiebreaker).
-     * Used by the frontend to display the top 10 words in the HomeView
-     *
-     * @param limit maximum number of words to return
-     * @return an ArrayList of starting words
-     * Written by Sneha Shrinivas
+     * Stores the word and bigram counts of one file in the FileWords and FileRelationships tables.
+     * Rows are sent in JDBC batches over a single connection, and word ids are resolved by the insert itself,
+     * so the words must already be in the Words table.
+     * @param fileId  file_id of the file the counts belong to
+     * @param words   word -> {word_frequency, starting_word_occurences, ending_word_occurences} within the file
+     * @param bigrams "word1 word2" -> combination_count within the file
+     * @throws SQLException if database access fails
+     * Written by Andersen Breyel
      */
-    public static ArrayList<String> getTopStartingWords(int limit) {
-        ArrayList<String> words = new ArrayList<>();
-
-        String sql = """
-            SELECT word
-            FROM Words
-            WHERE starting_word_occurences > 0
-            ORDER BY starting_word_occurences DESC, word_frequency DESC
-            LIMIT ?
-            """;
+    public void insertFileCounts(int fileId, Map<String, int[]> words, Map<String, Integer> bigrams)
+            throws SQLException {
+        long started = System.nanoTime();
+        String insertFileWordSQL = """
+                    INSERT INTO FileWords (file_id, word_id, word_frequency, starting_word_occurences,
+                                           ending_word_occurences)
+                    SELECT ?, word_id, ?, ?, ? FROM Words WHERE word = ?
+                    ON DUPLICATE KEY UPDATE
+                        word_frequency = word_frequency + VALUES(word_frequency),
+                        starting_word_occurences = starting_word_occurences + VALUES(starting_word_occurences),
+                        ending_word_occurences = ending_word_occurences + VALUES(ending_word_occurences);
+                """;
+        String insertFileRelationshipSQL = """
+                    INSERT INTO FileRelationships (file_id, current_word_id, next_word_id, combination_count)
+                    SELECT ?, w1.word_id, w2.word_id, ? FROM Words w1 JOIN Words w2 ON w1.word = ? AND w2.word = ?
+                    ON DUPLICATE KEY UPDATE
+                        combination_count = combination_count + VALUES(combination_count);
+                """;
 
-        try (   Connection conn = getConnection();
-                PreparedStatement stmt = conn.prepareStatement(sql)) {
-            stmt.setInt(1, limit);
+        try (Connection conn = getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement wordStmt = conn.prepareStatement(insertFileWordSQL);
+                 PreparedStatement bigramStmt = conn.prepareStatement(insertFileRelationshipSQL)) {
+                int pending = 0;
+                for (Map.Entry<String, int[]> entry : words.entrySet()) {
+                    int[] counts = entry.getValue();
+                    wordStmt.setInt(1, fileId);
+                    wordStmt.setInt(2, counts[0]);
+                    wordStmt.setInt(3, counts[1]);
+                    wordStmt.setInt(4, counts[2]);
+                    wordStmt.setString(5, entry.getKey());
+                    wordStmt.addBatch();
+                    if (++pending % BATCH_SIZE == 0) flush(wordStmt, "FileWords");
+                }
+                flush(wordStmt, "FileWords");
 
-            try (ResultSet rs = stmt.executeQuery()) {
-                while (rs.next()) {
-                    words.add(rs.getString("word"));
+                pending = 0;
+                for (Map.Entry<String, Integer> entry : bigrams.entrySet()) {
+                    String key = entry.getKey();
+                    int split = key.indexOf(' ');
+                    bigramStmt.setInt(1, fileId);
+                    bigramStmt.setInt(2, entry.getValue());
+                    bigramStmt.setString(3, key.substring(0, split));
+                    bigramStmt.setString(4, key.substring(split + 1));
+                    bigramStmt.addBatch();
+                    if (++pending % BATCH_SIZE == 0) flush(bigramStmt, "FileRelationships");
                 }
+                flush(bigramStmt, "FileRelationships");
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
             }
-        } catch (SQLException ex) {
-            System.err.println("SQL error getting top starting words: " + ex.getMessage());
+        } finally {
+            INSERT_FILE_COUNTS.recordSince(started);
         }
+    }
+
+    /**
+     * Sends the pending batch of an ingestion insert, timing it as an ingestion flush
+     * @param table table the batch writes to, for the flight recorder event
+     */
+    private static void flush(PreparedStatement stmt, String table) throws SQLException {
+        FlightEvents.DatabaseFlush event = new FlightEvents.DatabaseFlush(table);
+        event.begin();
+        long started = System.nanoTime();
+        try {
+            event.setRows(stmt.executeBatch().length);
+        } finally {
+            INGEST_FLUSH.recordSince(started);
+            event.commit();
+        }
+    }
+
+    /**
+     * Takes a file's recorded counts back out of Words and Relationships and deletes the file. Bigrams and words
+     * whose counts reach zero are deleted; the file's own FileWords and FileRelationships rows go with its Files row.
+     * The subtraction joins against the per-file tables, so it touches only the rows the file contributed to.
+     * @param fileId file_id of the file to unload
+     * @throws SQLException if any statement fails, after rolling the whole unload back
+     * Written by Andersen Breyel
+     */
+    public void removeFileCounts(int fileId) throws SQLException {
+        long started = System.nanoTime();
+        String subtractRelationshipsSQL = """
+                    UPDATE Relationships r
+                    JOIN FileRelationships f
+                        ON r.current_word_id = f.current_word_id AND r.next_word_id = f.next_word_id
+                    SET r.combination_count = r.combination_count - f.combination_count
+                    WHERE f.file_id = ?;
+                """;
+        String deleteRelationshipsSQL = """
+                    DELETE r FROM Relationships r
+                    JOIN FileRelationships f
+                        ON r.current_word_id = f.current_word_id AND r.next_word_id = f.next_word_id
+                    WHERE f.file_id = ? AND r.combination_count <= 0;
+                """;
+        String subtractWordsSQL = """
+                    UPDATE Words w
+                    JOIN FileWords f ON w.word_id = f.word_id
+                    SET w.word_frequency = GREATEST(0, w.word_frequency - f.word_frequency),
+                        w.starting_word_occurences = GREATEST(0, w.starting_word_occurences - f.starting_word_occurences),
+                        w.ending_word_occurences = GREATEST(0, w.ending_word_occurences - f.ending_word_occurences)
+                    WHERE f.file_id = ?;
+                """;
+        String unusedWordsSQL = """
+                    SELECT w.word_id FROM Words w
+                    JOIN FileWords f ON w.word_id = f.word_id
+                    WHERE f.file_id = ? AND w.word_frequency = 0;
+                """;
+        String deleteWordSQL = "DELETE FROM Words WHERE word_id = ?";
+        String deleteFileSQL = "DELETE FROM Files WHERE file_id = ?";
+
+        try (Connection conn = getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement subtractRelationships = conn.prepareStatement(subtractRelationshipsSQL);
+                 PreparedStatement deleteRelationships = conn.prepareStatement(deleteRelationshipsSQL);
+                 PreparedStatement subtractWords = conn.prepareStatement(subtractWordsSQL);
+                 PreparedStatement unusedWords = conn.prepareStatement(unusedWordsSQL);
+                 PreparedStatement deleteWord = conn.prepareStatement(deleteWordSQL);
+                 PreparedStatement deleteFile = conn.prepareStatement(deleteFileSQL)) {
+                subtractRelationships.setInt(1, fileId);
+                subtractRelationships.executeUpdate();
+                deleteRelationships.setInt(1, fileId);
+                deleteRelationships.executeUpdate();
+                subtractWords.setInt(1, fileId);
+                subtractWords.executeUpdate();
+
+                // Words are deleted one id at a time in batches, since deleting through a join on FileWords
+                // would cascade into the table being joined
+                unusedWords.setInt(1, fileId);
+                int pending = 0;
+                try (ResultSet rs = unusedWords.executeQuery()) {
+                    while (rs.next()) {
+                        deleteWord.setInt(1, rs.getInt(1));
+                        deleteWord.addBatch();
+                        if (++pending % BATCH_SIZE == 0) deleteWord.executeBatch();
+                    }
+                }
+                deleteWord.executeBatch();
 
-        return words;
+                deleteFile.setInt(1, fileId);
+                deleteFile.executeUpdate();
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        } finally {
+            REMOVE_FILE_COUNTS.recordSince(started);
+        }
     }
 
     /**
@@ -157,6 +319,7 @@ public class DatabaseManager {
      * Written by Ezzah Qureshi, Khushi Dubey, and Andersen Breyel
      */
     public void insertWord(Word wordPart) throws SQLException {
+        long started = System.nanoTime();
         String insertWordSQL = """
                     INSERT INTO Words (word, word_frequency, starting_word_occurences, ending_word_occurences)
                     VALUES (?, ?, ?, ?)
@@ -176,6 +339,8 @@ public class DatabaseManager {
             stmt.setInt(3, wordPart.getStartWordCount());
             stmt.setInt(4, wordPart.getEndWordCount());
             stmt.executeUpdate();
+        } finally {
+            INSERT_WORD.recordSince(started);
         }
     }
 
@@ -192,6 +357,7 @@ public class DatabaseManager {
      * Written by Ezzah Qureshi, Khushi Dubey, and Andersen Breyel
      */
     public void insertBigram(Relationship bigram) throws SQLException {
+        long started = System.nanoTime();
         String insertRelationshipSQL = """
                     INSERT INTO Relationships (current_word_id, next_word_id, combination_count)
                     VALUES (?, ?, ?)
@@ -210,6 +376,8 @@ public class DatabaseManager {
             insertRelStmt.setInt(2, nextId);
             insertRelStmt.setInt(3, bigram.getCombinationCount());
             insertRelStmt.executeUpdate();
+        } finally {
+            INSERT_BIGRAM.recordSince(started);
         }
     }
 
@@ -219,6 +387,7 @@ public class DatabaseManager {
      * written by Sneha Shrinivas
      */
     public static HashMap<String, Word> loadAllWordsOptimized() {
+        long started = System.nanoTime();
         // initialize hash map and statement
         HashMap<String, Word> wordHashMap = new HashMap<>();
         String sql = """
@@ -248,6 +417,8 @@ public class DatabaseManager {
             System.out.println("Loaded " + wordHashMap.size() + " words into memory");
         } catch (SQLException ex) {
             System.err.println("SQL error loading words: " + ex.getMessage());
+        } finally {
+            LOAD_ALL_WORDS.recordSince(started);
         }
         return wordHashMap;
     }
@@ -260,6 +431,32 @@ public class DatabaseManager {
     public static HashMap<String, Integer> loadAllBigramsOptimized() {
         HashMap<String, Integer> bigramHashMap = new HashMap<>();
 
+        // create a key for the hashmap and store key and frequency count in map
+        forEachBigram((currentWord, nextWord, combinationCount) ->
+                bigramHashMap.put(currentWord + " " + nextWord, combinationCount));
+
+        // system message
+        System.out.println("Loaded " + bigramHashMap.size() + " bigrams into memory");
+        return bigramHashMap;
+    }
+
+    /**
+     * Receives the rows of the Relationships table one at a time
+     * Written by Andersen Breyel
+     */
+    public interface BigramRowHandler {
+        void accept(String currentWord, String nextWord, int combinationCount);
+    }
+
+    /**
+     * Streams every bigram with its word text to the handler. The rows are streamed from the server instead of
+     * being buffered by the driver, so the whole table is never held in memory as a result set.
+     * @param handler receives each row
+     * @return number of rows read
+     * Written by Andersen Breyel
+     */
+    public static int forEachBigram(BigramRowHandler handler) {
+        long started = System.nanoTime();
         // Join with Words table to get word text from word id
         String sql = """
                 SELECT w1.word AS current_word, w2.word AS next_word, r.combination_count
@@ -267,28 +464,167 @@ public class DatabaseManager {
                 JOIN Words w1 ON r.current_word_id = w1.word_id
                 JOIN Words w2 ON r.next_word_id = w2.word_id
                 """;
+        int rows = 0;
 
         // try to get db connection
+        try (Connection conn = DatabaseManager.getConnection();
+             Statement stmt = conn.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            // Integer.MIN_VALUE tells the MySQL driver to stream rows one at a time
+            stmt.setFetchSize(Integer.MIN_VALUE);
+            try (ResultSet rs = stmt.executeQuery(sql)) {
+                // loop through result set
+                while (rs.next()) {
+                    handler.accept(rs.getString("current_word"), rs.getString("next_word"),
+                            rs.getInt("combination_count"));
+                    rows++;
+                }
+            }
+        } catch (SQLException ex) {
+            System.err.println("SQL error loading bigrams: " + ex.getMessage());
+        } finally {
+            LOAD_ALL_BIGRAMS.recordSince(started);
+        }
+        return rows;
+    }
+
+    /**
+     * Counts what loading the whole corpus would hold in memory, without loading it
+     * @return {rows in Words, total characters of all words, rows in Relationships}, zeros if the query fails
+     * Written by Andersen Breyel
+     */
+    public static long[] countCorpus() {
+        long started = System.nanoTime();
+        long[] sizes = new long[3];
+        String sql = """
+                SELECT (SELECT COUNT(*) FROM Words),
+                       (SELECT COALESCE(SUM(CHAR_LENGTH(word)), 0) FROM Words),
+                       (SELECT COUNT(*) FROM Relationships)
+                """;
+
         try (Connection conn = DatabaseManager.getConnection();
              Statement stmt = conn.createStatement();
              ResultSet rs = stmt.executeQuery(sql)) {
+            if (rs.next()) {
+                sizes[0] = rs.getLong(1);
+                sizes[1] = rs.getLong(2);
+                sizes[2] = rs.getLong(3);
+            }
+        } catch (SQLException ex) {
+            System.err.println("SQL error counting corpus: " + ex.getMessage());
+        } finally {
+            COUNT_CORPUS.recordSince(started);
+        }
+        return sizes;
+    }
 
-            // loop through result set
+    /**
+     * Load the id and name of every imported file
+     * @return LinkedHashMap of file_id to filename, in import order
+     * Written by Andersen Breyel
+     */
+    public static LinkedHashMap<Integer, String> loadFiles() {
+        long started = System.nanoTime();
+        LinkedHashMap<Integer, String> files = new LinkedHashMap<>();
+        String sql = "SELECT file_id, filename FROM Files ORDER BY file_id";
+
+        try (Connection conn = DatabaseManager.getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
             while (rs.next()) {
-                // get values from result set
-                String currentWord = rs.getString("current_word");
-                String nextWord = rs.getString("next_word");
-                int combinationCount = rs.getInt("combination_count");
-
-                // create a key for the hashmap and store key and frequency count in map
-                String bigramKey = currentWord + " " + nextWord;
-                bigramHashMap.put(bigramKey, combinationCount);
+                files.put(rs.getInt("file_id"), rs.getString("filename"));
             }
-
-            // system message
-            System.out.println("Loaded " + bigramHashMap.size() + " bigrams into memory");
         } catch (SQLException ex) {
-            System.err.println("SQL error loading bigrams: " + ex.getMessage());
+            System.err.println("SQL error loading files: " + ex.getMessage());
+        } finally {
+            LOAD_FILES.recordSince(started);
+        }
+        return files;
+    }
+
+    /**
+     * Load the number of words a file was stored with
+     * @param fileId file_id of the file
+     * @return file_word_count of the file, 0 if there is no such file
+     * @throws SQLException if database access fails
+     * Written by Andersen Breyel
+     */
+    public static int loadFileWordCount(int fileId) throws SQLException {
+        long started = System.nanoTime();
+        String sql = "SELECT file_word_count FROM Files WHERE file_id = ?";
+
+        try (Connection conn = DatabaseManager.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setInt(1, fileId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? rs.getInt("file_word_count") : 0;
+            }
+        } finally {
+            LOAD_FILE_WORD_COUNT.recordSince(started);
+        }
+    }
+
+    /**
+     * Load the word counts of a single file, in the same form as loadAllWordsOptimized
+     * @param fileId file_id of the file
+     * @return HashMap of the file's words with their counts within the file
+     * @throws SQLException if database access fails, so callers never mistake a failed read for an empty file
+     * Written by Andersen Breyel
+     */
+    public static HashMap<String, Word> loadFileWords(int fileId) throws SQLException {
+        long started = System.nanoTime();
+        HashMap<String, Word> wordHashMap = new HashMap<>();
+        String sql = """
+                SELECT w.word, f.word_frequency, f.starting_word_occurences, f.ending_word_occurences
+                FROM FileWords f
+                JOIN Words w ON f.word_id = w.word_id
+                WHERE f.file_id = ?
+                """;
+
+        try (Connection conn = DatabaseManager.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setInt(1, fileId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    String wordText = rs.getString("word");
+                    wordHashMap.put(wordText, new Word(wordText, rs.getInt("starting_word_occurences"),
+                            rs.getInt("ending_word_occurences"), rs.getInt("word_frequency")));
+                }
+            }
+        } finally {
+            LOAD_FILE_WORDS.recordSince(started);
+        }
+        return wordHashMap;
+    }
+
+    /**
+     * Load the bigram counts of a single file, in the same form as loadAllBigramsOptimized
+     * @param fileId file_id of the file
+     * @return HashMap mapping "word1 word2" to combination count within the file
+     * @throws SQLException if database access fails
+     * Written by Andersen Breyel
+     */
+    public static HashMap<String, Integer> loadFileBigrams(int fileId) throws SQLException {
+        long started = System.nanoTime();
+        HashMap<String, Integer> bigramHashMap = new HashMap<>();
+        String sql = """
+                SELECT w1.word AS current_word, w2.word AS next_word, r.combination_count
+                FROM FileRelationships r
+                JOIN Words w1 ON r.current_word_id = w1.word_id
+                JOIN Words w2 ON r.next_word_id = w2.word_id
+                WHERE r.file_id = ?
+                """;
+
+        try (Connection conn = DatabaseManager.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setInt(1, fileId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    bigramHashMap.put(rs.getString("current_word") + " " + rs.getString("next_word"),
+                            rs.getInt("combination_count"));
+                }
+            }
+        } finally {
+            LOAD_FILE_BIGRAMS.recordSince(started);
         }
         return bigramHashMap;
     }
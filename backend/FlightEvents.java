@@ -0,0 +1,188 @@
+package backend;
+/**
+ * Custom JDK Flight Recorder events, so the time spent ingesting files, writing to the database, loading the model
+ * and serving requests shows up in a recording next to the GC, allocation and lock events of the same moments.
+ * Start a recording with -XX:StartFlightRecording or from JDK Mission Control and look under "Sentence Builder".
+ *
+ * While no recording is running the events are disabled and cost little more than creating the event object,
+ * which the JIT usually removes; fields that take work to fill in are only computed when the event is enabled.
+ *
+ * Written by Andersen Breyel
+ **/
+
+import java.util.List;
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+public final class FlightEvents {
+    private FlightEvents() { }
+
+    /**
+     * Ingestion of one text file, from reading its first line to storing its per-file counts
+     * Written by Andersen Breyel
+     */
+    @Name("backend.IngestFile")
+    @Label("Ingest File")
+    @Category({"Sentence Builder", "Ingestion"})
+    public static final class IngestFile extends Event {
+        @Label("File Name")
+        String fileName;
+
+        @Label("Size")
+        @DataAmount
+        long bytes;
+
+        @Label("Tokens")
+        int tokens;
+
+        @Label("Database Time")
+        @Description("Part of the duration spent waiting on the database")
+        @Timespan
+        long databaseTime;
+
+        IngestFile(String fileName, long bytes) {
+            this.fileName = fileName;
+            this.bytes = bytes;
+        }
+
+        void addDatabaseTime(long nanos) {
+            databaseTime += nanos;
+        }
+
+        void setTokens(int tokens) {
+            this.tokens = tokens;
+        }
+    }
+
+    /**
+     * One JDBC batch sent to the database
+     * Written by Andersen Breyel
+     */
+    @Name("backend.DatabaseFlush")
+    @Label("Database Flush")
+    @Category({"Sentence Builder", "Database"})
+    public static final class DatabaseFlush extends Event {
+        @Label("Table")
+        String table;
+
+        @Label("Rows")
+        int rows;
+
+        DatabaseFlush(String table) {
+            this.table = table;
+        }
+
+        void setRows(int rows) {
+            this.rows = rows;
+        }
+    }
+
+    /**
+     * One phase of loading or switching the in-memory model
+     * Written by Andersen Breyel
+     */
+    @Name("backend.ModelLoadPhase")
+    @Label("Model Load Phase")
+    @Category({"Sentence Builder", "Model"})
+    public static final class ModelLoadPhase extends Event {
+        @Label("Phase")
+        String phase;
+
+        @Label("Items")
+        @Description("Words, bigrams or files handled by the phase")
+        long items;
+
+        ModelLoadPhase(String phase) {
+            this.phase = phase;
+            begin();
+        }
+
+        /**
+         * Ends the phase and commits it
+         * @param items number of words, bigrams or files the phase handled
+         */
+        void finish(long items) {
+            this.items = items;
+            commit();
+        }
+    }
+
+    /**
+     * One sentence generation or word suggestion request
+     * Written by Andersen Breyel
+     */
+    @Name("backend.GenerationRequest")
+    @Label("Generation Request")
+    @Category({"Sentence Builder", "Generation"})
+    public static final class GenerationRequest extends Event {
+        @Label("Operation")
+        String operation;
+
+        @Label("Algorithm")
+        String algorithm;
+
+        @Label("Prefix Degree")
+        @Description("Number of distinct words seen after the last word of the prefix")
+        int prefixDegree;
+
+        @Label("Tokens")
+        @Description("Words generated, or suggestions returned")
+        int tokens;
+
+        private GenerationRequest(String operation, String algorithm) {
+            this.operation = operation;
+            this.algorithm = algorithm;
+        }
+
+        /**
+         * Starts timing a request
+         * @param operation name of the service call
+         * @param algorithm algorithm used, or null if the call has no choice of algorithm
+         * @param prefix    text the request continues from, used for the prefix degree
+         * @return          the started event
+         * Written by Andersen Breyel
+         */
+        public static GenerationRequest start(String operation, Object algorithm, String prefix) {
+            GenerationRequest event = new GenerationRequest(operation, algorithm == null ? null : algorithm.toString());
+            if (event.isEnabled() && prefix != null) {
+                event.prefixDegree = BigramProcessor.getSuccessorCount(prefix.trim());
+            }
+            event.begin();
+            return event;
+        }
+
+        /**
+         * Records the generated text as the request's result
+         * @param text generated sentence
+         * @return     the same text
+         */
+        public String result(String text) {
+            if (isEnabled() && text != null) {
+                tokens = text.isBlank() ? 0 : text.trim().split("\\s+").length;
+            }
+            return text;
+        }
+
+        /**
+         * Records a list of sentences or suggestions as the request's result
+         * @param items the result
+         * @return      the same list
+         */
+        public <T> List<T> result(List<T> items) {
+            tokens = items == null ? 0 : items.size();
+            return items;
+        }
+
+        /**
+         * Ends the request and commits it if a recording wants it
+         */
+        public void finish() {
+            commit();
+        }
+    }
+}
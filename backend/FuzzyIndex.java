@@ -0,0 +1,232 @@
+package backend;
+/**
+ * Fuzzy lookup of known words for unknown or misspelled input, using the symmetric delete scheme.
+ * Every word of the vocabulary is indexed under each string obtained by deleting up to MAX_DISTANCE of its
+ * characters. Two words within edit distance MAX_DISTANCE always share such a delete string, so a query only has
+ * to generate its own deletes and look them up, instead of comparing against every word. The candidates found are
+ * then checked with a bounded edit distance and ranked by distance, then by word frequency.
+ *
+ * Delete strings are never stored: each one is reduced to a 39 bit hash packed with the word id into a long, and
+ * the sorted longs are laid out like the bigram rows, with one run of word ids per distinct hash. A hash collision
+ * can only add a candidate, which the distance check removes again.
+ *
+ * Written by Andersen Breyel
+ **/
+
+import java.util.Arrays;
+
+final class FuzzyIndex {
+    static final int MAX_DISTANCE = 2;
+    private static final int ID_BITS = 24;
+    private static final long ID_MASK = (1L << ID_BITS) - 1;
+
+    private final String[] words;
+    private final int[] frequency;
+    // Distinct delete hashes in ascending order
+    private final long[] keys;
+    // Word ids indexed under keys[k] are ids[offsets[k]] until ids[offsets[k + 1]]
+    private final int[] offsets;
+    private final int[] ids;
+    // Length of the longest word, so queries that can't be close to any word are turned away before hashing
+    private final int maxWordLength;
+
+    private FuzzyIndex(String[] words, int[] frequency, long[] keys, int[] offsets, int[] ids, int maxWordLength) {
+        this.words = words;
+        this.frequency = frequency;
+        this.keys = keys;
+        this.offsets = offsets;
+        this.ids = ids;
+        this.maxWordLength = maxWordLength;
+    }
+
+    /**
+     * Indexes every word under all of its deletes
+     * @param words     word text indexed by id
+     * @param frequency word frequency indexed by id, used for ranking
+     * @return          the index
+     */
+    static FuzzyIndex build(String[] words, int[] frequency) {
+        if (words.length > ID_MASK) {
+            throw new IllegalStateException("Vocabulary too large for the fuzzy index: " + words.length);
+        }
+        long[] packed = new long[Math.max(16, words.length * 16)];
+        int size = 0;
+        long[] hashes = new long[64];
+        int maxWordLength = 0;
+        for (int id = 0; id < words.length; id++) {
+            char[] word = words[id].toCharArray();
+            maxWordLength = Math.max(maxWordLength, word.length);
+            if (hashes.length < deleteCount(word.length)) {
+                hashes = new long[Math.toIntExact(deleteCount(word.length))];
+            }
+            int count = deleteHashes(word, word.length, hashes);
+            if (size + count > packed.length) {
+                packed = Arrays.copyOf(packed, Math.max(packed.length * 2, size + count));
+            }
+            for (int i = 0; i < count; i++) {
+                packed[size++] = (hashes[i] << ID_BITS) | id;
+            }
+        }
+        Arrays.parallelSort(packed, 0, size);
+
+        // Count distinct hashes and postings, dropping repeats of the same delete from one word
+        int keyCount = 0;
+        int postingCount = 0;
+        for (int i = 0; i < size; i++) {
+            if (i > 0 && packed[i] == packed[i - 1]) continue;
+            postingCount++;
+            if (i == 0 || (packed[i] >>> ID_BITS) != (packed[i - 1] >>> ID_BITS)) keyCount++;
+        }
+        long[] keys = new long[keyCount];
+        int[] offsets = new int[keyCount + 1];
+        int[] ids = new int[postingCount];
+        int k = -1;
+        int p = 0;
+        for (int i = 0; i < size; i++) {
+            if (i > 0 && packed[i] == packed[i - 1]) continue;
+            long hash = packed[i] >>> ID_BITS;
+            if (k < 0 || keys[k] != hash) {
+                keys[++k] = hash;
+                offsets[k] = p;
+            }
+            ids[p++] = (int) (packed[i] & ID_MASK);
+        }
+        offsets[keyCount] = p;
+        return new FuzzyIndex(words, frequency, keys, offsets, ids, maxWordLength);
+    }
+
+    /**
+     * @return estimated heap used by the index, not counting the shared word arrays
+     */
+    long bytes() {
+        return MemoryFootprint.longArray(keys.length) + MemoryFootprint.intArray(offsets.length)
+                + MemoryFootprint.intArray(ids.length);
+    }
+
+    /**
+     * Finds the known words closest to the given word
+     * @param word        lowercase word to look up
+     * @param maxDistance largest edit distance to accept, at most MAX_DISTANCE
+     * @param limit       max number of words to return
+     * @return            ids of the closest words, ordered by edit distance, then by frequency; none for a word
+     *                    longer than every known word by more than maxDistance
+     */
+    int[] lookup(String word, int maxDistance, int limit) {
+        maxDistance = Math.min(maxDistance, MAX_DISTANCE);
+        // The query's deletes grow with the square of its length, and a word that long can't be close to any known one
+        if (word.length() > maxWordLength + maxDistance) {
+            return new int[0];
+        }
+        char[] query = word.toCharArray();
+        long[] hashes = new long[Math.toIntExact(deleteCount(query.length))];
+        int hashCount = deleteHashes(query, query.length, hashes);
+
+        // Gather every word indexed under one of the query's deletes
+        int[] candidates = new int[32];
+        int candidateCount = 0;
+        for (int h = 0; h < hashCount; h++) {
+            int k = Arrays.binarySearch(keys, hashes[h]);
+            if (k < 0) continue;
+            for (int p = offsets[k]; p < offsets[k + 1]; p++) {
+                if (candidateCount == candidates.length) {
+                    candidates = Arrays.copyOf(candidates, candidateCount * 2);
+                }
+                candidates[candidateCount++] = ids[p];
+            }
+        }
+        Arrays.sort(candidates, 0, candidateCount);
+
+        // Rank by distance, then by frequency, then by id; packed so a plain sort orders them
+        long[] ranked = new long[candidateCount];
+        int rankedCount = 0;
+        for (int i = 0; i < candidateCount; i++) {
+            if (i > 0 && candidates[i] == candidates[i - 1]) continue;
+            int id = candidates[i];
+            int distance = distance(query, words[id], maxDistance);
+            if (distance > maxDistance) continue;
+            long frequencyRank = Integer.MAX_VALUE - (long) Math.max(0, frequency[id]);
+            ranked[rankedCount++] = ((long) distance << 56) | (frequencyRank << ID_BITS) | id;
+        }
+        Arrays.sort(ranked, 0, rankedCount);
+        int[] result = new int[Math.min(limit, rankedCount)];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = (int) (ranked[i] & ID_MASK);
+        }
+        return result;
+    }
+
+    /**
+     * @return number of hashes deleteHashes writes for a word of the given length
+     */
+    private static long deleteCount(int length) {
+        return 1 + length + (long) length * (length - 1) / 2;
+    }
+
+    /**
+     * Writes the hashes of the word and of every string made by deleting one or two of its characters
+     * @param word   characters of the word
+     * @param length number of characters
+     * @param out    receives the hashes, at least deleteCount(length) long
+     * @return       number of hashes written
+     */
+    private static int deleteHashes(char[] word, int length, long[] out) {
+        int count = 0;
+        out[count++] = hash(word, length, -1, -1);
+        for (int i = 0; i < length; i++) {
+            out[count++] = hash(word, length, i, -1);
+            for (int j = i + 1; j < length; j++) {
+                out[count++] = hash(word, length, i, j);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * FNV-1a over the word with up to two positions skipped, reduced to 39 bits so packed entries stay positive and sort by hash
+     */
+    private static long hash(char[] word, int length, int skip1, int skip2) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < length; i++) {
+            if (i == skip1 || i == skip2) continue;
+            h = (h ^ word[i]) * 0x100000001b3L;
+        }
+        h ^= h >>> 31;
+        h *= 0x7fb5d329728ea185L;
+        h ^= h >>> 27;
+        return h >>> (64 - 39);
+    }
+
+    /**
+     * Edit distance counting insertions, deletions, substitutions and swaps of adjacent characters, stopping early
+     * once it must exceed maxDistance
+     * @return the distance, or maxDistance + 1 if it is larger than maxDistance
+     */
+    private static int distance(char[] a, String b, int maxDistance) {
+        int n = a.length;
+        int m = b.length();
+        if (Math.abs(n - m) > maxDistance) return maxDistance + 1;
+        int[] twoBack = new int[m + 1];
+        int[] previous = new int[m + 1];
+        int[] current = new int[m + 1];
+        for (int j = 0; j <= m; j++) previous[j] = j;
+        for (int i = 1; i <= n; i++) {
+            current[0] = i;
+            int rowMin = i;
+            for (int j = 1; j <= m; j++) {
+                int cost = a[i - 1] == b.charAt(j - 1) ? 0 : 1;
+                int d = Math.min(Math.min(previous[j] + 1, current[j - 1] + 1), previous[j - 1] + cost);
+                if (i > 1 && j > 1 && a[i - 1] == b.charAt(j - 2) && a[i - 2] == b.charAt(j - 1)) {
+                    d = Math.min(d, twoBack[j - 2] + 1);
+                }
+                current[j] = d;
+                rowMin = Math.min(rowMin, d);
+            }
+            if (rowMin > maxDistance) return maxDistance + 1;
+            int[] recycled = twoBack;
+            twoBack = previous;
+            previous = current;
+            current = recycled;
+        }
+        return Math.min(previous[m], maxDistance + 1);
+    }
+}
@@ -0,0 +1,35 @@
+package backend;
+
+/**
+ * The sentence generation algorithms offered by BigramProcessor, used by callers that pick
+ * an algorithm at runtime such as the bulk generation API and the HomeView radio buttons.
+ * Each algorithm is a Sampler driving the same generation loop.
+ * Written by Andersen Breyel
+ */
+public enum GenerationAlgorithm {
+    // Picks each next word at random, weighted by its bigram probability
+    WEIGHTED(Sampler.weighted()),
+    // Picks each next word at random from the three most probable ones
+    THREE_RANDOM(Sampler.threeRandom()),
+    // Always picks the most probable next word
+    TOP_ONE(Sampler.topOne()),
+    // Weighted pick with probabilities sharpened by a temperature of 0.7
+    TEMPERATURE(Sampler.temperature(0.7)),
+    // Weighted pick among the ten most probable next words
+    TOP_K(Sampler.topK(10)),
+    // Weighted pick among the most probable next words that together hold 90% of the probability
+    NUCLEUS(Sampler.nucleus(0.9));
+
+    private final Sampler sampler;
+
+    GenerationAlgorithm(Sampler sampler) {
+        this.sampler = sampler;
+    }
+
+    /**
+     * @return the sampler that picks each next word for this algorithm
+     */
+    public Sampler getSampler() {
+        return sampler;
+    }
+}
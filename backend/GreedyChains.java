@@ -0,0 +1,146 @@
+package backend;
+/**
+ * Precomputed greedy chains for TopOne generation. TopOne always picks the most probable successor, which only
+ * depends on the current word, so every word has a single best next word and following those pointers from any
+ * word gives the same chain every time. The chains form a functional graph, so one pass over the vocabulary finds
+ * how many words each chain generates before it reaches an end-of-sentence word, runs out of successors, or
+ * starts repeating itself.
+ *
+ * Generating with TopOne then becomes a walk over the pointer table, and the rendered text of every chain that fits
+ * in the requested length is cached per start word.
+ *
+ * Written by Andersen Breyel
+ **/
+
+final class GreedyChains {
+    // Most probable successor of each word, -1 if it has none
+    private final int[] next;
+    // Number of words the chain from each word generates before it stops or would repeat a word
+    private final int[] steps;
+    // True where the chain ends because it would repeat a word
+    private final boolean[] loops;
+    private final String[] words;
+    // Rendered full chains per start word. Strings are immutable so racing writers can only store equal values.
+    private final String[] rendered;
+
+    private GreedyChains(int[] next, int[] steps, boolean[] loops, String[] words) {
+        this.next = next;
+        this.steps = steps;
+        this.loops = loops;
+        this.words = words;
+        this.rendered = new String[words.length];
+    }
+
+    /**
+     * Builds the best-next pointers and chain lengths for every word of the model
+     * @param model model to build the chains for
+     * @return      the chains
+     */
+    static GreedyChains build(BigramModel model) {
+        int vocabSize = model.vocabSize();
+        int[] next = new int[vocabSize];
+        for (int w = 0; w < vocabSize; w++) {
+            int from = model.successorOffsets[w];
+            // Rows are sorted by count with ties broken by id, so the first slot is the TopOne pick
+            next[w] = from == model.successorOffsets[w + 1] ? -1 : model.successorIds[from];
+        }
+
+        int[] steps = new int[vocabSize];
+        boolean[] loops = new boolean[vocabSize];
+        // 0 = not visited, 1 = on the path being walked, 2 = done
+        byte[] state = new byte[vocabSize];
+        // Position of each word on the path being walked
+        int[] position = new int[vocabSize];
+        int[] path = new int[vocabSize];
+        for (int w = 0; w < vocabSize; w++) {
+            if (state[w] != 0) continue;
+            int length = 0;
+            int current = w;
+            // Walk until the chain stops or reaches a word that is done or already on the path. Afterwards
+            // path[0 .. unresolved - 1] still needs its steps, each one more than its successor's.
+            int unresolved;
+            while (true) {
+                state[current] = 1;
+                position[current] = length;
+                path[length++] = current;
+                int successor = next[current];
+                if (successor < 0 || model.isEndWord(successor) || state[successor] == 2) {
+                    steps[current] = successor < 0 ? 0 : model.isEndWord(successor) ? 1 : 1 + steps[successor];
+                    loops[current] = successor >= 0 && !model.isEndWord(successor) && loops[successor];
+                    state[current] = 2;
+                    unresolved = length - 1;
+                    break;
+                }
+                if (state[successor] == 1) {
+                    // Every word on the cycle generates the rest of the cycle before repeating itself
+                    int cycleLength = length - position[successor];
+                    for (int i = position[successor]; i < length; i++) {
+                        steps[path[i]] = cycleLength - 1;
+                        loops[path[i]] = true;
+                        state[path[i]] = 2;
+                    }
+                    unresolved = position[successor];
+                    break;
+                }
+                current = successor;
+            }
+            for (int i = unresolved - 1; i >= 0; i--) {
+                int word = path[i];
+                steps[word] = 1 + steps[next[word]];
+                loops[word] = loops[next[word]];
+                state[word] = 2;
+            }
+        }
+        return new GreedyChains(next, steps, loops, model.words);
+    }
+
+    /**
+     * @return estimated heap used by the chains and the text rendered so far
+     */
+    long bytes() {
+        long bytes = 2 * MemoryFootprint.intArray(next.length) + MemoryFootprint.booleanArray(loops.length)
+                + MemoryFootprint.referenceArray(rendered.length);
+        for (String text : rendered) {
+            if (text != null) bytes += MemoryFootprint.string(text);
+        }
+        return bytes;
+    }
+
+    /**
+     * @param startId id of the last word of the prefix
+     * @param n       max number of words to be generated
+     * @return        true if the chain from startId would repeat a word within n generated words
+     */
+    boolean loops(int startId, int n) {
+        return loops[startId] && steps[startId] < n;
+    }
+
+    /**
+     * Text generated by TopOne after startId, each word preceded by a space. Stops after n words, at an
+     * end-of-sentence word, when there are no successors, or right before a word would repeat.
+     * @param startId id of the last word of the prefix
+     * @param n       max number of words to be generated
+     * @return        the generated words
+     */
+    String continuation(int startId, int n) {
+        int length = Math.min(n, steps[startId]);
+        if (length < steps[startId]) {
+            return render(startId, length);
+        }
+        String text = rendered[startId];
+        if (text == null) {
+            text = render(startId, length);
+            rendered[startId] = text;
+        }
+        return text;
+    }
+
+    private String render(int startId, int length) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0, current = startId; i < length; i++) {
+            current = next[current];
+            text.append(' ').append(words[current]);
+        }
+        return text.toString();
+    }
+}
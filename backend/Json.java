@@ -0,0 +1,254 @@
+package backend;
+/**
+ * The little JSON the API server and the batch mode need: writing objects of strings, numbers and string lists, and
+ * reading the flat objects of strings, numbers and booleans that requests send, so neither needs a library.
+ *
+ * Written by Andersen Breyel
+ **/
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+public final class Json {
+    private Json() { }
+
+    /**
+     * Builds one JSON object, keeping the fields in the order they were added
+     * Written by Andersen Breyel
+     */
+    public static final class ObjectWriter {
+        private final StringBuilder json = new StringBuilder("{");
+
+        public ObjectWriter field(String name, String value) {
+            name(name);
+            quote(json, value);
+            return this;
+        }
+
+        public ObjectWriter field(String name, long value) {
+            name(name);
+            json.append(value);
+            return this;
+        }
+
+        public ObjectWriter field(String name, double value) {
+            name(name);
+            // JSON has no NaN or infinity
+            if (Double.isFinite(value)) {
+                json.append(value);
+            } else {
+                json.append("null");
+            }
+            return this;
+        }
+
+        /**
+         * Adds a value that is already JSON, such as a number or string literal copied from a request
+         */
+        public ObjectWriter rawField(String name, String json) {
+            name(name);
+            this.json.append(json);
+            return this;
+        }
+
+        public ObjectWriter field(String name, boolean value) {
+            name(name);
+            json.append(value);
+            return this;
+        }
+
+        public ObjectWriter field(String name, List<String> values) {
+            name(name);
+            json.append('[');
+            for (int i = 0; i < values.size(); i++) {
+                if (i > 0) json.append(',');
+                quote(json, values.get(i));
+            }
+            json.append(']');
+            return this;
+        }
+
+        private void name(String name) {
+            if (json.length() > 1) json.append(',');
+            quote(json, name);
+            json.append(':');
+        }
+
+        @Override
+        public String toString() {
+            return json + "}";
+        }
+    }
+
+    public static ObjectWriter object() {
+        return new ObjectWriter();
+    }
+
+    /**
+     * Appends a string as a JSON string literal, or null
+     */
+    public static void quote(StringBuilder json, String value) {
+        if (value == null) {
+            json.append("null");
+            return;
+        }
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> json.append("\\\"");
+                case '\\' -> json.append("\\\\");
+                case '\n' -> json.append("\\n");
+                case '\r' -> json.append("\\r");
+                case '\t' -> json.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        json.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        json.append(c);
+                    }
+                }
+            }
+        }
+        json.append('"');
+    }
+
+    /**
+     * Reads a flat JSON object whose values are strings, numbers, booleans or null
+     * @param text the JSON text
+     * @return field name -> value as text; null values are left out
+     * @throws IllegalArgumentException if the text is not such an object
+     */
+    public static Map<String, String> parseFlatObject(String text) {
+        return parseFlatObject(text, null);
+    }
+
+    /**
+     * Reads a flat JSON object like parseFlatObject(text), also noting which fields held strings, so a value can be
+     * written back as it was sent
+     * @param text          the JSON text
+     * @param stringFields  receives the names of the fields whose value was a string, or null
+     * @return field name -> value as text; null values are left out
+     * @throws IllegalArgumentException if the text is not such an object
+     */
+    public static Map<String, String> parseFlatObject(String text, Set<String> stringFields) {
+        Parser parser = new Parser(text);
+        Map<String, String> fields = new HashMap<>();
+        parser.expect('{');
+        if (!parser.consume('}')) {
+            do {
+                String name = parser.string();
+                parser.expect(':');
+                boolean isString = parser.peek() == '"';
+                String value = parser.value();
+                if (value != null) {
+                    fields.put(name, value);
+                    if (isString && stringFields != null) stringFields.add(name);
+                }
+            } while (parser.consume(','));
+            parser.expect('}');
+        }
+        parser.end();
+        return fields;
+    }
+
+    // A JSON number: no leading +, no leading zeros, and digits on both sides of the decimal point
+    private static final Pattern NUMBER = Pattern.compile("-?(0|[1-9]\\d*)(\\.\\d+)?([eE][+-]?\\d+)?");
+
+    private static final class Parser {
+        private final String text;
+        private int position = 0;
+
+        Parser(String text) {
+            this.text = text;
+        }
+
+        private void skipSpace() {
+            while (position < text.length() && Character.isWhitespace(text.charAt(position))) position++;
+        }
+
+        char peek() {
+            skipSpace();
+            return position < text.length() ? text.charAt(position) : 0;
+        }
+
+        boolean consume(char c) {
+            skipSpace();
+            if (position < text.length() && text.charAt(position) == c) {
+                position++;
+                return true;
+            }
+            return false;
+        }
+
+        void expect(char c) {
+            if (!consume(c)) throw error("Expected '" + c + "'");
+        }
+
+        void end() {
+            skipSpace();
+            if (position != text.length()) throw error("Unexpected text after the object");
+        }
+
+        String value() {
+            skipSpace();
+            if (position >= text.length()) throw error("Expected a value");
+            char c = text.charAt(position);
+            if (c == '"') return string();
+            int start = position;
+            while (position < text.length() && "+-.0123456789eEtruefalsn".indexOf(text.charAt(position)) >= 0) {
+                position++;
+            }
+            String literal = text.substring(start, position);
+            if (literal.equals("null")) return null;
+            if (literal.equals("true") || literal.equals("false")) return literal;
+            // Checked against the JSON grammar rather than Double.parseDouble, which also takes 1f, +1, .5 and 1.,
+            // since numbers are handed on as written and may be echoed back verbatim
+            if (!NUMBER.matcher(literal).matches()) {
+                throw error("Expected a string, number, boolean or null");
+            }
+            return literal;
+        }
+
+        String string() {
+            expect('"');
+            StringBuilder value = new StringBuilder();
+            while (true) {
+                if (position >= text.length()) throw error("Unterminated string");
+                char c = text.charAt(position++);
+                if (c == '"') return value.toString();
+                if (c != '\\') {
+                    value.append(c);
+                    continue;
+                }
+                if (position >= text.length()) throw error("Unterminated string");
+                char escaped = text.charAt(position++);
+                switch (escaped) {
+                    case '"', '\\', '/' -> value.append(escaped);
+                    case 'b' -> value.append('\b');
+                    case 'f' -> value.append('\f');
+                    case 'n' -> value.append('\n');
+                    case 'r' -> value.append('\r');
+                    case 't' -> value.append('\t');
+                    case 'u' -> {
+                        if (position + 4 > text.length()) throw error("Bad \\u escape");
+                        try {
+                            value.append((char) Integer.parseInt(text.substring(position, position + 4), 16));
+                        } catch (NumberFormatException e) {
+                            throw error("Bad \\u escape");
+                        }
+                        position += 4;
+                    }
+                    default -> throw error("Bad escape \\" + escaped);
+                }
+            }
+        }
+
+        private IllegalArgumentException error(String message) {
+            return new IllegalArgumentException(message + " at position " + position);
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package backend;
+/**
+ * Lock-free latency histogram for timing calls on hot paths.
+ *
+ * Latencies in nanoseconds are counted in log-linear buckets: every power of two is split into SUB_BUCKETS equal
+ * buckets, so any recorded value is reported within about 6% of its true value from 1 ns up to about half an hour,
+ * with 608 buckets in total. Recording is one bucket index computation and a few atomic adds on preallocated
+ * arrays, so it never locks and never allocates. Percentiles are read from a snapshot of the bucket counts;
+ * snapshots taken while other threads record may be off by the calls in flight, which is fine for monitoring.
+ *
+ * Written by Andersen Breyel
+ **/
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+public final class LatencyHistogram {
+    private static final int SUB_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    // Largest power of two kept apart; larger values go in the last bucket
+    private static final int MAX_EXPONENT = 40;
+    private static final long MAX_VALUE = (1L << (MAX_EXPONENT + 1)) - 1;
+    private static final int BUCKETS = (MAX_EXPONENT - SUB_BITS + 2) * SUB_BUCKETS;
+
+    private final String name;
+    private final long createdNanos = System.nanoTime();
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong totalNanos = new AtomicLong();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    LatencyHistogram(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Records one call
+     * @param nanos how long the call took
+     * Written by Andersen Breyel
+     */
+    public void record(long nanos) {
+        long value = Math.min(Math.max(0, nanos), MAX_VALUE);
+        counts.incrementAndGet(bucket(value));
+        totalNanos.addAndGet(value);
+        long max = maxNanos.get();
+        while (value > max && !maxNanos.compareAndSet(max, value)) {
+            max = maxNanos.get();
+        }
+    }
+
+    /**
+     * Records one call that started at the given System.nanoTime()
+     * Written by Andersen Breyel
+     */
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    private static int bucket(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    /**
+     * @return largest value counted in the bucket
+     */
+    private static long bucketLimit(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int exponent = bucket / SUB_BUCKETS + SUB_BITS - 1;
+        int sub = bucket % SUB_BUCKETS;
+        long width = 1L << (exponent - SUB_BITS);
+        return ((long) (SUB_BUCKETS + sub) << (exponent - SUB_BITS)) + width - 1;
+    }
+
+    /**
+     * Copies the bucket counts, e.g. to diff against a later copy
+     * @return the counts of every bucket
+     * Written by Andersen Breyel
+     */
+    public long[] bucketCounts() {
+        long[] copy = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            copy[i] = counts.get(i);
+        }
+        return copy;
+    }
+
+    /**
+     * @return everything recorded since the histogram was created
+     * Written by Andersen Breyel
+     */
+    public Snapshot snapshot() {
+        double seconds = (System.nanoTime() - createdNanos) / 1e9;
+        return new Snapshot(bucketCounts(), null, totalNanos.get(), maxNanos.get(), seconds);
+    }
+
+    /**
+     * @param current  bucket counts at the end of the interval
+     * @param previous bucket counts at the start of the interval
+     * @param seconds  length of the interval
+     * @return         the calls recorded between the two copies; max and mean are estimated from the buckets
+     * Written by Andersen Breyel
+     */
+    public static Snapshot interval(long[] current, long[] previous, double seconds) {
+        return new Snapshot(current, previous, -1, -1, seconds);
+    }
+
+    /**
+     * Count, rate and percentiles of the calls in some time window, in milliseconds
+     * Written by Andersen Breyel
+     */
+    public static final class Snapshot {
+        private final long count;
+        private final double ratePerSecond;
+        private final double meanMillis;
+        private final double p50Millis;
+        private final double p99Millis;
+        private final double p999Millis;
+        private final double maxMillis;
+
+        private Snapshot(long[] current, long[] previous, long totalNanos, long maxNanos, double seconds) {
+            long[] counts = current;
+            if (previous != null) {
+                counts = new long[current.length];
+                for (int i = 0; i < counts.length; i++) counts[i] = current[i] - previous[i];
+            }
+            long total = 0;
+            double estimatedNanos = 0;
+            int highest = 0;
+            for (int i = 0; i < counts.length; i++) {
+                total += counts[i];
+                estimatedNanos += counts[i] * (double) bucketLimit(i);
+                if (counts[i] > 0) highest = i;
+            }
+            count = total;
+            ratePerSecond = seconds > 0 ? total / seconds : 0;
+            double sumNanos = totalNanos >= 0 ? totalNanos : estimatedNanos;
+            meanMillis = total == 0 ? 0 : sumNanos / total / 1e6;
+            p50Millis = percentile(counts, total, 0.5);
+            p99Millis = percentile(counts, total, 0.99);
+            p999Millis = percentile(counts, total, 0.999);
+            maxMillis = (maxNanos >= 0 ? maxNanos : total == 0 ? 0 : bucketLimit(highest)) / 1e6;
+        }
+
+        private static double percentile(long[] counts, long total, double fraction) {
+            if (total == 0) return 0;
+            long rank = (long) Math.ceil(total * fraction);
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) return bucketLimit(i) / 1e6;
+            }
+            return bucketLimit(counts.length - 1) / 1e6;
+        }
+
+        public long getCount() { return count; }
+        public double getRatePerSecond() { return ratePerSecond; }
+        public double getMeanMillis() { return meanMillis; }
+        public double getP50Millis() { return p50Millis; }
+        public double getP99Millis() { return p99Millis; }
+        public double getP999Millis() { return p999Millis; }
+        public double getMaxMillis() { return maxMillis; }
+
+        @Override
+        public String toString() {
+            return String.format("%,d calls, %.1f/s, p50 %.3f ms, p99 %.3f ms, p999 %.3f ms, max %.3f ms",
+                    count, ratePerSecond, p50Millis, p99Millis, p999Millis, maxMillis);
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package backend;
+/**
+ * Estimated heap used by the loaded model, broken down into the vocabulary strings, the unigram data, the bigram
+ * structure and the derived caches. Sizes follow the usual 64 bit HotSpot layout with compressed references:
+ * 12 byte object headers, 16 byte array headers, 4 byte references, everything padded to 8 bytes, and strings
+ * stored one byte per character.
+ *
+ * The same formulas are used to predict the footprint of a corpus from its row counts before it is loaded, so
+ * BigramProcessor can refuse a corpus that does not fit its heap budget instead of running out of memory halfway
+ * through startup.
+ *
+ * Written by Andersen Breyel
+ **/
+
+import java.util.Map;
+
+public final class MemoryFootprint {
+    private static final long ARRAY_HEADER = 16;
+    private static final long REFERENCE = 4;
+    // HashMap object without its table, and HashMap.Node: header, hash, key, value and next references
+    private static final long MAP_OBJECT = 48;
+    private static final long MAP_ENTRY = 32;
+    // Integer and Word objects
+    private static final long BOXED_INT = 16;
+    private static final long WORD_OBJECT = 32;
+    // String object without its byte array
+    private static final long STRING_OBJECT = 24;
+
+    private final long wordCount;
+    private final long bigramCount;
+    private final long vocabularyBytes;
+    private final long unigramBytes;
+    private final long bigramBytes;
+    private final long cacheBytes;
+
+    MemoryFootprint(long wordCount, long bigramCount, long vocabularyBytes, long unigramBytes, long bigramBytes,
+                    long cacheBytes) {
+        this.wordCount = wordCount;
+        this.bigramCount = bigramCount;
+        this.vocabularyBytes = vocabularyBytes;
+        this.unigramBytes = unigramBytes;
+        this.bigramBytes = bigramBytes;
+        this.cacheBytes = cacheBytes;
+    }
+
+    /**
+     * Predicts the footprint of a corpus before it is loaded, without any caches
+     * @param wordCount    rows in Words
+     * @param wordChars    total characters of all words
+     * @param bigramCount  rows in Relationships
+     * @param predecessors whether the predecessor index will be built
+     * @param bigramMap    whether the string keyed bigram map is built on the way to the model
+     * @return             the predicted footprint
+     * Written by Andersen Breyel
+     */
+    public static MemoryFootprint estimate(long wordCount, long wordChars, long bigramCount, boolean predecessors,
+                                           boolean bigramMap) {
+        double averageLength = wordCount == 0 ? 0 : (double) wordChars / wordCount;
+        long vocabulary = referenceArray(wordCount) + wordCount * (STRING_OBJECT + ARRAY_HEADER) + align(wordChars)
+                + hashMap(wordCount, BOXED_INT);
+        long unigram = 3 * intArray(wordCount) + hashMap(wordCount, WORD_OBJECT);
+        long bigram = bigramRows(wordCount, bigramCount) * (predecessors ? 2 : 1);
+        if (bigramMap) {
+            // "word1 word2" keys are built fresh for every bigram
+            bigram += bigramCount * (STRING_OBJECT + align(ARRAY_HEADER + Math.round(2 * averageLength + 1)))
+                    + hashMap(bigramCount, BOXED_INT);
+        }
+        return new MemoryFootprint(wordCount, bigramCount, vocabulary, unigram, bigram, 0);
+    }
+
+    /**
+     * Measures a built model and the caches built for it so far
+     * @param model     the model
+     * @param wordMap   whether the Word map of the vocabulary is kept next to the model
+     * @param bigramMap string keyed bigram map kept next to the model, or null
+     * @return          the footprint
+     */
+    static MemoryFootprint of(BigramModel model, boolean wordMap, Map<String, Integer> bigramMap) {
+        long wordCount = model.vocabSize();
+        long bigramCount = model.successorIds.length;
+        long vocabulary = referenceArray(wordCount) + hashMap(wordCount, BOXED_INT);
+        for (String word : model.words) {
+            vocabulary += string(word);
+        }
+        long unigram = 3 * intArray(wordCount) + (wordMap ? hashMap(wordCount, WORD_OBJECT) : 0);
+        long bigram = bigramRows(wordCount, bigramCount) * (model.hasPredecessors() ? 2 : 1);
+        if (bigramMap != null) {
+            bigram += hashMap(bigramMap.size(), BOXED_INT);
+            for (String key : bigramMap.keySet()) {
+                bigram += string(key);
+            }
+        }
+        return new MemoryFootprint(wordCount, bigramCount, vocabulary, unigram, bigram, model.cacheBytes());
+    }
+
+    /**
+     * @return offsets, ids, counts and running totals of one direction of bigram rows
+     */
+    private static long bigramRows(long wordCount, long bigramCount) {
+        return intArray(wordCount + 1) + 2 * intArray(bigramCount) + longArray(bigramCount);
+    }
+
+    static long align(long bytes) {
+        return (bytes + 7) & ~7L;
+    }
+
+    static long string(String text) {
+        return STRING_OBJECT + align(ARRAY_HEADER + text.length());
+    }
+
+    static long intArray(long length) {
+        return align(ARRAY_HEADER + 4 * length);
+    }
+
+    static long longArray(long length) {
+        return align(ARRAY_HEADER + 8 * length);
+    }
+
+    static long doubleArray(long length) {
+        return align(ARRAY_HEADER + 8 * length);
+    }
+
+    static long booleanArray(long length) {
+        return align(ARRAY_HEADER + length);
+    }
+
+    static long referenceArray(long length) {
+        return align(ARRAY_HEADER + REFERENCE * length);
+    }
+
+    /**
+     * @param entries    number of entries
+     * @param valueBytes size of each value object not shared with anything else
+     * @return           the table, the entries and their values, not counting the keys
+     */
+    static long hashMap(long entries, long valueBytes) {
+        long capacity = Long.highestOneBit(Math.max(1, (long) Math.ceil(entries / 0.75)) * 2 - 1);
+        return MAP_OBJECT + referenceArray(capacity) + entries * (MAP_ENTRY + valueBytes);
+    }
+
+    public long getWordCount() { return wordCount; }
+    public long getBigramCount() { return bigramCount; }
+    public long getVocabularyBytes() { return vocabularyBytes; }
+    public long getUnigramBytes() { return unigramBytes; }
+    public long getBigramBytes() { return bigramBytes; }
+    public long getCacheBytes() { return cacheBytes; }
+
+    public long getTotalBytes() {
+        return vocabularyBytes + unigramBytes + bigramBytes + cacheBytes;
+    }
+
+    /**
+     * @return vocabulary and unigram bytes per word
+     */
+    public double getBytesPerWord() {
+        return wordCount == 0 ? 0 : (double) (vocabularyBytes + unigramBytes) / wordCount;
+    }
+
+    /**
+     * @return bigram structure bytes per bigram
+     */
+    public double getBytesPerBigram() {
+        return bigramCount == 0 ? 0 : (double) bigramBytes / bigramCount;
+    }
+
+    /**
+     * @param bytes a size in bytes
+     * @return      the size in MB with one decimal
+     */
+    static String megabytes(long bytes) {
+        return String.format("%.1f MB", bytes / (1024.0 * 1024.0));
+    }
+
+    @Override
+    public String toString() {
+        return String.format("""
+                Model memory footprint for %,d words and %,d bigrams:
+                  vocabulary strings %12s
+                  unigram data       %12s
+                  bigram structure   %12s
+                  caches             %12s
+                  total              %12s (%.0f bytes/word, %.0f bytes/bigram)""",
+                wordCount, bigramCount, megabytes(vocabularyBytes), megabytes(unigramBytes), megabytes(bigramBytes),
+                megabytes(cacheBytes), megabytes(getTotalBytes()), getBytesPerWord(), getBytesPerBigram());
+    }
+}
@@ -0,0 +1,125 @@
+package backend;
+/**
+ * Named latency histograms for the service calls, model loads, database queries and ingestion flushes.
+ *
+ * Callers look their histogram up once, keep it in a static field and record into it with
+ * {@code long started = System.nanoTime(); try { ... } finally { HISTOGRAM.recordSince(started); }}, so timing a
+ * call costs two clock reads and a few atomic adds. Every histogram is exposed through the platform MBean server as
+ * backend:type=Metrics, readable from JConsole or any JMX client, and start() can also print a summary of the calls
+ * made in each period.
+ *
+ * Written by Andersen Breyel
+ **/
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+public final class Metrics {
+    private static final String OBJECT_NAME = "backend:type=Metrics";
+    private static final ConcurrentHashMap<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+    private static ScheduledExecutorService logger = null;
+
+    private Metrics() { }
+
+    /**
+     * Read-only view of every histogram for JMX clients
+     * Written by Andersen Breyel
+     */
+    public interface MetricsMXBean {
+        /**
+         * @return name -> count, rate and percentiles since the histogram was created
+         */
+        Map<String, LatencyHistogram.Snapshot> getLatencies();
+    }
+
+    private static final class MetricsBean implements MetricsMXBean {
+        @Override
+        public Map<String, LatencyHistogram.Snapshot> getLatencies() {
+            return snapshot();
+        }
+    }
+
+    /**
+     * Returns the histogram with the given name, creating it on first use. Names are grouped by a prefix such as
+     * "service.", "model.", "db." or "ingest.".
+     * @param name name of the timed call
+     * @return     the histogram
+     * Written by Andersen Breyel
+     */
+    public static LatencyHistogram histogram(String name) {
+        return histograms.computeIfAbsent(name, LatencyHistogram::new);
+    }
+
+    /**
+     * @return name -> everything recorded so far, sorted by name
+     * Written by Andersen Breyel
+     */
+    public static Map<String, LatencyHistogram.Snapshot> snapshot() {
+        TreeMap<String, LatencyHistogram.Snapshot> snapshots = new TreeMap<>();
+        for (LatencyHistogram histogram : histograms.values()) {
+            snapshots.put(histogram.getName(), histogram.snapshot());
+        }
+        return snapshots;
+    }
+
+    /**
+     * Registers the MBean and, if a period is given, starts printing a summary of the calls made in every period.
+     * Calling it again does nothing.
+     * @param logPeriodSeconds seconds between summaries, or 0 for no summaries
+     * Written by Andersen Breyel
+     */
+    public static synchronized void start(long logPeriodSeconds) {
+        try {
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (!ManagementFactory.getPlatformMBeanServer().isRegistered(name)) {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(new MetricsBean(), name);
+            }
+        } catch (JMException e) {
+            System.err.println("Could not register the metrics MBean: " + e.getMessage());
+        }
+
+        if (logger != null || logPeriodSeconds <= 0) {
+            return;
+        }
+        logger = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "metrics-log");
+            thread.setDaemon(true);
+            return thread;
+        });
+        Map<String, long[]> previous = new TreeMap<>();
+        long[] lastRun = { System.nanoTime() };
+        logger.scheduleAtFixedRate(() -> {
+            long now = System.nanoTime();
+            double seconds = (now - lastRun[0]) / 1e9;
+            lastRun[0] = now;
+            logSummary(previous, seconds);
+        }, logPeriodSeconds, logPeriodSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Prints one line per histogram that recorded calls since the last summary
+     * @param previous bucket counts at the last summary by name, updated in place
+     * @param seconds  time since the last summary
+     */
+    private static void logSummary(Map<String, long[]> previous, double seconds) {
+        StringBuilder summary = new StringBuilder();
+        for (LatencyHistogram histogram : new TreeMap<>(histograms).values()) {
+            long[] current = histogram.bucketCounts();
+            long[] before = previous.put(histogram.getName(), current);
+            LatencyHistogram.Snapshot interval =
+                    LatencyHistogram.interval(current, before == null ? new long[current.length] : before, seconds);
+            if (interval.getCount() == 0) continue;
+            summary.append(String.format("%n  %-32s %s", histogram.getName(), interval));
+        }
+        if (!summary.isEmpty()) {
+            System.out.println(String.format("Metrics for the last %.0f s:", seconds) + summary);
+        }
+    }
+}
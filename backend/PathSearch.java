@@ -0,0 +1,230 @@
+package backend;
+/**
+ * Finds the most probable word paths of bounded length from one word to another over the bigram graph.
+ * The search meets in the middle: a forward beam grows partial paths out of the start word along successor rows and
+ * a backward beam grows partial paths into the end word along predecessor rows, each side going about half the
+ * length. A path with L transitions is always split after ceil(L / 2) of them, so every path is found exactly once
+ * by joining the forward layer at that depth with the backward layer at the remaining depth on their shared word.
+ *
+ * Both sides are pruned by probability: each layer keeps its beamWidth best partial paths and at most count of
+ * them per word, which is all the join can use. Forward rows are sorted by count, so scanning a row stops as soon as
+ * nothing left in it can enter the beam. Intermediate words are never end-of-sentence words, matching how the
+ * generators stop at the first one.
+ *
+ * Written by Andersen Breyel
+ **/
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+final class PathSearch {
+    // Partial paths kept at each depth on each side
+    static final int DEFAULT_BEAM_WIDTH = 512;
+
+    /**
+     * Partial paths of one side stored flat in parallel arrays with parent pointers. Entries of depth d are
+     * layerStart[d] until layerStart[d + 1]; entry 0 is the root word.
+     */
+    private static final class Layers {
+        int[] word;
+        int[] parent;
+        double[] score;
+        final int[] layerStart;
+        int size = 0;
+
+        Layers(int depth, int root, int capacity) {
+            word = new int[capacity];
+            parent = new int[capacity];
+            score = new double[capacity];
+            layerStart = new int[depth + 2];
+            add(root, -1, 0.0);
+            layerStart[1] = 1;
+        }
+
+        void add(int wordId, int parentEntry, double logProbability) {
+            if (size == word.length) {
+                int capacity = size * 2;
+                word = Arrays.copyOf(word, capacity);
+                parent = Arrays.copyOf(parent, capacity);
+                score = Arrays.copyOf(score, capacity);
+            }
+            word[size] = wordId;
+            parent[size] = parentEntry;
+            score[size] = logProbability;
+            size++;
+        }
+    }
+
+    private final BigramModel model;
+    private final int startId;
+    private final int endId;
+    private final int count;
+    private final int vocabSize;
+    private final boolean smoothing;
+    private final TopKHeap beam;
+    private final double[] drainedScores;
+    private final long[] drainedPayloads;
+    // Entries kept per word in the layer being built, reset after each layer
+    private final int[] perWord;
+
+    private PathSearch(BigramModel model, int startId, int endId, int beamWidth, int count, boolean smoothing) {
+        this.model = model;
+        this.startId = startId;
+        this.endId = endId;
+        this.count = count;
+        this.vocabSize = model.vocabSize();
+        this.smoothing = smoothing;
+        this.beam = new TopKHeap(beamWidth);
+        this.drainedScores = new double[beamWidth];
+        this.drainedPayloads = new long[beamWidth];
+        this.perWord = new int[vocabSize];
+    }
+
+    /**
+     * Finds up to count paths from startId to endId with at most maxWords words, both ends included
+     * @param model     model with the predecessor index built
+     * @param startId   id of the first word
+     * @param endId     id of the last word
+     * @param maxWords  max number of words in a path, at least 2
+     * @param count     number of paths to return
+     * @param beamWidth partial paths kept at each depth on each side
+     * @param smoothing whether to apply laplace smoothing
+     * @return          word id paths from startId to endId, most probable first
+     */
+    static List<int[]> find(BigramModel model, int startId, int endId, int maxWords, int count, int beamWidth,
+                            boolean smoothing) {
+        return new PathSearch(model, startId, endId, beamWidth, count, smoothing).run(maxWords - 1);
+    }
+
+    private List<int[]> run(int maxTransitions) {
+        int forwardDepth = (maxTransitions + 1) / 2;
+        int backwardDepth = maxTransitions / 2;
+        Layers forward = new Layers(forwardDepth, startId, 1 + drainedScores.length);
+        Layers backward = new Layers(backwardDepth, endId, 1 + drainedScores.length);
+        for (int depth = 0; depth < forwardDepth; depth++) {
+            expandForward(forward, depth);
+        }
+        for (int depth = 0; depth < backwardDepth; depth++) {
+            expandBackward(backward, depth);
+        }
+
+        // Join the forward layer at ceil(L / 2) with the backward layer at floor(L / 2) for every length L
+        TopKHeap results = new TopKHeap(count);
+        int[] head = new int[vocabSize];
+        Arrays.fill(head, -1);
+        int[] next = new int[backward.size];
+        for (int transitions = 1; transitions <= maxTransitions; transitions++) {
+            int f = (transitions + 1) / 2;
+            int b = transitions / 2;
+            // Chain the backward entries of depth b by word
+            for (int e = backward.layerStart[b + 1] - 1; e >= backward.layerStart[b]; e--) {
+                next[e] = head[backward.word[e]];
+                head[backward.word[e]] = e;
+            }
+            for (int e = forward.layerStart[f]; e < forward.layerStart[f + 1]; e++) {
+                for (int m = head[forward.word[e]]; m >= 0; m = next[m]) {
+                    results.offer(forward.score[e] + backward.score[m], ((long) e << 32) | m);
+                }
+            }
+            for (int e = backward.layerStart[b]; e < backward.layerStart[b + 1]; e++) {
+                head[backward.word[e]] = -1;
+            }
+        }
+
+        int found = results.size();
+        double[] scores = new double[found];
+        long[] payloads = new long[found];
+        results.drainDescending(scores, payloads);
+        List<int[]> paths = new ArrayList<>(found);
+        for (int i = 0; i < found; i++) {
+            paths.add(rebuild(forward, (int) (payloads[i] >>> 32), backward, (int) payloads[i]));
+        }
+        return paths;
+    }
+
+    /**
+     * Builds the forward layer at depth + 1 from the successors of the layer at depth
+     */
+    private void expandForward(Layers layers, int depth) {
+        beam.clear();
+        for (int e = layers.layerStart[depth]; e < layers.layerStart[depth + 1]; e++) {
+            int wordId = layers.word[e];
+            // Paths stop at the end word and never pass through an end-of-sentence word
+            if (depth > 0 && (wordId == endId || model.isEndWord(wordId))) continue;
+            double base = layers.score[e];
+            for (int slot = model.successorOffsets[wordId]; slot < model.successorOffsets[wordId + 1]; slot++) {
+                double score = base + model.logProbability(wordId, slot, smoothing);
+                // Successors are sorted by count, so nothing later in the row scores higher
+                if (beam.isFull() && score <= beam.minScore()) break;
+                int nextId = model.successorIds[slot];
+                // An end word is only useful when it is the word we are looking for
+                if (nextId != endId && model.isEndWord(nextId)) continue;
+                beam.offer(score, ((long) e << 32) | nextId);
+            }
+        }
+        keepBeam(layers, depth + 1);
+    }
+
+    /**
+     * Builds the backward layer at depth + 1 from the predecessors of the layer at depth. Scores are the forward
+     * probabilities of the path from each predecessor to the end word.
+     */
+    private void expandBackward(Layers layers, int depth) {
+        beam.clear();
+        for (int e = layers.layerStart[depth]; e < layers.layerStart[depth + 1]; e++) {
+            int wordId = layers.word[e];
+            double base = layers.score[e];
+            for (int slot = model.predecessorOffsets[wordId]; slot < model.predecessorOffsets[wordId + 1]; slot++) {
+                int bigramCount = model.predecessorCounts[slot];
+                // Rows are sorted by count and a predecessor occurs at least as often as the bigram, so
+                // (count + 1) / (count + V) bounds every probability left in a smoothed row
+                if (smoothing && beam.isFull()
+                        && base + Math.log((double) (bigramCount + 1) / (bigramCount + vocabSize)) <= beam.minScore()) {
+                    break;
+                }
+                int previousId = model.predecessorIds[slot];
+                if (previousId == endId || model.isEndWord(previousId)) continue;
+                double score = base + model.logProbabilityOfCount(previousId, bigramCount, smoothing);
+                if (beam.isFull() && score <= beam.minScore()) continue;
+                beam.offer(score, ((long) e << 32) | previousId);
+            }
+        }
+        keepBeam(layers, depth + 1);
+    }
+
+    /**
+     * Moves the beam into the given layer, best first, keeping at most count entries per word
+     */
+    private void keepBeam(Layers layers, int depth) {
+        int kept = beam.drainDescending(drainedScores, drainedPayloads);
+        int from = layers.size;
+        for (int i = 0; i < kept; i++) {
+            int wordId = (int) drainedPayloads[i];
+            if (perWord[wordId] == count) continue;
+            perWord[wordId]++;
+            layers.add(wordId, (int) (drainedPayloads[i] >>> 32), drainedScores[i]);
+        }
+        for (int e = from; e < layers.size; e++) {
+            perWord[layers.word[e]] = 0;
+        }
+        layers.layerStart[depth + 1] = layers.size;
+    }
+
+    /**
+     * Joins a forward entry and a backward entry on their shared word into a full path
+     */
+    private static int[] rebuild(Layers forward, int forwardEntry, Layers backward, int backwardEntry) {
+        int forwardLength = 0;
+        for (int e = forwardEntry; e >= 0; e = forward.parent[e]) forwardLength++;
+        int backwardLength = 0;
+        for (int e = backward.parent[backwardEntry]; e >= 0; e = backward.parent[e]) backwardLength++;
+
+        int[] path = new int[forwardLength + backwardLength];
+        int i = forwardLength - 1;
+        for (int e = forwardEntry; e >= 0; e = forward.parent[e]) path[i--] = forward.word[e];
+        i = forwardLength;
+        for (int e = backward.parent[backwardEntry]; e >= 0; e = backward.parent[e]) path[i++] = backward.word[e];
+        return path;
+    }
+}
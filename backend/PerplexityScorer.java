@@ -0,0 +1,364 @@
+package backend;
+/**
+ * This class scores held-out text against the bigram model loaded by BigramProcessor.
+ * Text is tokenized with the same rules UpdatedPreProcessing uses for ingestion, so every token lines up with a row
+ * in the Words table. Each sentence gets a log-likelihood and a perplexity, and the whole input gets a corpus
+ * perplexity, which makes it usable as a quick regression check after every ingest.
+ *
+ * Files are streamed line by line on the calling thread while batches of finished sentences are scored in parallel,
+ * so large files never have to fit in memory before scoring starts. Only the totals are kept; callers that want the
+ * score of every sentence pass a callback, which gets each one in input order and keeps what it needs.
+ *
+ * Written by Andersen Breyel
+ **/
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+public class PerplexityScorer {
+    // Number of sentences handed to a worker at once
+    private static final int BATCH_SIZE = 2048;
+    // Maximum number of batches waiting to be scored before the reader blocks
+    private static final int MAX_IN_FLIGHT = 2 * Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Score of a single sentence. The log-likelihood is the natural log of the start probability of the first token
+     * plus the bigram probability of every following token, all with Laplace smoothing.
+     * Written by Andersen Breyel
+     */
+    public static final class SentenceScore {
+        private final String sentence;
+        private final int tokenCount;
+        private final double logLikelihood;
+
+        SentenceScore(String sentence, int tokenCount, double logLikelihood) {
+            this.sentence = sentence;
+            this.tokenCount = tokenCount;
+            this.logLikelihood = logLikelihood;
+        }
+
+        /** @return the sentence's tokens joined by spaces, or null when only the totals were asked for */
+        public String getSentence() { return sentence; }
+
+        public int getTokenCount() { return tokenCount; }
+
+        public double getLogLikelihood() { return logLikelihood; }
+
+        /**
+         * @return exp(-logLikelihood / tokenCount)
+         */
+        public double getPerplexity() {
+            return Math.exp(-logLikelihood / tokenCount);
+        }
+    }
+
+    /**
+     * Corpus totals over every scored sentence
+     * Written by Andersen Breyel
+     */
+    public static final class ScoreReport {
+        private final long sentenceCount;
+        private final long tokenCount;
+        private final double logLikelihood;
+
+        ScoreReport(long sentenceCount, long tokenCount, double logLikelihood) {
+            this.sentenceCount = sentenceCount;
+            this.tokenCount = tokenCount;
+            this.logLikelihood = logLikelihood;
+        }
+
+        public long getSentenceCount() { return sentenceCount; }
+
+        public long getTokenCount() { return tokenCount; }
+
+        public double getLogLikelihood() { return logLikelihood; }
+
+        /**
+         * @return exp(-total log-likelihood / total tokens), or NaN if there was nothing to score
+         */
+        public double getPerplexity() {
+            return tokenCount == 0 ? Double.NaN : Math.exp(-logLikelihood / tokenCount);
+        }
+    }
+
+    /**
+     * Collects tokens into sentences and submits a batch for scoring every BATCH_SIZE sentences.
+     * A sentence ends at end-of-sentence punctuation or whenever the tokenizer starts a token with no previous word.
+     * Scored batches are added to the totals and handed to the callback, then dropped.
+     * Written by Andersen Breyel
+     */
+    private static final class SentenceCollector implements UpdatedPreProcessing.TokenSink {
+        private final ArrayDeque<Future<List<SentenceScore>>> pending = new ArrayDeque<>();
+        // Every sentence is scored against these counts, even if a file is ingested while scoring
+        private final BigramProcessor.Library library;
+        private final Consumer<SentenceScore> perSentence;
+        private long sentenceCount = 0;
+        private long tokenCount = 0;
+        private double logLikelihood = 0.0;
+        private List<String[]> batch = new ArrayList<>(BATCH_SIZE);
+        private final ArrayList<String> sentence = new ArrayList<>();
+
+        SentenceCollector(BigramProcessor.Library library, Consumer<SentenceScore> perSentence) {
+            this.library = library;
+            this.perSentence = perSentence;
+        }
+
+        @Override
+        public void accept(String previous, String token, boolean startsSentence, boolean endsSentence) {
+            if (previous == null) {
+                endSentence();
+            }
+            sentence.add(token);
+            if (endsSentence) {
+                endSentence();
+            }
+        }
+
+        private void endSentence() {
+            if (sentence.isEmpty()) return;
+            batch.add(sentence.toArray(new String[0]));
+            sentence.clear();
+            if (batch.size() >= BATCH_SIZE) {
+                submitBatch();
+            }
+        }
+
+        private void submitBatch() {
+            if (batch.isEmpty()) return;
+            List<String[]> toScore = batch;
+            batch = new ArrayList<>(BATCH_SIZE);
+            boolean withText = perSentence != null;
+            pending.add(ForkJoinPool.commonPool().submit(() -> scoreBatch(library, toScore, withText)));
+            // Keep memory bounded by collecting the oldest batch once enough are in flight
+            while (pending.size() > MAX_IN_FLIGHT) {
+                collectOldest();
+            }
+        }
+
+        private void collectOldest() {
+            try {
+                for (SentenceScore score : pending.poll().get()) {
+                    sentenceCount++;
+                    tokenCount += score.getTokenCount();
+                    logLikelihood += score.getLogLikelihood();
+                    if (perSentence != null) perSentence.accept(score);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Scoring interrupted", e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Scoring failed: " + e.getCause().getMessage(), e.getCause());
+            }
+        }
+
+        ScoreReport finish() {
+            endSentence();
+            submitBatch();
+            while (!pending.isEmpty()) {
+                collectOldest();
+            }
+            return new ScoreReport(sentenceCount, tokenCount, logLikelihood);
+        }
+    }
+
+    /**
+     * Scores every sentence in a batch
+     * @param library  counts to score against
+     * @param batch    tokenized sentences
+     * @param withText whether the scores carry the sentence text
+     * @return         one score per sentence in the same order
+     * Written by Andersen Breyel
+     */
+    private static List<SentenceScore> scoreBatch(BigramProcessor.Library library, List<String[]> batch,
+                                                  boolean withText) {
+        List<SentenceScore> scores = new ArrayList<>(batch.size());
+        for (String[] tokens : batch) {
+            scores.add(scoreSentence(library, tokens, withText));
+        }
+        return scores;
+    }
+
+    /**
+     * Scores a single tokenized sentence
+     * @param library  counts to score against
+     * @param tokens   cleaned tokens of the sentence, at least one
+     * @param withText whether to keep the tokens joined as the sentence text, otherwise it is null
+     * @return         the sentence score
+     * Written by Andersen Breyel
+     */
+    private static SentenceScore scoreSentence(BigramProcessor.Library library, String[] tokens, boolean withText) {
+        double logLikelihood = BigramProcessor.smoothedLogStartProbability(library, tokens[0]);
+        for (int i = 1; i < tokens.length; i++) {
+            logLikelihood += BigramProcessor.smoothedLogProbability(library, tokens[i - 1], tokens[i]);
+        }
+        return new SentenceScore(withText ? String.join(" ", tokens) : null, tokens.length, logLikelihood);
+    }
+
+    /**
+     * Scores a text file, streaming it line by line
+     * @param file text file to score
+     * @return     corpus scores
+     * @throws IOException if the file can't be read
+     * Written by Andersen Breyel
+     */
+    public static ScoreReport score(File file) throws IOException {
+        return score(file, null);
+    }
+
+    /**
+     * Scores a text file, streaming it line by line, and hands the score of every sentence to a callback
+     * @param file        text file to score
+     * @param perSentence gets each sentence's score in input order on the calling thread, or null
+     * @return            corpus scores
+     * @throws IOException if the file can't be read
+     * Written by Andersen Breyel
+     */
+    public static ScoreReport score(File file, Consumer<SentenceScore> perSentence) throws IOException {
+        SentenceCollector collector = new SentenceCollector(loadedLibrary(), perSentence);
+        UpdatedPreProcessing.TokenizerState state = new UpdatedPreProcessing.TokenizerState();
+        try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                UpdatedPreProcessing.tokenizeLine(line, state, collector);
+            }
+        } catch (SQLException e) {
+            // SentenceCollector never touches the database
+            throw new IllegalStateException(e);
+        }
+        return collector.finish();
+    }
+
+    /**
+     * Scores lines of text held in memory. Lines are treated as one continuous document, the same way a file is.
+     * @param lines lines of text to score
+     * @return      corpus scores
+     * Written by Andersen Breyel
+     */
+    public static ScoreReport score(List<String> lines) {
+        return score(lines, null);
+    }
+
+    /**
+     * Scores lines of text held in memory like score(lines), and hands the score of every sentence to a callback
+     * @param lines       lines of text to score
+     * @param perSentence gets each sentence's score in input order on the calling thread, or null
+     * @return            corpus scores
+     * Written by Andersen Breyel
+     */
+    public static ScoreReport score(List<String> lines, Consumer<SentenceScore> perSentence) {
+        SentenceCollector collector = new SentenceCollector(loadedLibrary(), perSentence);
+        UpdatedPreProcessing.TokenizerState state = new UpdatedPreProcessing.TokenizerState();
+        try {
+            for (String line : lines) {
+                UpdatedPreProcessing.tokenizeLine(line, state, collector);
+            }
+        } catch (SQLException e) {
+            // SentenceCollector never touches the database
+            throw new IllegalStateException(e);
+        }
+        return collector.finish();
+    }
+
+    /**
+     * Scores a short text on the calling thread, for callers that already score many texts in parallel and would
+     * only pay for a hand-off to the pool here
+     * @param text text of one or more sentences
+     * @return     total scores of the text
+     * Written by Andersen Breyel
+     */
+    public static ScoreReport scoreText(String text) {
+        BigramProcessor.Library library = loadedLibrary();
+        List<SentenceScore> scores = new ArrayList<>();
+        ArrayList<String> sentence = new ArrayList<>();
+        UpdatedPreProcessing.TokenSink sink = (previous, token, startsSentence, endsSentence) -> {
+            if (previous == null && !sentence.isEmpty()) {
+                scores.add(scoreSentence(library, sentence.toArray(new String[0]), false));
+                sentence.clear();
+            }
+            sentence.add(token);
+            if (endsSentence) {
+                scores.add(scoreSentence(library, sentence.toArray(new String[0]), false));
+                sentence.clear();
+            }
+        };
+        try {
+            UpdatedPreProcessing.tokenizeLine(text, new UpdatedPreProcessing.TokenizerState(), sink);
+        } catch (SQLException e) {
+            // The sink never touches the database
+            throw new IllegalStateException(e);
+        }
+        if (!sentence.isEmpty()) {
+            scores.add(scoreSentence(library, sentence.toArray(new String[0]), false));
+        }
+        long tokens = 0;
+        double logLikelihood = 0.0;
+        for (SentenceScore score : scores) {
+            tokens += score.getTokenCount();
+            logLikelihood += score.getLogLikelihood();
+        }
+        return new ScoreReport(scores.size(), tokens, logLikelihood);
+    }
+
+    /**
+     * Makes sure the model has been loaded before scoring against it
+     * @return the counts to score against, read once so a whole input is scored against the same ones
+     * Written by Andersen Breyel
+     */
+    private static BigramProcessor.Library loadedLibrary() {
+        BigramProcessor.Library library = BigramProcessor.currentLibrary();
+        if (library == null) {
+            throw new IllegalStateException("BigramProcessor not initialized. Create a BigramProcessor first.");
+        }
+        return library;
+    }
+
+    /**
+     * Scores the given files, or every .txt file in resources/ if none are given, and prints the perplexity of each
+     * Written by Andersen Breyel
+     */
+    public static void main(String[] args) {
+        try {
+            // load the model from the database
+            new BigramProcessor();
+
+            List<File> files = new ArrayList<>();
+            if (args.length > 0) {
+                for (String arg : args) files.add(new File(arg));
+            } else {
+                File[] resources = new File("resources").listFiles((dir, name) -> name.endsWith(".txt"));
+                if (resources != null) Collections.addAll(files, resources);
+            }
+
+            long totalTokens = 0;
+            double totalLogLikelihood = 0.0;
+            long start = System.nanoTime();
+            for (File file : files) {
+                ScoreReport report = score(file);
+                totalTokens += report.getTokenCount();
+                totalLogLikelihood += report.getLogLikelihood();
+                System.out.printf("%s: %d sentences, %d tokens, perplexity %.2f%n", file.getName(),
+                        report.getSentenceCount(), report.getTokenCount(), report.getPerplexity());
+            }
+            long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+            if (totalTokens > 0) {
+                System.out.printf("Corpus: %d tokens, perplexity %.2f (%d ms)%n", totalTokens,
+                        Math.exp(-totalLogLikelihood / totalTokens), elapsedMs);
+            }
+        } catch (Exception e) {
+            System.err.println("Error: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package backend;
+/**
+ * Typeahead over the vocabulary: the most frequent words, or the most common sentence starters, that begin with a
+ * typed prefix.
+ *
+ * Word ids are kept in one array sorted by text, so the words under any trie node, i.e. sharing a prefix, are one
+ * contiguous range found with two binary searches. Only the nodes that would be slow to scan, those with more than
+ * SCAN_LIMIT words below them, are materialized; each keeps its top CACHE_SIZE words for both rankings. Smaller
+ * ranges are ranked on the fly with a top-K heap, so a lookup costs two binary searches plus at most a
+ * SCAN_LIMIT word scan whatever the vocabulary size, and the cached nodes stay few: a node is only cached when
+ * its range is large, and sibling ranges never overlap. For the bound to hold no lookup returns more than
+ * CACHE_SIZE words.
+ *
+ * Written by Andersen Breyel
+ **/
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+final class PrefixIndex {
+    // Largest range ranked by scanning instead of from a node cache
+    static final int SCAN_LIMIT = 256;
+    // Completions kept per cached node, and the most any lookup returns
+    static final int CACHE_SIZE = 16;
+
+    private final String[] words;
+    private final int[] frequency;
+    private final int[] startCount;
+    // Word ids in text order
+    private final int[] sorted;
+    // Top completions of every node with more than SCAN_LIMIT words, keyed by the node's prefix
+    private final HashMap<String, int[]> topByFrequency = new HashMap<>();
+    private final HashMap<String, int[]> topByStartCount = new HashMap<>();
+
+    private PrefixIndex(String[] words, int[] frequency, int[] startCount, int[] sorted) {
+        this.words = words;
+        this.frequency = frequency;
+        this.startCount = startCount;
+        this.sorted = sorted;
+    }
+
+    /**
+     * Sorts the vocabulary and fills the caches of every large node
+     * @param words      word text indexed by id
+     * @param frequency  word frequency indexed by id
+     * @param startCount starting word occurrences indexed by id
+     * @return           the index
+     */
+    static PrefixIndex build(String[] words, int[] frequency, int[] startCount) {
+        Integer[] boxed = new Integer[words.length];
+        for (int i = 0; i < boxed.length; i++) boxed[i] = i;
+        Arrays.parallelSort(boxed, (a, b) -> words[a].compareTo(words[b]));
+        int[] sorted = new int[boxed.length];
+        for (int i = 0; i < sorted.length; i++) sorted[i] = boxed[i];
+
+        PrefixIndex index = new PrefixIndex(words, frequency, startCount, sorted);
+        index.cacheNode("", 0, sorted.length);
+        return index;
+    }
+
+    /**
+     * Caches the node for the prefix covering sorted[from .. to) if it is large, then its children
+     */
+    private void cacheNode(String prefix, int from, int to) {
+        if (to - from <= SCAN_LIMIT) {
+            return;
+        }
+        topByFrequency.put(prefix, rank(from, to, CACHE_SIZE, false));
+        topByStartCount.put(prefix, rank(from, to, CACHE_SIZE, true));
+
+        // The word equal to the prefix sorts first; the rest split into one child per next character
+        int depth = prefix.length();
+        int child = from;
+        while (child < to && words[sorted[child]].length() == depth) child++;
+        while (child < to) {
+            char next = words[sorted[child]].charAt(depth);
+            int end = child + 1;
+            while (end < to && words[sorted[end]].charAt(depth) == next) end++;
+            cacheNode(words[sorted[child]].substring(0, depth + 1), child, end);
+            child = end;
+        }
+    }
+
+    /**
+     * Top words within sorted[from .. to). Equal counts are ordered alphabetically.
+     * @param byStartCount rank by starting word occurrences and skip words that never start a sentence,
+     *                     instead of ranking by frequency
+     * @return             word ids, best first
+     */
+    private int[] rank(int from, int to, int limit, boolean byStartCount) {
+        TopKHeap heap = new TopKHeap(limit);
+        // Every count times (n + 1) plus the reversed position is exact in a double
+        double scale = sorted.length + 1.0;
+        for (int i = from; i < to; i++) {
+            int id = sorted[i];
+            int count = byStartCount ? startCount[id] : frequency[id];
+            if (byStartCount && count == 0) continue;
+            double score = count * scale + (sorted.length - i);
+            if (heap.isFull() && score <= heap.minScore()) continue;
+            heap.offer(score, id);
+        }
+        double[] scores = new double[heap.size()];
+        long[] payloads = new long[heap.size()];
+        int found = heap.drainDescending(scores, payloads);
+        int[] ids = new int[found];
+        for (int i = 0; i < found; i++) ids[i] = (int) payloads[i];
+        return ids;
+    }
+
+    /**
+     * @return estimated heap used by the index, not counting the shared word arrays
+     */
+    long bytes() {
+        long bytes = MemoryFootprint.intArray(sorted.length);
+        for (HashMap<String, int[]> cache : List.of(topByFrequency, topByStartCount)) {
+            bytes += MemoryFootprint.hashMap(cache.size(), 0);
+            for (Map.Entry<String, int[]> node : cache.entrySet()) {
+                bytes += MemoryFootprint.string(node.getKey()) + MemoryFootprint.intArray(node.getValue().length);
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Completes a prefix with known words
+     * @param prefix       lowercase prefix
+     * @param limit        max number of words to return, at most CACHE_SIZE are
+     * @param byStartCount rank by starting word occurrences, leaving out words that never start a sentence,
+     *                     instead of by frequency
+     * @return             word ids, best first
+     */
+    int[] complete(String prefix, int limit, boolean byStartCount) {
+        // A larger limit would rank a large node's whole range, e.g. every word under a one letter prefix
+        limit = Math.min(limit, CACHE_SIZE);
+        int from = lowerBound(prefix);
+        int to = upperBound(prefix, from);
+        if (to - from > SCAN_LIMIT) {
+            int[] cached = (byStartCount ? topByStartCount : topByFrequency).get(prefix);
+            if (cached != null) {
+                return cached.length <= limit ? cached : Arrays.copyOf(cached, limit);
+            }
+        }
+        return rank(from, to, limit, byStartCount);
+    }
+
+    /**
+     * @return first position in sorted whose word is not less than the prefix
+     */
+    private int lowerBound(String prefix) {
+        int low = 0;
+        int high = sorted.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (words[sorted[mid]].compareTo(prefix) < 0) low = mid + 1;
+            else high = mid;
+        }
+        return low;
+    }
+
+    /**
+     * @return first position at or after from whose word does not start with the prefix
+     */
+    private int upperBound(String prefix, int from) {
+        int low = from;
+        int high = sorted.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (words[sorted[mid]].startsWith(prefix)) low = mid + 1;
+            else high = mid;
+        }
+        return low;
+    }
+}
@@ -0,0 +1,241 @@
+package backend;
+/**
+ * Compact binary log of the requests made to SentenceService, so real traffic with its real prefix skew can be
+ * captured and played back later against any model.
+ *
+ * A log starts with the magic number, a format version and the wall clock time recording started. Each request is
+ * then written as the microseconds since the previous request, the operation, the algorithm, a number (the count
+ * or limit asked for) and the request's strings, all integers as variable-length numbers. A string is written in
+ * full the first time it appears and as a small id afterwards, so a prefix typed by many users costs a byte or two.
+ * Only the first MAX_STRINGS distinct strings get ids, which bounds the memory of writer and reader alike.
+ *
+ * Written by Andersen Breyel
+ **/
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+public final class RequestLog {
+    private static final int MAGIC = 0x53424C47;
+    private static final int VERSION = 1;
+    // Distinct strings that get ids; later new strings are always written in full
+    private static final int MAX_STRINGS = 1 << 16;
+    // String references: null, a string written in full, or an id counted from FIRST_ID
+    private static final int NULL_STRING = 0;
+    private static final int NEW_STRING = 1;
+    private static final int FIRST_ID = 2;
+
+    private RequestLog() { }
+
+    /**
+     * The SentenceService calls that are logged
+     */
+    public enum Operation {
+        GENERATE_SENTENCE_WEIGHTED, GENERATE_SENTENCE_THREE_RANDOM, GENERATE_SENTENCE_TOP_ONE, GENERATE_SENTENCE,
+        GENERATE_SENTENCE_CONSTRAINED, GENERATE_SENTENCE_ENDING_WITH, GENERATE_SENTENCES_BEAM,
+        GENERATE_SENTENCES_BETWEEN, GET_WORD_COMPLETIONS, GET_NEXT_WORD_SUGGESTIONS
+    }
+
+    /**
+     * One logged request
+     * Written by Andersen Breyel
+     */
+    public static final class Request {
+        private final long micros;
+        private final Operation operation;
+        private final GenerationAlgorithm algorithm;
+        private final int number;
+        private final List<String> texts;
+
+        Request(long micros, Operation operation, GenerationAlgorithm algorithm, int number, List<String> texts) {
+            this.micros = micros;
+            this.operation = operation;
+            this.algorithm = algorithm;
+            this.number = number;
+            this.texts = texts;
+        }
+
+        /** @return microseconds since recording started */
+        public long getMicros() { return micros; }
+        public Operation getOperation() { return operation; }
+        /** @return algorithm asked for, or null if the call has no choice of algorithm */
+        public GenerationAlgorithm getAlgorithm() { return algorithm; }
+        /** @return count or limit asked for, or 0 */
+        public int getNumber() { return number; }
+        /** @return the request's strings in parameter order, any of which may be null */
+        public List<String> getTexts() { return texts; }
+    }
+
+    /**
+     * Appends requests to a log file; safe to call from many threads
+     * Written by Andersen Breyel
+     */
+    public static final class Writer implements Closeable {
+        private final DataOutputStream out;
+        private final HashMap<String, Integer> ids = new HashMap<>();
+        private long lastNanos = System.nanoTime();
+        private long requests = 0;
+
+        public Writer(File file) throws IOException {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            out.writeLong(System.currentTimeMillis());
+        }
+
+        /**
+         * Logs one request
+         * @param operation the call
+         * @param algorithm algorithm asked for, or null
+         * @param number    count or limit asked for, or 0
+         * @param texts     the request's strings in parameter order
+         */
+        public synchronized void append(Operation operation, GenerationAlgorithm algorithm, int number,
+                                        String... texts) throws IOException {
+            long now = System.nanoTime();
+            writeVarLong(out, (now - lastNanos) / 1000);
+            // Keep the remainder, so rounding to microseconds does not add up over many requests
+            lastNanos = now - (now - lastNanos) % 1000;
+            out.writeByte(operation.ordinal());
+            out.writeByte(algorithm == null ? 0 : algorithm.ordinal() + 1);
+            writeVarLong(out, number);
+            writeVarLong(out, texts.length);
+            for (String text : texts) {
+                writeString(text);
+            }
+            requests++;
+        }
+
+        private void writeString(String text) throws IOException {
+            if (text == null) {
+                writeVarLong(out, NULL_STRING);
+                return;
+            }
+            Integer id = ids.get(text);
+            if (id != null) {
+                writeVarLong(out, FIRST_ID + id);
+                return;
+            }
+            if (ids.size() < MAX_STRINGS) {
+                ids.put(text, ids.size());
+            }
+            byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+            writeVarLong(out, NEW_STRING);
+            writeVarLong(out, bytes.length);
+            out.write(bytes);
+        }
+
+        /** @return number of requests logged so far */
+        public synchronized long getRequests() {
+            return requests;
+        }
+
+        @Override
+        public synchronized void close() throws IOException {
+            out.close();
+        }
+    }
+
+    /**
+     * Reads a log written by Writer from the start
+     * Written by Andersen Breyel
+     */
+    public static final class Reader implements Closeable {
+        private final DataInputStream in;
+        private final long startMillis;
+        private final ArrayList<String> strings = new ArrayList<>();
+        private long micros = 0;
+
+        public Reader(File file) throws IOException {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16));
+            if (in.readInt() != MAGIC || in.readByte() != VERSION) {
+                in.close();
+                throw new IOException(file + " is not a request log");
+            }
+            startMillis = in.readLong();
+        }
+
+        /** @return wall clock time recording started, in milliseconds since the epoch */
+        public long getStartMillis() {
+            return startMillis;
+        }
+
+        /**
+         * @return the next request, or null at the end of the log
+         * @throws IOException if the log cannot be read or ends in the middle of a request
+         */
+        public Request next() throws IOException {
+            long delta;
+            try {
+                delta = readVarLong(in);
+            } catch (EOFException e) {
+                return null;
+            }
+            micros += delta;
+            Operation operation = Operation.values()[in.readUnsignedByte()];
+            int algorithm = in.readUnsignedByte();
+            int number = (int) readVarLong(in);
+            int count = (int) readVarLong(in);
+            List<String> texts = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                texts.add(readString());
+            }
+            return new Request(micros, operation,
+                    algorithm == 0 ? null : GenerationAlgorithm.values()[algorithm - 1], number, texts);
+        }
+
+        private String readString() throws IOException {
+            int reference = (int) readVarLong(in);
+            if (reference == NULL_STRING) {
+                return null;
+            }
+            if (reference >= FIRST_ID) {
+                return strings.get(reference - FIRST_ID);
+            }
+            byte[] bytes = new byte[(int) readVarLong(in)];
+            in.readFully(bytes);
+            String text = new String(bytes, StandardCharsets.UTF_8);
+            if (strings.size() < MAX_STRINGS) {
+                strings.add(text);
+            }
+            return text;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    /**
+     * Writes a non-negative number seven bits at a time, low bits first
+     */
+    private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+    }
+}
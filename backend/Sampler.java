@@ -0,0 +1,77 @@
+package backend;
+
+import java.util.random.RandomGenerator;
+
+/**
+ * Strategy for picking the next word during sentence generation. BigramProcessor runs a single generation loop and
+ * asks the sampler which successor of the current word to use at each step.
+ *
+ * A sampler only sees one row of the model: the successor counts of the current word sorted from most to least
+ * common, plus running totals of those counts. The running totals let every sampler find its pick with a binary
+ * search instead of rebuilding a probability map for each word.
+ *
+ * Written by Andersen Breyel
+ */
+public interface Sampler {
+
+    /**
+     * Picks one successor from a row of the model
+     * @param counts     successor counts, sorted from most to least common within the row
+     * @param cumulative running totals within each row: cumulative[slot] = counts[from] + ... + counts[slot]
+     * @param from       first slot of the row
+     * @param to         one past the last slot of the row, greater than from
+     * @param smoothing  whether laplace smoothing adds 1 to every count
+     * @param rng        source of randomness
+     * @return           slot of the chosen successor, from <= slot < to
+     */
+    int pick(int[] counts, long[] cumulative, int from, int to, boolean smoothing, RandomGenerator rng);
+
+    /**
+     * @return sampler that picks a successor at random weighted by its bigram probability
+     */
+    static Sampler weighted() {
+        return Samplers.WEIGHTED;
+    }
+
+    /**
+     * @return sampler that picks uniformly from the three most probable successors
+     */
+    static Sampler threeRandom() {
+        return Samplers.THREE_RANDOM;
+    }
+
+    /**
+     * @return sampler that always picks the most probable successor
+     */
+    static Sampler topOne() {
+        return Samplers.TOP_ONE;
+    }
+
+    /**
+     * @param k number of most probable successors to sample from, at least 1
+     * @return  sampler that picks among the k most probable successors weighted by probability
+     */
+    static Sampler topK(int k) {
+        if (k < 1) throw new IllegalArgumentException("k must be at least 1: " + k);
+        return new Samplers.TopK(k);
+    }
+
+    /**
+     * @param p probability mass to keep, greater than 0 and at most 1
+     * @return  sampler that picks among the smallest set of most probable successors whose total probability
+     *          reaches p, weighted by probability (nucleus sampling)
+     */
+    static Sampler nucleus(double p) {
+        if (!(p > 0.0 && p <= 1.0)) throw new IllegalArgumentException("p must be in (0, 1]: " + p);
+        return new Samplers.Nucleus(p);
+    }
+
+    /**
+     * @param temperature positive temperature; below 1 favors common successors, above 1 flattens the distribution
+     * @return            sampler that picks a successor with probability proportional to count^(1 / temperature)
+     */
+    static Sampler temperature(double temperature) {
+        if (!(temperature > 0.0)) throw new IllegalArgumentException("temperature must be positive: " + temperature);
+        return new Samplers.Temperature(temperature);
+    }
+}
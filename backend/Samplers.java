@@ -0,0 +1,182 @@
+package backend;
+
+import java.util.random.RandomGenerator;
+
+/**
+ * The Sampler implementations behind the factory methods on Sampler.
+ * Written by Andersen Breyel
+ */
+final class Samplers {
+    static final Sampler WEIGHTED = new Weighted();
+    static final Sampler THREE_RANDOM = new ThreeRandom();
+    static final Sampler TOP_ONE = new TopOne();
+
+    private Samplers() { }
+
+    /**
+     * Total weight of the row from its first slot through slot. With laplace smoothing every successor's
+     * probability is (count + 1) / (prefixCount + vocabSize), so its weight is count + 1.
+     */
+    static long weightThrough(long[] cumulative, int from, int slot, boolean smoothing) {
+        return smoothing ? cumulative[slot] + (slot - from + 1) : cumulative[slot];
+    }
+
+    /**
+     * Binary search for the first slot in [from, to) whose running weight is greater than target
+     * @return the slot, or to - 1 if target is at or past the end of the range
+     */
+    static int searchWeight(long[] cumulative, int from, int to, boolean smoothing, double target) {
+        int low = from;
+        int high = to - 1;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (weightThrough(cumulative, from, mid, smoothing) > target) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Weighted pick among the first 'limit' slots of a row
+     */
+    static int pickWeightedPrefix(long[] cumulative, int from, int limit, boolean smoothing, RandomGenerator rng) {
+        long total = weightThrough(cumulative, from, limit - 1, smoothing);
+        return searchWeight(cumulative, from, limit, smoothing, rng.nextDouble() * total);
+    }
+
+    // Picks a successor at random weighted by its bigram probability
+    private static final class Weighted implements Sampler {
+        @Override
+        public int pick(int[] counts, long[] cumulative, int from, int to, boolean smoothing, RandomGenerator rng) {
+            return pickWeightedPrefix(cumulative, from, to, smoothing, rng);
+        }
+    }
+
+    // Picks uniformly from the three most probable successors, which are the first three in the row
+    private static final class ThreeRandom implements Sampler {
+        @Override
+        public int pick(int[] counts, long[] cumulative, int from, int to, boolean smoothing, RandomGenerator rng) {
+            return from + rng.nextInt(Math.min(3, to - from));
+        }
+    }
+
+    // Always picks the most probable successor, which is the first in the row
+    private static final class TopOne implements Sampler {
+        @Override
+        public int pick(int[] counts, long[] cumulative, int from, int to, boolean smoothing, RandomGenerator rng) {
+            return from;
+        }
+    }
+
+    // Weighted pick among the k most probable successors
+    static final class TopK implements Sampler {
+        private final int k;
+
+        TopK(int k) {
+            this.k = k;
+        }
+
+        @Override
+        public int pick(int[] counts, long[] cumulative, int from, int to, boolean smoothing, RandomGenerator rng) {
+            return pickWeightedPrefix(cumulative, from, Math.min(to, from + k), smoothing, rng);
+        }
+    }
+
+    // Weighted pick among the smallest run of most probable successors that holds at least p of the row's weight
+    static final class Nucleus implements Sampler {
+        private final double p;
+
+        Nucleus(double p) {
+            this.p = p;
+        }
+
+        @Override
+        public int pick(int[] counts, long[] cumulative, int from, int to, boolean smoothing, RandomGenerator rng) {
+            long total = weightThrough(cumulative, from, to - 1, smoothing);
+            // The nucleus ends at the first slot whose running weight reaches p of the total
+            double threshold = p * total;
+            int low = from;
+            int high = to - 1;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (weightThrough(cumulative, from, mid, smoothing) >= threshold) {
+                    high = mid;
+                } else {
+                    low = mid + 1;
+                }
+            }
+            return pickWeightedPrefix(cumulative, from, low + 1, smoothing, rng);
+        }
+    }
+
+    /**
+     * Picks a successor with probability proportional to weight^(1 / temperature). The reshaped weights can't be
+     * derived from the count totals, so generation asks the model for running totals of the reshaped weights, which
+     * the model builds once per set of rows and drops along with itself, and each pick stays a binary search. Rows
+     * picked from without a model are reshaped on the spot.
+     */
+    static final class Temperature implements Sampler {
+        private final double exponent;
+
+        Temperature(double temperature) {
+            this.exponent = 1.0 / temperature;
+        }
+
+        double exponent() {
+            return exponent;
+        }
+
+        @Override
+        public int pick(int[] counts, long[] cumulative, int from, int to, boolean smoothing, RandomGenerator rng) {
+            double total = 0.0;
+            for (int slot = from; slot < to; slot++) {
+                total += Math.pow(counts[slot] + (smoothing ? 1 : 0), exponent);
+            }
+            double target = rng.nextDouble() * total;
+            for (int slot = from; slot < to - 1; slot++) {
+                target -= Math.pow(counts[slot] + (smoothing ? 1 : 0), exponent);
+                if (target < 0) return slot;
+            }
+            return to - 1;
+        }
+
+        /**
+         * Picks from a row using running totals built by buildTable
+         */
+        int pick(double[] reshaped, int from, int to, RandomGenerator rng) {
+            // Rows restart their totals, so the row's total is its last entry
+            double target = rng.nextDouble() * reshaped[to - 1];
+            int low = from;
+            int high = to - 1;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (reshaped[mid] > target) {
+                    high = mid;
+                } else {
+                    low = mid + 1;
+                }
+            }
+            return low;
+        }
+
+        /**
+         * Running totals of the reshaped weights over a whole set of rows, restarting at every row
+         */
+        static double[] buildTable(int[] counts, long[] cumulative, boolean smoothing, double exponent) {
+            double[] reshaped = new double[counts.length];
+            double total = 0.0;
+            for (int slot = 0; slot < counts.length; slot++) {
+                // Rows are sorted by count, so a running total equal to the slot's own count means a new row starts here
+                if (cumulative[slot] == counts[slot]) {
+                    total = 0.0;
+                }
+                total += Math.pow(counts[slot] + (smoothing ? 1 : 0), exponent);
+                reshaped[slot] = total;
+            }
+            return reshaped;
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package backend;
+/**
+ * In-memory ranking of sentence starting words, in the order the HomeView dropdown shows them:
+ * starting_word_occurences descending, then word_frequency descending, then alphabetically.
+ *
+ * The index is rebuilt from the word counts whenever BigramProcessor loads the model and is kept current as
+ * files are ingested, so reading the top N words walks the first N entries of a sorted set instead of sorting
+ * the Words table. A word is re-positioned in O(log n) when its counts change. The database is only read for a
+ * cold rebuild, when the index is asked for words before any model was loaded.
+ *
+ * Written by Andersen Breyel
+ **/
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeSet;
+
+public final class StartWordIndex {
+    /**
+     * Ranked entry of a starting word. Entries are immutable; a count change replaces the entry.
+     */
+    private static final class Entry implements Comparable<Entry> {
+        final String word;
+        final int startCount;
+        final int frequency;
+
+        Entry(String word, int startCount, int frequency) {
+            this.word = word;
+            this.startCount = startCount;
+            this.frequency = frequency;
+        }
+
+        @Override
+        public int compareTo(Entry other) {
+            if (startCount != other.startCount) return Integer.compare(other.startCount, startCount);
+            if (frequency != other.frequency) return Integer.compare(other.frequency, frequency);
+            return word.compareTo(other.word);
+        }
+    }
+
+    // Counts of every known word as {word_frequency, starting_word_occurences}
+    private static HashMap<String, int[]> counts = null;
+    // Words with starting_word_occurences > 0, best first
+    private static TreeSet<Entry> ranked = null;
+
+    private StartWordIndex() { }
+
+    /**
+     * Rebuilds the index from a full set of word counts
+     * @param words words keyed by text, e.g. the map BigramProcessor loads
+     * Written by Andersen Breyel
+     */
+    public static synchronized void rebuild(Map<String, Word> words) {
+        counts = new HashMap<>(words.size() * 2);
+        ranked = new TreeSet<>();
+        for (Word word : words.values()) {
+            counts.put(word.getWordText(), new int[] { word.getFrequency(), word.getStartWordCount() });
+            if (word.getStartWordCount() > 0) {
+                ranked.add(new Entry(word.getWordText(), word.getStartWordCount(), word.getFrequency()));
+            }
+        }
+    }
+
+    /**
+     * Applies a change in counts to one word, e.g. for every word of a file once it is ingested.
+     * Ignored until the index has been built, since a rebuild reads the changed counts anyway.
+     * @param word           word text
+     * @param frequencyDelta change in word_frequency
+     * @param startDelta     change in starting_word_occurences
+     * Written by Andersen Breyel
+     */
+    public static synchronized void update(String word, int frequencyDelta, int startDelta) {
+        if (counts == null) {
+            return;
+        }
+        int[] wordCounts = counts.computeIfAbsent(word, w -> new int[2]);
+        if (wordCounts[1] > 0) {
+            ranked.remove(new Entry(word, wordCounts[1], wordCounts[0]));
+        }
+        wordCounts[0] = Math.max(0, wordCounts[0] + frequencyDelta);
+        wordCounts[1] = Math.max(0, wordCounts[1] + startDelta);
+        if (wordCounts[1] > 0) {
+            ranked.add(new Entry(word, wordCounts[1], wordCounts[0]));
+        } else if (wordCounts[0] == 0) {
+            counts.remove(word);
+        }
+    }
+
+    /**
+     * Returns the top N starting words ordered by starting_word_occurences (and word_frequency as a tiebreaker).
+     * Used by the frontend to display the top 10 words in the HomeView.
+     * @param limit maximum number of words to return
+     * @return an ArrayList of starting words
+     * Written by Andersen Breyel
+     */
+    public static synchronized ArrayList<String> getTopStartingWords(int limit) {
+        if (ranked == null) {
+            // Cold rebuild: nothing has loaded the words yet
+            rebuild(DatabaseManager.loadAllWordsOptimized());
+        }
+        ArrayList<String> words = new ArrayList<>(Math.max(0, Math.min(limit, ranked.size())));
+        Iterator<Entry> entries = ranked.iterator();
+        while (words.size() < limit && entries.hasNext()) {
+            words.add(entries.next().word);
+        }
+        return words;
+    }
+}
@@ -2,14 +2,33 @@ package backend;
 
 /**
  *  Main method that creates an instance of DatabaseManager and BigramProcessor to run
+ *  With --batch it answers JSON-lines requests from stdin on stdout instead, see BatchProcessor:
+ *      java backend.TextProcessorMain --batch [--parallelism=<cores>] [--inFlight=4096] [--order=input|completion]
  *  Written by Ezzah, Khushi, Andersen
  **/
 
 import backend.BigramProcessor;
 import backend.DatabaseManager;
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
 public class TextProcessorMain {
     public static void main(String[] args) {
+        if (args.length > 0 && args[0].equals("--batch")) {
+            runBatch(args);
+            return;
+        }
         try {
             // create instance of Database Manager
             DatabaseManager dbManager = new DatabaseManager();
@@ -27,4 +46,38 @@ public class TextProcessorMain {
             e.printStackTrace();
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Loads the model from the database and answers the JSON-lines requests on stdin
+     * Written by Andersen Breyel
+     */
+    private static void runBatch(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 1; i < args.length; i++) {
+            String arg = args[i];
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Expected --name=value, got " + arg);
+            }
+            options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+        }
+        int parallelism = Integer.parseInt(options.getOrDefault("parallelism",
+                String.valueOf(Runtime.getRuntime().availableProcessors())));
+        int inFlight = Integer.parseInt(options.getOrDefault("inFlight", "4096"));
+        BatchProcessor.Order order =
+                BatchProcessor.Order.valueOf(options.getOrDefault("order", "input").toUpperCase(Locale.ROOT));
+
+        // stdout carries only results, so everything else the backend prints goes to stderr
+        Writer out = new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(FileDescriptor.out), StandardCharsets.UTF_8), 1 << 16);
+        System.setOut(new PrintStream(new FileOutputStream(FileDescriptor.err), true, StandardCharsets.UTF_8));
+        try {
+            new BigramProcessor();
+            BufferedReader in = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8), 1 << 16);
+            BatchProcessor.run(in, out, parallelism, inFlight, order);
+        } catch (Exception e) {
+            System.err.println("Error: " + e.getMessage());
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package backend;
+/**
+ * Fixed capacity min-heap that keeps the K highest scoring entries offered to it.
+ * Scores are doubles and payloads are longs held in parallel primitive arrays, so offering a candidate never
+ * allocates. The generation algorithms pack word ids and hypothesis indexes into the payload.
+ *
+ * Written by Andersen Breyel
+ **/
+
+final class TopKHeap {
+    private final double[] scores;
+    private final long[] payloads;
+    private int size = 0;
+
+    /**
+     * @param capacity number of entries to keep, at least 1
+     */
+    TopKHeap(int capacity) {
+        scores = new double[Math.max(1, capacity)];
+        payloads = new long[scores.length];
+    }
+
+    int size() { return size; }
+
+    boolean isFull() { return size == scores.length; }
+
+    /**
+     * @return the lowest score currently kept; only meaningful when the heap is not empty
+     */
+    double minScore() { return scores[0]; }
+
+    void clear() { size = 0; }
+
+    /**
+     * Offers an entry to the heap. When the heap is full the entry replaces the current minimum only if it scores higher.
+     * @param score   score of the entry
+     * @param payload value carried with the score
+     * @return        true if the entry was kept
+     */
+    boolean offer(double score, long payload) {
+        if (size < scores.length) {
+            // sift up from the new leaf
+            int i = size++;
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (scores[parent] <= score) break;
+                scores[i] = scores[parent];
+                payloads[i] = payloads[parent];
+                i = parent;
+            }
+            scores[i] = score;
+            payloads[i] = payload;
+            return true;
+        }
+        if (score <= scores[0]) return false;
+        siftDown(score, payload);
+        return true;
+    }
+
+    /**
+     * Replaces the root with the given entry and restores the heap order
+     */
+    private void siftDown(double score, long payload) {
+        int i = 0;
+        int half = size >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            if (child + 1 < size && scores[child + 1] < scores[child]) child++;
+            if (score <= scores[child]) break;
+            scores[i] = scores[child];
+            payloads[i] = payloads[child];
+            i = child;
+        }
+        scores[i] = score;
+        payloads[i] = payload;
+    }
+
+    /**
+     * Empties the heap into the given arrays ordered from highest to lowest score
+     * @param scoresOut   receives the scores, length at least size()
+     * @param payloadsOut receives the payloads, length at least size()
+     * @return            number of entries written
+     */
+    int drainDescending(double[] scoresOut, long[] payloadsOut) {
+        int count = size;
+        for (int i = count - 1; i >= 0; i--) {
+            // pop the minimum into the last open slot
+            scoresOut[i] = scores[0];
+            payloadsOut[i] = payloads[0];
+            size--;
+            if (size > 0) {
+                siftDown(scores[size], payloads[size]);
+            }
+        }
+        return count;
+    }
+}
@@ -11,10 +11,68 @@ package backend;
 
 import java.sql.*;
 import java.io.*;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Scanner;
 
 public class UpdatedPreProcessing {
     private static DatabaseManager dbManager = null;
+    // accented character -> regular character, loaded from accents.txt on first use
+    private static volatile char[] accentMap = null;
+
+    /**
+     * Receives the tokens produced by tokenizeLine in document order.
+     * Ingestion uses it to write words and bigrams to the database and PerplexityScorer uses it
+     * to score held-out text, so both always see exactly the same tokens.
+     * Written by Andersen Breyel
+     */
+    public interface TokenSink {
+        /**
+         * @param previous       token this one follows in the same sentence, or null if there is no bigram to record
+         * @param token          cleaned, lowercase token
+         * @param startsSentence true if the token counts as a sentence start
+         * @param endsSentence   true if the token is end-of-sentence punctuation
+         */
+        void accept(String previous, String token, boolean startsSentence, boolean endsSentence) throws SQLException;
+    }
+
+    /**
+     * Stages of ingesting a file: reading and decoding lines, splitting and cleaning them into tokens, tallying the
+     * counts in memory, and writing to the database
+     * Written by Andersen Breyel
+     */
+    public enum Stage { READ, CLEAN, COUNT, WRITE }
+
+    /**
+     * Time spent in each stage, summed over every file ingested with the same instance
+     * Written by Andersen Breyel
+     */
+    public static final class StageTimes {
+        private final long[] nanos = new long[Stage.values().length];
+
+        public void add(Stage stage, long elapsedNanos) {
+            nanos[stage.ordinal()] += elapsedNanos;
+        }
+
+        public long getNanos(Stage stage) {
+            return nanos[stage.ordinal()];
+        }
+
+        public long getTotalNanos() {
+            long total = 0;
+            for (long stageNanos : nanos) total += stageNanos;
+            return total;
+        }
+    }
+
+    /**
+     * Tokenizer state that carries across lines, since a sentence may span several lines of a file
+     * Written by Andersen Breyel
+     */
+    public static final class TokenizerState {
+        private String previousWord = null;
+        private boolean isItFirstWord = true;
+    }
 
     /**
      * Constructor
@@ -61,16 +119,19 @@ public class UpdatedPreProcessing {
     }
 
     /**
-     * Searches given ASCII file for the unaccented equivalent of an accented character
-     * Each line in the file has the form accented=regular to appropriately parse
-     * If there is an equivalent, corresponding regular character is returned; otherwise, '\0' is returned.
+     * Loads the accent mappings from the given ASCII file into a lookup table indexed by character.
+     * Each line in the file has the form accented=regular to appropriately parse.
+     * The table is built once and shared, so cleaning a word never has to reopen the mapping file.
      *
-     * @param accented     The accented character to be converted
      * @param accentsFile  The text file that defines mappings of accented to regular characters
-     * @return             The unaccented equivalent if found; '\0' if not found or if an error occurs
-     * Written by Khushi Dubey
+     * @return             Table where index c holds the unaccented equivalent of c, or '\0' if there is none
+     * Written by Khushi Dubey edited by Andersen Breyel
      */
-    private static char findRegularChar(char accented, Scanner accentsFile) {
+    private static char[] loadAccentMap(Scanner accentsFile) {
+        char[] map = new char[256];
+        // a missing mapping file leaves every entry as '\0'
+        if (accentsFile == null) return map;
+
         // loop lines on the mapping file
         while (accentsFile.hasNextLine()) {
             String line = accentsFile.nextLine();
@@ -82,20 +143,41 @@ public class UpdatedPreProcessing {
                 String[] parts = line.split("=");
 
                 // ensure line is properly parsed into two parts
-                if (parts.length == 2) {
+                if (parts.length == 2 && !parts[0].isBlank() && !parts[1].isBlank()) {
                     // extract accented character and equivalent regular character
                     char accentedChar = parts[0].trim().charAt(0);
                     char regularChar = parts[1].trim().charAt(0);
 
-                    // return the mapping if match is found
-                    if (accentedChar == accented) {
-                        return regularChar;
+                    // store the mapping if it is in the accented range
+                    if (accentedChar < map.length) {
+                        map[accentedChar] = regularChar;
                     }
                 }
             }
         }
-        // Accented char is not found return null
-        return '\0';
+        return map;
+    }
+
+    /**
+     * Returns the unaccented equivalent of an accented character, loading accents.txt the first time it is needed
+     *
+     * @param accented The accented character to be converted
+     * @return         The unaccented equivalent if found; '\0' if not found
+     * Written by Khushi Dubey edited by Andersen Breyel
+     */
+    private static char findRegularChar(char accented) {
+        char[] map = accentMap;
+        if (map == null) {
+            synchronized (UpdatedPreProcessing.class) {
+                if (accentMap == null) {
+                    Scanner accentScanner = importFile("accents.txt");
+                    accentMap = loadAccentMap(accentScanner);
+                    if (accentScanner != null) accentScanner.close();
+                }
+                map = accentMap;
+            }
+        }
+        return accented < map.length ? map[accented] : '\0';
     }
 
     /**
@@ -128,11 +210,8 @@ public class UpdatedPreProcessing {
 
             // replace accented with their regular equivalents
             if (isAccented(currentChar)) {
-                // Create a new scanner for each accented character
-                Scanner accentScanner = importFile("accents.txt");
-                char replacement = findRegularChar(currentChar, accentScanner);
-
-                if (accentScanner != null) accentScanner.close();
+                // Look up the replacement in the shared accent table
+                char replacement = findRegularChar(currentChar);
 
                 // if replacement letter is found, add replaced letter to final preprocessed word
                 if (replacement != '\0') {
@@ -155,138 +234,214 @@ public class UpdatedPreProcessing {
     }
 
     /**
-     * Method that loops through the given document and preprocesses it, discarding miscellaneous symbols, converting
-     * words to lower case, and cleaning them by removing miscellaneous symbols and converting accented characters,
-     * before calling the method countWords to update the database
-     * while keeping track of words added
-     * @param textFile   Scanner object of the text document to preprocess
-     * @return           int of the number of words added to the database
+     * Splits a single line into cleaned tokens and hands each one to the sink, discarding miscellaneous symbols,
+     * converting words to lower case, and separating end-of-sentence punctuation into its own token.
+     * Sentence boundaries and the previous word are tracked in the given state so that bigrams continue across lines.
+     * @param line   raw line of text
+     * @param state  tokenizer state shared by all lines of the same document
+     * @param sink   receives each token along with its previous word and sentence flags
+     * @return       int of the number of tokens produced from the line
      * Written by Andersen Breyel edited by Ezzah
      */
-    private static int preprocess(Scanner textFile) throws SQLException {
-        // track total number of words
+    public static int tokenizeLine(String line, TokenizerState state, TokenSink sink) throws SQLException {
         int count = 0;
-        boolean isItFirstWord = true;
-        String previousWord = null;
+        line = line.trim();
 
-        // Process the text line by line (newlines are ignored)
-        while (textFile.hasNextLine()) {
-            String line = textFile.nextLine().trim();
+        // skip empty lines
+        if (line.isEmpty()) return 0;
 
-            // skip empty lines
-            if (line.isEmpty()) continue;
+        // Split on whitespace — newlines are already ignored
+        String[] tokens = line.toLowerCase().split("\\s+");
 
-            // Split on whitespace — newlines are already ignored
-            String[] tokens = line.toLowerCase().split("\\s+");
+        for (String rawToken : tokens) {
+            // skip if any token is empty
+            if (rawToken.isEmpty()) continue;
 
-            for (String rawToken : tokens) {
-                // skip if any token is empty
-                if (rawToken.isEmpty()) continue;
+            // Clean token (removes garbage & converts accents but keeps punctuation)
+            String cleanedWord = cleanWord(rawToken);
 
-                // Clean token (removes garbage & converts accents but keeps punctuation)
-                String cleanedWord = cleanWord(rawToken);
-
-                // skip word if it becomes empty after cleaning it
-                if (cleanedWord == null || cleanedWord.isEmpty()) {
-                    continue;
-                }
+            // skip word if it becomes empty after cleaning it
+            if (cleanedWord == null || cleanedWord.isEmpty()) {
+                continue;
+            }
 
-                // If word ends with punctuation, separate it as its own token
-                char lastChar = cleanedWord.charAt(cleanedWord.length() - 1);
-                boolean endsWithPunc = (lastChar == '.' || lastChar == '!' || lastChar == '?');
-
-                // handle words that end with punctuation
-                // account for case if a punctuation ends a word that was cleaned out, so standalone punctuation
-                if (endsWithPunc) {
-                    // Case 1: Only punctuation (e.g., ".")
-                    if (cleanedWord.length() == 1) {
-                        String punctuation = cleanedWord;
-
-                        // Create Word object for punctuation
-                        Word punctuationWord = new Word(punctuation, 0, 1, 1);
-                        dbManager.insertWord(punctuationWord);
-                        count++;
-
-                        // If there was a previous word, get the word IDs and create Relationship object and insert bigrams
-                        if (previousWord != null) {
-                            int previousWordID = dbManager.getWordId(previousWord);
-                            int punctuationID = dbManager.getWordId(punctuation);
-                            Relationship rel = new Relationship(previousWordID, punctuationID, 1);
-                            dbManager.insertBigram(rel);
-                        }
-
-                        // set booleans
-                        previousWord = null;
-                        isItFirstWord = true;
-                    } else {
-                        // Add the word minus punctuation
-                        String wordPart = cleanedWord.substring(0, cleanedWord.length() - 1);
-                        String punctuation = Character.toString(lastChar);
-
-                        // check the bool value
-                        int firstWordInt = isItFirstWord ? 1 : 0;
-
-                        // Send word part and insert bigram from previous word
-                        // Create Word object for the word part
-                        Word wordPartObj = new Word(wordPart, firstWordInt, 0, 1);
-                        dbManager.insertWord(wordPartObj);
-                        count++;
-
-                        // If there was a previous word, get the word IDs and create Relationship object and insert bigrams
-                        if (previousWord != null) {
-                            int previousWordID = dbManager.getWordId(previousWord);
-                            int wordPartID = dbManager.getWordId(wordPart);
-                            Relationship rel1 = new Relationship(previousWordID, wordPartID, 1);
-                            dbManager.insertBigram(rel1);
-                        }
-
-                        // Send punctuation as end-of-sentence marker
-                        // Create Word object for punctuation
-                        Word punctuationObj = new Word(punctuation, 0, 1, 1);
-                        dbManager.insertWord(punctuationObj);
-                        count++;
-
-                        // Insert bigram from word to punctuation
-                        int wordPartID = dbManager.getWordId(wordPart);
-                        int punctuationID = dbManager.getWordId(punctuation);
-                        Relationship rel2 = new Relationship(wordPartID, punctuationID, 1);
-                        dbManager.insertBigram(rel2);
-
-                        // set bools
-                        previousWord = null;
-                        isItFirstWord = true;
-                    }
-                } else {
-                    // check boolean value
-                    int firstWordInt = isItFirstWord ? 1 : 0;
-                    // Regular word without punctuation
-                    Word wordObj = new Word(cleanedWord, firstWordInt, 0, 1);
-                    dbManager.insertWord(wordObj);
+            // If word ends with punctuation, separate it as its own token
+            char lastChar = cleanedWord.charAt(cleanedWord.length() - 1);
+            boolean endsWithPunc = (lastChar == '.' || lastChar == '!' || lastChar == '?');
+
+            // handle words that end with punctuation
+            // account for case if a punctuation ends a word that was cleaned out, so standalone punctuation
+            if (endsWithPunc) {
+                // Case 1: Only punctuation (e.g., ".")
+                if (cleanedWord.length() == 1) {
+                    // Punctuation is an end-of-sentence marker, linked to the previous word if there was one
+                    sink.accept(state.previousWord, cleanedWord, false, true);
                     count++;
+                } else {
+                    // Add the word minus punctuation
+                    String wordPart = cleanedWord.substring(0, cleanedWord.length() - 1);
+                    String punctuation = Character.toString(lastChar);
 
-                    // If there was a previous word, get word IDs and insert the bigram relationship
-                    if (previousWord != null) {
-                        int previousWordID = dbManager.getWordId(previousWord);
-                        int cleanedWordID = dbManager.getWordId(cleanedWord);
-                        Relationship rel = new Relationship(previousWordID, cleanedWordID,1);
-                        dbManager.insertBigram(rel);
-                    }
+                    // Send word part and the bigram from the previous word
+                    sink.accept(state.previousWord, wordPart, state.isItFirstWord, false);
+                    count++;
 
-                    // set bools
-                    previousWord = cleanedWord;
-                    isItFirstWord = false;
+                    // Send punctuation as end-of-sentence marker along with the bigram from the word part
+                    sink.accept(wordPart, punctuation, false, true);
+                    count++;
                 }
+
+                // set booleans
+                state.previousWord = null;
+                state.isItFirstWord = true;
+            } else {
+                // Regular word without punctuation
+                sink.accept(state.previousWord, cleanedWord, state.isItFirstWord, false);
+                count++;
+
+                // set bools
+                state.previousWord = cleanedWord;
+                state.isItFirstWord = false;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Reads the document line by line and hands every token to the sink, timing the read and clean stages.
+     * The sink adds its own count and write time to the same StageTimes, which is taken out of the clean stage.
+     * @param textFile Scanner object of the text document
+     * @param sink     receives each token, see tokenizeLine
+     * @param times    receives the time spent reading and cleaning
+     * @return         int of the number of tokens in the document
+     * Written by Andersen Breyel
+     */
+    public static int tokenizeLines(Scanner textFile, TokenSink sink, StageTimes times) throws SQLException {
+        int count = 0;
+        TokenizerState state = new TokenizerState();
+        long readStarted = System.nanoTime();
+        while (textFile.hasNextLine()) {
+            String line = textFile.nextLine();
+            long cleanStarted = System.nanoTime();
+            times.add(Stage.READ, cleanStarted - readStarted);
+            long sinkNanos = times.getNanos(Stage.COUNT) + times.getNanos(Stage.WRITE);
+            count += tokenizeLine(line, state, sink);
+            sinkNanos = times.getNanos(Stage.COUNT) + times.getNanos(Stage.WRITE) - sinkNanos;
+            readStarted = System.nanoTime();
+            times.add(Stage.CLEAN, readStarted - cleanStarted - sinkNanos);
+        }
+        times.add(Stage.READ, System.nanoTime() - readStarted);
+        return count;
+    }
+
+    /**
+     * Method that loops through the given document and preprocesses it with tokenizeLine, storing every token
+     * in the Words table and every pair of consecutive tokens in the Relationships table
+     * while keeping track of words added. The counts of this document alone are tallied as well, so they can be
+     * stored under its file_id once the file has been recorded.
+     * @param textFile    Scanner object of the text document to preprocess
+     * @param fileWords   receives word -> {frequency, start count, end count} within this document
+     * @param fileBigrams receives "word1 word2" -> count within this document
+     * @param event       flight recorder event of the file, which the time spent in the database is added to
+     * @param times       receives the time spent in each stage
+     * @return            int of the number of words added to the database
+     * Written by Andersen Breyel edited by Ezzah
+     */
+    private static int preprocess(Scanner textFile, HashMap<String, int[]> fileWords,
+                                  HashMap<String, Integer> fileBigrams, FlightEvents.IngestFile event,
+                                  StageTimes times) throws SQLException {
+        // Insert each token and, if it follows another word, the bigram relationship
+        TokenSink databaseSink = (previous, token, startsSentence, endsSentence) -> {
+            long writeStarted = System.nanoTime();
+            dbManager.insertWord(new Word(token, startsSentence ? 1 : 0, endsSentence ? 1 : 0, 1));
+            if (previous != null) {
+                int previousWordID = dbManager.lookupWordId(previous);
+                int tokenID = dbManager.lookupWordId(token);
+                dbManager.insertBigram(new Relationship(previousWordID, tokenID, 1));
+            }
+            long countStarted = System.nanoTime();
+            event.addDatabaseTime(countStarted - writeStarted);
+            times.add(Stage.WRITE, countStarted - writeStarted);
+
+            int[] wordCounts = fileWords.computeIfAbsent(token, w -> new int[3]);
+            wordCounts[0]++;
+            if (startsSentence) wordCounts[1]++;
+            if (endsSentence) wordCounts[2]++;
+            if (previous != null) {
+                fileBigrams.merge(previous + " " + token, 1, Integer::sum);
+            }
+            times.add(Stage.COUNT, System.nanoTime() - countStarted);
+        };
+
+        // Process the text line by line (newlines are ignored)
+        return tokenizeLines(textFile, databaseSink, times);
+    }
+
+    /**
+     * Tokenizes a text file and tallies its counts in memory without touching the database, in the form
+     * BigramProcessor.loadCounts takes them, so a model can be built straight from text files
+     * @param file    text file to read
+     * @param words   receives word -> counts, added to the counts already in the map
+     * @param bigrams receives "word1 word2" -> count, added to the counts already in the map
+     * @return        int of the number of tokens in the file
+     * @throws IOException if the file cannot be read
+     * Written by Andersen Breyel
+     */
+    public static int countFile(File file, Map<String, Word> words, Map<String, Integer> bigrams)
+            throws IOException {
+        return countFile(file, words, bigrams, new StageTimes());
+    }
+
+    /**
+     * Same as countFile(file, words, bigrams), also timing the read, clean and count stages
+     * @param times receives the time spent in each stage
+     * Written by Andersen Breyel
+     */
+    public static int countFile(File file, Map<String, Word> words, Map<String, Integer> bigrams, StageTimes times)
+            throws IOException {
+        HashMap<String, int[]> fileWords = new HashMap<>();
+        TokenSink countingSink = (previous, token, startsSentence, endsSentence) -> {
+            long countStarted = System.nanoTime();
+            int[] wordCounts = fileWords.computeIfAbsent(token, w -> new int[3]);
+            wordCounts[0]++;
+            if (startsSentence) wordCounts[1]++;
+            if (endsSentence) wordCounts[2]++;
+            if (previous != null) {
+                bigrams.merge(previous + " " + token, 1, Integer::sum);
             }
+            times.add(Stage.COUNT, System.nanoTime() - countStarted);
+        };
+
+        int count;
+        try (Scanner textFile = new Scanner(file)) {
+            count = tokenizeLines(textFile, countingSink, times);
+        } catch (SQLException e) {
+            // The counting sink never touches the database
+            throw new IllegalStateException(e);
         }
+
+        long countStarted = System.nanoTime();
+        for (Map.Entry<String, int[]> entry : fileWords.entrySet()) {
+            int[] c = entry.getValue();
+            Word old = words.get(entry.getKey());
+            if (old != null) {
+                c[0] += old.getFrequency();
+                c[1] += old.getStartWordCount();
+                c[2] += old.getEndWordCount();
+            }
+            words.put(entry.getKey(), new Word(entry.getKey(), c[1], c[2], c[0]));
+        }
+        times.add(Stage.COUNT, System.nanoTime() - countStarted);
         return count;
     }
 
     /**
      * This method uses processSingleFile to process a file that is imported from the frontend GUI
      * @param file File object representing the text file to be processed
+     * @return file_id the file was stored under, or -1 if it could not be processed
      * Written by Sneha Shrinivas edited by ezzah
      */
-    public static void processFileFromGui(File file) {
+    public static int processFileFromGui(File file) {
         try {
             // Get or create DB connection
             DatabaseManager dbManager = new DatabaseManager();
@@ -295,7 +450,7 @@ public class UpdatedPreProcessing {
             new UpdatedPreProcessing(dbManager);
 
             // Re-use the single-file logic (same as CLI, but no user prompts)
-            processSingleFile(dbManager, file);
+            return processSingleFile(dbManager, file);
 
             // Optionally: don't disconnect so the app can reuse the connection
             // dbManager.disconnect();
@@ -303,17 +458,76 @@ public class UpdatedPreProcessing {
         } catch (Exception e) {
             System.err.println("Error processing uploaded file: " + e.getMessage());
             e.printStackTrace();
+            return -1;
         }
     }
 
+    /**
+     * Unloads a file imported earlier: its counts are subtracted from the database, from the loaded model and from
+     * the start word ranking, undoing what processSingleFile added, so the result is the same as if it had never
+     * been ingested, without rebuilding anything. If the file's counts cannot be read nothing is changed; files
+     * ingested before per file counts were kept cannot be unloaded at all.
+     * @param fileId file_id the file was stored under
+     * @return true if the file was taken out of the database, false if it could not be and is still part of the
+     *         counts. If only the loaded model could not be updated an error says so and the model keeps counting
+     *         the file until it is loaded again.
+     * Written by Andersen Breyel
+     */
+    public static boolean unloadFile(int fileId) {
+        HashMap<String, Word> fileWords;
+        HashMap<String, Integer> fileBigrams;
+        try {
+            // Read the file's counts before the rows recording them are deleted; a failed read throws before the delete
+            fileWords = DatabaseManager.loadFileWords(fileId);
+            fileBigrams = DatabaseManager.loadFileBigrams(fileId);
+            // Files ingested before FileWords existed have words counted in Words but none recorded for the file
+            if (fileWords.isEmpty() && DatabaseManager.loadFileWordCount(fileId) > 0) {
+                System.err.println("Error unloading file: file " + fileId
+                        + " was ingested before per file counts were kept, so its counts cannot be taken out");
+                return false;
+            }
+            new DatabaseManager().removeFileCounts(fileId);
+        } catch (Exception e) {
+            System.err.println("Error unloading file: " + e.getMessage());
+            e.printStackTrace();
+            return false;
+        }
+
+        // The database no longer counts the file, whatever happens to the model from here on
+        try {
+            BigramProcessor.removeFileCounts(fileId, fileWords, fileBigrams);
+            for (Word word : fileWords.values()) {
+                StartWordIndex.update(word.getWordText(), -word.getFrequency(), -word.getStartWordCount());
+            }
+        } catch (RuntimeException e) {
+            System.err.println("Error unloading file: file " + fileId + " was taken out of the database but the "
+                    + "loaded model still counts it until it is loaded again: " + e.getMessage());
+            e.printStackTrace();
+            return true;
+        }
+        System.out.println("Unloaded file " + fileId + " (" + fileWords.size() + " words, "
+                + fileBigrams.size() + " bigrams)");
+        return true;
+    }
+
     /**
      * Method written to process a single file that is imported from the frontend - helper to processFileFromGui
      * @param dbManager DatabaseManager object to interact with the database
      * @param file File object representing the text file to be processed
+     * @return file_id the file was stored under, or -1 if it could not be processed
      * @throws SQLException if a database access error occurs
      * Written by Sneha Shrinivas edited by ezzah
      */
-    public static void processSingleFile(DatabaseManager dbManager, File file) throws SQLException {
+    public static int processSingleFile(DatabaseManager dbManager, File file) throws SQLException {
+        return processSingleFile(dbManager, file, new StageTimes());
+    }
+
+    /**
+     * Same as processSingleFile(dbManager, file), also timing each stage of the ingestion
+     * @param times receives the time spent in each stage
+     * Written by Andersen Breyel
+     */
+    public static int processSingleFile(DatabaseManager dbManager, File file, StageTimes times) throws SQLException {
         // Load the accents file
         Scanner asciiFile = importFile("accents.txt");
 
@@ -324,19 +538,41 @@ public class UpdatedPreProcessing {
         if (currentFile == null) {
             System.out.println("File not found: " + file.getAbsolutePath());
             if (asciiFile != null) asciiFile.close();
-            return;
+            return -1;
         }
 
         int fileWordCount = 0;
+        int fileId = -1;
         try {
             // Preprocess the file and return word count
-            fileWordCount = preprocess(currentFile);
+            HashMap<String, int[]> fileWords = new HashMap<>();
+            HashMap<String, Integer> fileBigrams = new HashMap<>();
+            FlightEvents.IngestFile event = new FlightEvents.IngestFile(file.getName(), file.length());
+            event.begin();
+            fileWordCount = preprocess(currentFile, fileWords, fileBigrams, event, times);
 
             // Create a Document object to store file metadata
             Document doc = new Document(file.getName(), fileWordCount);
 
-            // Insert the file metadata into the database
-            dbManager.insertFileMetadata(doc);
+            // Insert the file metadata into the database, then the file's own counts under its id
+            long databaseStarted = System.nanoTime();
+            int storedId = dbManager.insertFileMetadata(doc);
+            dbManager.insertFileCounts(storedId, fileWords, fileBigrams);
+            fileId = storedId;
+            event.addDatabaseTime(System.nanoTime() - databaseStarted);
+            times.add(Stage.WRITE, System.nanoTime() - databaseStarted);
+
+            // Add the file to the loaded model and the start word ranking only once its counts are stored, so a
+            // failed ingest leaves both alone and unloadFile takes away exactly what was added here
+            HashMap<String, Word> addedWords = new HashMap<>();
+            for (Map.Entry<String, int[]> entry : fileWords.entrySet()) {
+                int[] counts = entry.getValue();
+                addedWords.put(entry.getKey(), new Word(entry.getKey(), counts[1], counts[2], counts[0]));
+                StartWordIndex.update(entry.getKey(), counts[0], counts[1]);
+            }
+            BigramProcessor.addFileCounts(fileId, addedWords, fileBigrams);
+            event.setTokens(fileWordCount);
+            event.commit();
 
             // Print out word count
             System.out.println("Finished processing " + file.getName()
@@ -348,6 +584,7 @@ public class UpdatedPreProcessing {
             currentFile.close();
             if (asciiFile != null) asciiFile.close();
         }
+        return fileId;
     }
 
     /**
@@ -390,11 +627,20 @@ public class UpdatedPreProcessing {
 
                 // if it exists, preprocess the file and output its total word count
                 try {
-                    fileWordCount = preprocess(currentFile);
+                    HashMap<String, int[]> fileWords = new HashMap<>();
+                    HashMap<String, Integer> fileBigrams = new HashMap<>();
+                    FlightEvents.IngestFile event = new FlightEvents.IngestFile(fileName, new File(fileName).length());
+                    event.begin();
+                    fileWordCount = preprocess(currentFile, fileWords, fileBigrams, event, new StageTimes());
 
-                    // Create a Document object and insert it
+                    // Create a Document object and insert it, then the file's own counts under its id
                     Document doc = new Document(fileName, fileWordCount);
-                    dbManager.insertFileMetadata(doc);
+                    long databaseStarted = System.nanoTime();
+                    int fileId = dbManager.insertFileMetadata(doc);
+                    dbManager.insertFileCounts(fileId, fileWords, fileBigrams);
+                    event.addDatabaseTime(System.nanoTime() - databaseStarted);
+                    event.setTokens(fileWordCount);
+                    event.commit();
 
                 } catch (Exception e) {
                     System.err.println("[ERROR in preprocess]: " + e.getMessage());
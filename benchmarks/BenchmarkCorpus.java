@@ -0,0 +1,79 @@
+package benchmarks;
+/**
+ * Loads the model used by the benchmarks straight from the bundled books in resources/, tokenized the same way
+ * ingestion does but counted in memory, so the benchmarks need no MySQL server and always run on the same data.
+ * Also picks benchmark prefixes by how many distinct words follow them in the loaded model.
+ *
+ * Written by Andersen Breyel
+ **/
+
+import backend.BigramProcessor;
+import backend.UpdatedPreProcessing;
+import backend.Word;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+
+final class BenchmarkCorpus {
+    // Directory of the books, relative to the project root unless overridden with -Dbenchmark.corpus=...
+    private static final String CORPUS_DIRECTORY = System.getProperty("benchmark.corpus", "resources");
+    private static HashMap<String, Word> words = null;
+
+    private BenchmarkCorpus() { }
+
+    /**
+     * Loads every .txt file of the corpus directory into BigramProcessor, once per JVM
+     * @return word -> counts of the loaded corpus
+     * @throws IOException if the directory or a book cannot be read
+     */
+    static synchronized HashMap<String, Word> load() throws IOException {
+        if (words != null) {
+            return words;
+        }
+        File[] books = new File(CORPUS_DIRECTORY).listFiles((dir, name) -> name.endsWith(".txt"));
+        if (books == null || books.length == 0) {
+            throw new IOException("No .txt files in " + new File(CORPUS_DIRECTORY).getAbsolutePath()
+                    + "; run from the project root or set -Dbenchmark.corpus");
+        }
+        Arrays.sort(books);
+        HashMap<String, Word> counts = new HashMap<>();
+        HashMap<String, Integer> bigrams = new HashMap<>();
+        for (File book : books) {
+            UpdatedPreProcessing.countFile(book, counts, bigrams);
+        }
+        BigramProcessor.loadCounts(counts, bigrams);
+        words = counts;
+        return words;
+    }
+
+    /**
+     * Picks a prefix word by its out-degree, the number of distinct words seen after it. Ties go to the more
+     * frequent word, then alphabetical order, so the choice is the same on every run.
+     * @param degree "low" for the most frequent word with the smallest out-degree, "median" for the word in the
+     *               middle of the out-degree order, "hub" for the word with the most successors
+     * @return       the prefix word
+     * @throws IOException if the corpus cannot be loaded
+     */
+    static String prefixWithDegree(String degree) throws IOException {
+        HashMap<String, Word> vocabulary = load();
+        List<Word> candidates = new ArrayList<>();
+        for (Word word : vocabulary.values()) {
+            if (BigramProcessor.getSuccessorCount(word.getWordText()) > 0) {
+                candidates.add(word);
+            }
+        }
+        candidates.sort(Comparator.comparingInt((Word word) -> BigramProcessor.getSuccessorCount(word.getWordText()))
+                .thenComparing(Comparator.comparingInt(Word::getFrequency).reversed())
+                .thenComparing(Word::getWordText));
+        return switch (degree) {
+            case "low" -> candidates.get(0).getWordText();
+            case "median" -> candidates.get(candidates.size() / 2).getWordText();
+            case "hub" -> candidates.get(candidates.size() - 1).getWordText();
+            default -> throw new IllegalArgumentException("Unknown prefix degree: " + degree);
+        };
+    }
+}
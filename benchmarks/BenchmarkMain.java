@@ -0,0 +1,24 @@
+package benchmarks;
+/**
+ * Runs the benchmarks with the GC profiler, so every result comes with its allocation rate and bytes allocated
+ * per operation next to the throughput and average time.
+ * Usage: java -cp ... benchmarks.BenchmarkMain [benchmark name regex]
+ *
+ * Written by Andersen Breyel
+ **/
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+public class BenchmarkMain {
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(args.length > 0 ? args[0] : "benchmarks\\..*")
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,324 @@
+package benchmarks;
+/**
+ * Writes synthetic text corpora of any size for testing ingestion and model loading at many times the size of the
+ * bundled books.
+ *
+ * Word frequencies follow a Zipf distribution over a fixed vocabulary: the word of rank r is drawn with probability
+ * proportional to 1 / r^s. The most frequent ranks are common English function words and the rest are made-up words
+ * that get longer as they get rarer, some of them with a Latin-1 accented letter so cleanWord's accent mapping is
+ * exercised. Sentences have log-normally distributed lengths, start with a capital letter, contain commas and now and
+ * then quoted dialogue, and end with '.', '?' or '!'; lines are wrapped like a Project Gutenberg book and paragraphs
+ * are separated by blank lines. Files are written in UTF-8, which ingestion reads by default.
+ *
+ * The output depends only on the options, so the same seed always gives the same bytes. Words are encoded once up
+ * front and copied into a large buffer, and several files are generated in parallel, so generation keeps up with
+ * the disk.
+ *
+ * Usage: java -cp ... benchmarks.CorpusGenerator --out=corpus.txt [--size=1G] [--files=1] [--vocabulary=50000]
+ *        [--zipf=1.07] [--accents=0.05] [--sentence=15] [--seed=42]
+ *   out        file to write, or a directory to write corpus-000.txt, corpus-001.txt, ... into when files > 1
+ *   size       total size in bytes, with an optional K, M or G suffix
+ *   files      number of files the size is split over
+ *   vocabulary number of distinct words
+ *   zipf       exponent s of the Zipf distribution; larger values favor the most frequent words more
+ *   accents    fraction of the made-up words that contain an accented letter
+ *   sentence   median sentence length in words
+ *
+ * Written by Andersen Breyel
+ **/
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class CorpusGenerator {
+    // Most frequent words of English text, used for the top ranks in this order
+    private static final String[] FUNCTION_WORDS = {
+            "the", "of", "and", "to", "a", "in", "that", "it", "was", "he", "i", "his", "you", "with", "for", "as",
+            "had", "her", "she", "not", "at", "but", "be", "on", "is", "my", "him", "by", "all", "they", "so", "this",
+            "have", "which", "from", "said", "one", "were", "me", "we", "there", "what", "would", "no", "been", "an",
+            "when", "their", "if", "or", "could", "them", "will", "who", "are", "more", "up", "then", "out", "into" };
+    private static final String CONSONANTS = "bcdfghjklmnprstvwyz";
+    private static final String VOWELS = "aeiou";
+    // Accented letters cleanWord maps back to plain ones, see accents.txt
+    private static final String ACCENTED = "àáâäåçèéêëìíîïñòóôöøùúûüýÿ";
+    // Column lines are wrapped after
+    private static final int LINE_WIDTH = 72;
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private final long totalBytes;
+    private final int fileCount;
+    private final double zipfExponent;
+    private final double accentRate;
+    private final double medianSentence;
+    private final long seed;
+    // Every word in UTF-8, as written mid-sentence and at the start of a sentence, by rank
+    private final byte[][] words;
+    private final byte[][] capitalized;
+    private final ZipfSampler sampler;
+
+    private CorpusGenerator(Map<String, String> options) {
+        totalBytes = parseSize(options.getOrDefault("size", "1G"));
+        fileCount = Integer.parseInt(options.getOrDefault("files", "1"));
+        int vocabularySize = Integer.parseInt(options.getOrDefault("vocabulary", "50000"));
+        zipfExponent = Double.parseDouble(options.getOrDefault("zipf", "1.07"));
+        accentRate = Double.parseDouble(options.getOrDefault("accents", "0.05"));
+        medianSentence = Double.parseDouble(options.getOrDefault("sentence", "15"));
+        seed = Long.parseLong(options.getOrDefault("seed", "42"));
+
+        List<String> vocabulary = vocabulary(vocabularySize, new SplittableRandom(seed));
+        words = new byte[vocabulary.size()][];
+        capitalized = new byte[vocabulary.size()][];
+        for (int rank = 0; rank < words.length; rank++) {
+            String word = vocabulary.get(rank);
+            words[rank] = word.getBytes(StandardCharsets.UTF_8);
+            capitalized[rank] = (Character.toUpperCase(word.charAt(0)) + word.substring(1))
+                    .getBytes(StandardCharsets.UTF_8);
+        }
+        sampler = new ZipfSampler(words.length, zipfExponent);
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Expected --name=value, got " + arg);
+            }
+            options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+        }
+        if (!options.containsKey("out")) {
+            throw new IllegalArgumentException("Missing --out=<file or directory>");
+        }
+        new CorpusGenerator(options).write(new File(options.get("out")));
+    }
+
+    /**
+     * Writes the corpus, generating the files in parallel
+     * @param out file, or directory when there are several files
+     */
+    private void write(File out) throws Exception {
+        List<File> files = new ArrayList<>();
+        if (fileCount == 1) {
+            files.add(out);
+        } else {
+            if (!out.isDirectory() && !out.mkdirs()) {
+                throw new IOException("Could not create directory " + out);
+            }
+            for (int i = 0; i < fileCount; i++) {
+                files.add(new File(out, String.format("corpus-%03d.txt", i)));
+            }
+        }
+
+        // One generator per file, split off in file order so the output does not depend on the thread count
+        SplittableRandom root = new SplittableRandom(seed);
+        root.split();
+        long started = System.nanoTime();
+        long[] totals = new long[3];
+        int threads = Math.min(fileCount, Runtime.getRuntime().availableProcessors());
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<long[]>> results = new ArrayList<>();
+            for (int i = 0; i < fileCount; i++) {
+                File file = files.get(i);
+                long size = totalBytes / fileCount + (i < totalBytes % fileCount ? 1 : 0);
+                SplittableRandom rng = root.split();
+                results.add(pool.submit(() -> writeFile(file, size, rng)));
+            }
+            for (Future<long[]> result : results) {
+                long[] counts = result.get();
+                for (int i = 0; i < totals.length; i++) totals[i] += counts[i];
+            }
+        } finally {
+            pool.shutdown();
+        }
+        double seconds = (System.nanoTime() - started) / 1e9;
+        System.out.printf("Wrote %,d bytes in %d file(s): %,d words, %,d sentences, %,d distinct words "
+                        + "(zipf %.2f) in %.1f s, %.0f MB/s%n", totals[0], fileCount, totals[1], totals[2],
+                words.length, zipfExponent, seconds, totals[0] / 1e6 / seconds);
+    }
+
+    /**
+     * Writes one file of about the given size; the last sentence may run past it
+     * @return bytes, words and sentences written
+     */
+    private long[] writeFile(File file, long size, SplittableRandom rng) throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int position = 0;
+        long written = 0;
+        long wordCount = 0;
+        long sentenceCount = 0;
+        int column = 0;
+        double mu = Math.log(medianSentence);
+
+        try (OutputStream out = new FileOutputStream(file)) {
+            while (written + position < size) {
+                int length = (int) Math.max(1, Math.min(80, Math.round(Math.exp(mu + 0.5 * rng.nextGaussian()))));
+                boolean quoted = rng.nextInt(10) == 0;
+                for (int i = 0; i < length; i++) {
+                    // One draw per word: the top bits pick the rank, the lowest three whether a comma follows
+                    long bits = rng.nextLong();
+                    int rank = sampler.rank(bits);
+                    byte[] word = i == 0 ? capitalized[rank] : words[rank];
+                    int needed = word.length + (quoted && i == 0 ? 1 : 0);
+                    if (column > 0 && column + 1 + needed > LINE_WIDTH) {
+                        buffer[position++] = '\n';
+                        column = 0;
+                    } else if (column > 0) {
+                        buffer[position++] = ' ';
+                        column++;
+                    }
+                    if (quoted && i == 0) {
+                        buffer[position++] = '"';
+                        column++;
+                    }
+                    System.arraycopy(word, 0, buffer, position, word.length);
+                    position += word.length;
+                    column += word.length;
+                    if (i < length - 1 && (bits & 7) == 0) {
+                        buffer[position++] = ',';
+                        column++;
+                    }
+                }
+                int end = rng.nextInt(100);
+                buffer[position++] = (byte) (end < 85 ? '.' : end < 93 ? '?' : '!');
+                column++;
+                if (quoted) {
+                    buffer[position++] = '"';
+                    column++;
+                }
+                if (rng.nextInt(6) == 0) {
+                    buffer[position++] = '\n';
+                    buffer[position++] = '\n';
+                    column = 0;
+                }
+                wordCount += length;
+                sentenceCount++;
+
+                // Leave room for the longest sentence before the next one
+                if (position > BUFFER_SIZE - 80 * 64) {
+                    out.write(buffer, 0, position);
+                    written += position;
+                    position = 0;
+                }
+            }
+            if (column > 0) buffer[position++] = '\n';
+            out.write(buffer, 0, position);
+            written += position;
+        }
+        return new long[] { written, wordCount, sentenceCount };
+    }
+
+    /**
+     * Builds the vocabulary by rank: the function words, then distinct made-up words of consonant-vowel syllables
+     * that get longer with rank, some with an accented letter
+     */
+    private List<String> vocabulary(int size, SplittableRandom rng) {
+        List<String> vocabulary = new ArrayList<>(size);
+        HashSet<String> seen = new HashSet<>();
+        for (int rank = 0; rank < Math.min(size, FUNCTION_WORDS.length); rank++) {
+            vocabulary.add(FUNCTION_WORDS[rank]);
+            seen.add(FUNCTION_WORDS[rank]);
+        }
+        StringBuilder word = new StringBuilder();
+        while (vocabulary.size() < size) {
+            int rank = vocabulary.size();
+            int syllables = 1 + (int) (Math.log(rank) / Math.log(10)) / 2 + rng.nextInt(2);
+            word.setLength(0);
+            for (int s = 0; s < syllables; s++) {
+                word.append(CONSONANTS.charAt(rng.nextInt(CONSONANTS.length())));
+                word.append(VOWELS.charAt(rng.nextInt(VOWELS.length())));
+                if (rng.nextInt(3) == 0) word.append(CONSONANTS.charAt(rng.nextInt(CONSONANTS.length())));
+            }
+            if (rng.nextDouble() < accentRate) {
+                word.setCharAt(rng.nextInt(word.length()), ACCENTED.charAt(rng.nextInt(ACCENTED.length())));
+            }
+            if (seen.add(word.toString())) {
+                vocabulary.add(word.toString());
+            }
+        }
+        return vocabulary;
+    }
+
+    /**
+     * @param size number of bytes with an optional K, M or G suffix
+     */
+    private static long parseSize(String size) {
+        String number = size.trim().toUpperCase();
+        long unit = 1;
+        switch (number.charAt(number.length() - 1)) {
+            case 'K' -> unit = 1L << 10;
+            case 'M' -> unit = 1L << 20;
+            case 'G' -> unit = 1L << 30;
+            default -> { }
+        }
+        if (unit > 1) number = number.substring(0, number.length() - 1);
+        return Math.round(Double.parseDouble(number) * unit);
+    }
+
+    /**
+     * Draws ranks from a Zipf distribution in constant time with Vose's alias method
+     */
+    private static final class ZipfSampler {
+        // Chance of keeping each column's own rank rather than its alias, scaled to 29 bits
+        private static final int COIN_BITS = 29;
+        private final int[] threshold;
+        private final int[] alias;
+
+        ZipfSampler(int size, double exponent) {
+            double[] probability = new double[size];
+            threshold = new int[size];
+            alias = new int[size];
+            double[] scaled = new double[size];
+            double total = 0;
+            for (int rank = 0; rank < size; rank++) {
+                scaled[rank] = Math.pow(rank + 1, -exponent);
+                total += scaled[rank];
+            }
+            int[] small = new int[size];
+            int[] large = new int[size];
+            int smallCount = 0;
+            int largeCount = 0;
+            for (int rank = 0; rank < size; rank++) {
+                scaled[rank] = scaled[rank] / total * size;
+                if (scaled[rank] < 1) small[smallCount++] = rank;
+                else large[largeCount++] = rank;
+            }
+            while (smallCount > 0 && largeCount > 0) {
+                int less = small[--smallCount];
+                int more = large[--largeCount];
+                probability[less] = scaled[less];
+                alias[less] = more;
+                scaled[more] = scaled[more] + scaled[less] - 1;
+                if (scaled[more] < 1) small[smallCount++] = more;
+                else large[largeCount++] = more;
+            }
+            // Whatever is left has probability 1 up to rounding
+            while (largeCount > 0) probability[large[--largeCount]] = 1;
+            while (smallCount > 0) probability[small[--smallCount]] = 1;
+            for (int rank = 0; rank < size; rank++) {
+                threshold[rank] = (int) Math.round(probability[rank] * (1 << COIN_BITS));
+            }
+        }
+
+        /**
+         * @param bits 64 random bits; the top 32 pick a column and bits 3 to 31 toss its coin
+         * @return     a rank drawn from the distribution
+         */
+        int rank(long bits) {
+            int column = (int) (((bits >>> 32) * threshold.length) >>> 32);
+            int coin = (int) (bits >>> 3) & ((1 << COIN_BITS) - 1);
+            return coin < threshold[column] ? column : alias[column];
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package benchmarks;
+/**
+ * JMH benchmarks of the three sentence generation algorithms on the model of the bundled books, with the same
+ * length and smoothing SentenceService uses. Each call starts from the next of a fixed list of prefixes and draws
+ * from a seeded random generator per thread, so every run generates the same sentences.
+ *
+ * Written by Andersen Breyel
+ **/
+
+import backend.BigramProcessor;
+import java.io.IOException;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class GenerationBenchmark {
+    // Sentence length SentenceService asks for
+    private static final int LENGTH = 10;
+    // Common and rarer starting words found in all or some of the books
+    private static final String[] PREFIXES = {"the", "she", "i", "it", "captain", "alice", "whale", "love"};
+
+    private SplittableRandom rng;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void loadModel() throws IOException {
+        BenchmarkCorpus.load();
+        rng = new SplittableRandom(42);
+        next = 0;
+    }
+
+    private String nextPrefix() {
+        String prefix = PREFIXES[next];
+        next = (next + 1) % PREFIXES.length;
+        return prefix;
+    }
+
+    @Benchmark
+    public String weighted() {
+        return BigramProcessor.generateSentenceWeighted(nextPrefix(), LENGTH, true, rng);
+    }
+
+    @Benchmark
+    public String threeRandom() {
+        return BigramProcessor.generateSentenceThreeRandom(nextPrefix(), LENGTH, true, rng);
+    }
+
+    @Benchmark
+    public String topOne() {
+        return BigramProcessor.generateSentenceTopOne(nextPrefix(), LENGTH, true);
+    }
+}
@@ -0,0 +1,77 @@
+package benchmarks;
+/**
+ * In-process stand-in for the MySQL database, implementing the DatabaseManager operations ingestion uses with the
+ * same results as the SQL statements: words and bigrams are upserted with their counts added, words get ids in
+ * insertion order starting at 1, and each file's own counts are kept under its file_id. Used to time the whole
+ * ingestion path without a server, so the write stage measures the calls rather than the network and disk.
+ *
+ * Written by Andersen Breyel
+ **/
+
+import backend.DatabaseManager;
+import backend.Document;
+import backend.Relationship;
+import backend.Word;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+class InMemoryDatabase extends DatabaseManager {
+    // Words table: word -> word_id, and {word_frequency, starting_word_occurences, ending_word_occurences} by id
+    private final HashMap<String, Integer> wordIds = new HashMap<>();
+    private final ArrayList<int[]> wordCounts = new ArrayList<>();
+    // Relationships table: (current_word_id << 32 | next_word_id) -> combination_count
+    private final HashMap<Long, Integer> relationships = new HashMap<>();
+    // Files table and the per-file count tables, by file_id - 1
+    private final ArrayList<Document> files = new ArrayList<>();
+    private final ArrayList<Map<String, int[]>> fileWords = new ArrayList<>();
+    private final ArrayList<Map<String, Integer>> fileRelationships = new ArrayList<>();
+
+    @Override
+    public void insertWord(Word wordPart) {
+        Integer id = wordIds.get(wordPart.getWordText());
+        if (id == null) {
+            wordCounts.add(new int[3]);
+            id = wordCounts.size();
+            wordIds.put(wordPart.getWordText(), id);
+        }
+        int[] counts = wordCounts.get(id - 1);
+        counts[0] += wordPart.getFrequency();
+        counts[1] += wordPart.getStartWordCount();
+        counts[2] += wordPart.getEndWordCount();
+    }
+
+    @Override
+    public int lookupWordId(String word) {
+        return wordIds.getOrDefault(word, 0);
+    }
+
+    @Override
+    public void insertBigram(Relationship bigram) {
+        long key = ((long) bigram.getCurrentWordID() << 32) | bigram.getNextWordID();
+        relationships.merge(key, bigram.getCombinationCount(), Integer::sum);
+    }
+
+    @Override
+    public int insertFileMetadata(Document document) {
+        files.add(document);
+        fileWords.add(null);
+        fileRelationships.add(null);
+        return files.size();
+    }
+
+    @Override
+    public void insertFileCounts(int fileId, Map<String, int[]> words, Map<String, Integer> bigrams) {
+        fileWords.set(fileId - 1, new HashMap<>(words));
+        fileRelationships.set(fileId - 1, new HashMap<>(bigrams));
+    }
+
+    /**
+     * @return file_word_count summed over the stored files
+     */
+    long tokenCount() {
+        long tokens = 0;
+        for (Document file : files) tokens += file.getWordCount();
+        return tokens;
+    }
+}
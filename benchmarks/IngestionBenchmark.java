@@ -0,0 +1,120 @@
+package benchmarks;
+/**
+ * Ingestion throughput harness. Runs UpdatedPreProcessing over every book in resources/ in three configurations:
+ * - tokenizer: reading and cleaning only, the tokens are thrown away
+ * - memory: tokens are counted into in-memory maps, as UpdatedPreProcessing.countFile does
+ * - database: the full processSingleFile path, writing to InMemoryDatabase in place of MySQL
+ * Each configuration is run several times and the first rounds are discarded as warm-up, then the average time
+ * of the read, clean, count and write stages is printed with the tokenizer MB/s and end-to-end tokens/s.
+ * Usage: java -cp ... benchmarks.IngestionBenchmark [rounds] [warm-up rounds]
+ *
+ * Written by Andersen Breyel
+ **/
+
+import backend.UpdatedPreProcessing;
+import backend.UpdatedPreProcessing.Stage;
+import backend.UpdatedPreProcessing.StageTimes;
+import backend.Word;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Scanner;
+
+public class IngestionBenchmark {
+    private static final String CORPUS_DIRECTORY = System.getProperty("benchmark.corpus", "resources");
+
+    private enum Configuration { TOKENIZER, MEMORY, DATABASE }
+
+    public static void main(String[] args) throws IOException, SQLException {
+        int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+        int warmupRounds = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+        File[] books = new File(CORPUS_DIRECTORY).listFiles((dir, name) -> name.endsWith(".txt"));
+        if (books == null || books.length == 0) {
+            throw new IOException("No .txt files in " + new File(CORPUS_DIRECTORY).getAbsolutePath()
+                    + "; run from the project root or set -Dbenchmark.corpus");
+        }
+        Arrays.sort(books);
+        long bytes = 0;
+        for (File book : books) bytes += book.length();
+        System.out.printf("%d books, %.1f MB, %d rounds after %d warm-up rounds%n",
+                books.length, bytes / 1e6, rounds - warmupRounds, warmupRounds);
+        System.out.printf("%-10s %10s %10s %10s %10s %10s %14s %14s%n",
+                "", "read ms", "clean ms", "count ms", "write ms", "total ms", "tokenizer MB/s", "tokens/s");
+
+        for (Configuration configuration : Configuration.values()) {
+            StageTimes measured = new StageTimes();
+            long tokens = 0;
+            for (int round = 0; round < rounds; round++) {
+                StageTimes times = new StageTimes();
+                long roundTokens = run(configuration, books, times);
+                if (round < warmupRounds) continue;
+                for (Stage stage : Stage.values()) {
+                    measured.add(stage, times.getNanos(stage));
+                }
+                tokens += roundTokens;
+            }
+            print(configuration, measured, rounds - warmupRounds, bytes, tokens);
+        }
+    }
+
+    /**
+     * Ingests every book once in the given configuration
+     * @return number of tokens ingested
+     */
+    private static long run(Configuration configuration, File[] books, StageTimes times)
+            throws IOException, SQLException {
+        long tokens = 0;
+        switch (configuration) {
+            case TOKENIZER -> {
+                for (File book : books) {
+                    try (Scanner textFile = new Scanner(book)) {
+                        tokens += UpdatedPreProcessing.tokenizeLines(textFile, (previous, token, start, end) -> { },
+                                times);
+                    }
+                }
+            }
+            case MEMORY -> {
+                HashMap<String, Word> words = new HashMap<>();
+                HashMap<String, Integer> bigrams = new HashMap<>();
+                for (File book : books) {
+                    tokens += UpdatedPreProcessing.countFile(book, words, bigrams, times);
+                }
+            }
+            case DATABASE -> {
+                InMemoryDatabase database = new InMemoryDatabase();
+                new UpdatedPreProcessing(database);
+                // processSingleFile reports every file it finishes; keep the table readable
+                PrintStream out = System.out;
+                System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+                try {
+                    for (File book : books) {
+                        UpdatedPreProcessing.processSingleFile(database, book, times);
+                    }
+                } finally {
+                    System.setOut(out);
+                }
+                tokens = database.tokenCount();
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * Prints the average time of each stage per round and the resulting throughput
+     */
+    private static void print(Configuration configuration, StageTimes times, int rounds, long bytes, long tokens) {
+        double[] millis = new double[Stage.values().length];
+        for (Stage stage : Stage.values()) {
+            millis[stage.ordinal()] = times.getNanos(stage) / 1e6 / rounds;
+        }
+        double totalMillis = times.getTotalNanos() / 1e6 / rounds;
+        double tokenizerMillis = millis[Stage.READ.ordinal()] + millis[Stage.CLEAN.ordinal()];
+        System.out.printf("%-10s %10.1f %10.1f %10.1f %10.1f %10.1f %14.1f %,14.0f%n",
+                configuration.name().toLowerCase(), millis[0], millis[1], millis[2], millis[3], totalMillis,
+                bytes / 1e6 / (tokenizerMillis / 1e3), tokens / (double) rounds / (totalMillis / 1e3));
+    }
+}
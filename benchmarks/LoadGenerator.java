@@ -0,0 +1,317 @@
+package benchmarks;
+/**
+ * Load test driver that simulates users of SentenceService on the model of the bundled books, so the concurrency
+ * at which the service saturates can be found without a MySQL server or the GUI.
+ *
+ * Every simulated user runs on its own virtual thread and follows the session flow of the GUI: type a starting word
+ * letter by letter while HomeView asks for completions, generate a sentence with each algorithm, walk autocomplete
+ * for a few words with re-rolls, and finish. Between steps the user thinks for an exponentially distributed time.
+ * Re-rolls and finishing happen in the views without calling the service, so they only cost think time.
+ *
+ * The load is run in steps, each for a fixed time:
+ * - closed loop: each step runs a number of users that start a new session as soon as their last one ends
+ * - open loop: each step starts sessions at a rate per second, as a Poisson process, however many are still running
+ * Every report period a line with the request rate and latency percentiles of that period is printed, and a summary
+ * of every step at the end; throughput stops growing and the percentiles climb once the service saturates.
+ *
+ * Usage: java -cp ... benchmarks.LoadGenerator [--mode=closed|open] [--steps=1,2,4,8,16,32] [--step=20]
+ *        [--report=5] [--think=300] [--words=6] [--rerolls=0.3] [--seed=42]
+ *   steps   users per step in closed loop, sessions per second in open loop
+ *   step    seconds per step
+ *   report  seconds between report lines
+ *   think   mean think time between user actions in ms, keystrokes take a tenth of it; 0 for none
+ *   words   most words a user adds with autocomplete
+ *   rerolls probability of asking for the next three suggestions before choosing one
+ *
+ * Written by Andersen Breyel
+ **/
+
+import backend.GenerationAlgorithm;
+import backend.LatencyHistogram;
+import backend.Metrics;
+import backend.Word;
+import frontend.services.SentenceService;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+public class LoadGenerator {
+    // Number of most frequent sentence starts users pick their starting word from
+    private static final int START_WORDS = 200;
+    // Completions HomeView asks for while the user types
+    private static final int COMPLETIONS = 10;
+    // Algorithms a user generates a sentence with, in the order of HomeView's choices
+    private static final GenerationAlgorithm[] ALGORITHMS = {
+            GenerationAlgorithm.WEIGHTED, GenerationAlgorithm.THREE_RANDOM, GenerationAlgorithm.TEMPERATURE,
+            GenerationAlgorithm.TOP_K, GenerationAlgorithm.NUCLEUS, GenerationAlgorithm.TOP_ONE };
+
+    private final boolean openLoop;
+    private final double[] steps;
+    private final long stepSeconds;
+    private final long reportSeconds;
+    private final double thinkMillis;
+    private final int maxWords;
+    private final double rerollProbability;
+    private final long seed;
+
+    private final SentenceService service;
+    private final List<String> startWords;
+    // Client side latency of each service call, by operation
+    private final LinkedHashMap<String, LatencyHistogram> latencies = new LinkedHashMap<>();
+    private final AtomicInteger activeSessions = new AtomicInteger();
+    private final AtomicLong finishedSessions = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    // Sessions started so far, used to give each one its own random generator
+    private final AtomicLong sessionNumber = new AtomicLong();
+
+    private LoadGenerator(Map<String, String> options, SentenceService service, List<String> startWords) {
+        openLoop = options.getOrDefault("mode", "closed").equals("open");
+        String[] stepValues = options.getOrDefault("steps", "1,2,4,8,16,32").split(",");
+        steps = new double[stepValues.length];
+        for (int i = 0; i < steps.length; i++) steps[i] = Double.parseDouble(stepValues[i].trim());
+        stepSeconds = Long.parseLong(options.getOrDefault("step", "20"));
+        reportSeconds = Long.parseLong(options.getOrDefault("report", "5"));
+        thinkMillis = Double.parseDouble(options.getOrDefault("think", "300"));
+        maxWords = Integer.parseInt(options.getOrDefault("words", "6"));
+        rerollProbability = Double.parseDouble(options.getOrDefault("rerolls", "0.3"));
+        seed = Long.parseLong(options.getOrDefault("seed", "42"));
+        this.service = service;
+        this.startWords = startWords;
+        for (String operation : List.of("completions", "suggestions")) {
+            latencies.put(operation, Metrics.histogram("load." + operation));
+        }
+        for (GenerationAlgorithm algorithm : ALGORITHMS) {
+            latencies.put(algorithm.name(), Metrics.histogram("load." + algorithm.name()));
+        }
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Expected --name=value, got " + arg);
+            }
+            options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+        }
+
+        HashMap<String, Word> words = BenchmarkCorpus.load();
+        SentenceService.initializeWithLoadedModel();
+        // Expose the service's own latencies over JMX while the test runs
+        Metrics.start(0);
+        List<String> starts = new ArrayList<>(words.keySet());
+        starts.removeIf(word -> !Character.isLetter(word.charAt(0)));
+        starts.sort((a, b) -> Integer.compare(words.get(b).getStartWordCount(), words.get(a).getStartWordCount()));
+        starts = List.copyOf(starts.subList(0, Math.min(START_WORDS, starts.size())));
+
+        new LoadGenerator(options, SentenceService.getInstance(), starts).run();
+    }
+
+    /**
+     * Runs every step and prints the summary table
+     */
+    private void run() throws InterruptedException {
+        System.out.printf("%s loop, steps of %d s, mean think time %.0f ms%n",
+                openLoop ? "Open" : "Closed", stepSeconds, thinkMillis);
+        List<String> summaries = new ArrayList<>();
+        for (double step : steps) {
+            long[] before = mergedCounts();
+            long requestsBefore = count(before);
+            long sessionsBefore = finishedSessions.get();
+            long started = System.nanoTime();
+            runStep(step);
+            double seconds = (System.nanoTime() - started) / 1e9;
+            long[] after = mergedCounts();
+            LatencyHistogram.Snapshot total = LatencyHistogram.interval(after, before, seconds);
+            summaries.add(String.format("%10s %10.1f %10.1f %10.3f %10.3f %10.3f %10.3f",
+                    openLoop ? String.format("%.1f/s", step) : String.format("%.0f", step),
+                    (count(after) - requestsBefore) / seconds, (finishedSessions.get() - sessionsBefore) / seconds,
+                    total.getMeanMillis(), total.getP50Millis(), total.getP99Millis(), total.getP999Millis()));
+        }
+
+        System.out.printf("%n%10s %10s %10s %10s %10s %10s %10s%n", openLoop ? "arrivals" : "users",
+                "req/s", "sessions/s", "mean ms", "p50 ms", "p99 ms", "p999 ms");
+        summaries.forEach(System.out::println);
+        System.out.println();
+        for (Map.Entry<String, LatencyHistogram> entry : latencies.entrySet()) {
+            System.out.printf("  %-12s %s%n", entry.getKey(), entry.getValue().snapshot());
+        }
+        if (errors.get() > 0) {
+            System.out.println(errors.get() + " calls returned an error");
+        }
+    }
+
+    /**
+     * Runs one step until its time is up, printing a report line every report period
+     * @param load users in closed loop, sessions per second in open loop
+     */
+    private void runStep(double load) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(stepSeconds);
+        System.out.printf("%n%s%n", openLoop ? String.format("%.1f sessions/s", load)
+                : String.format("%.0f users", load));
+        try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+            if (openLoop) {
+                clients.submit(() -> arrive(clients, load, deadline));
+            } else {
+                for (int user = 0; user < (int) load; user++) {
+                    clients.submit(() -> {
+                        while (System.nanoTime() < deadline) session(deadline);
+                    });
+                }
+            }
+            report(deadline);
+        }
+    }
+
+    /**
+     * Starts sessions at the given mean rate until the deadline
+     */
+    private void arrive(ExecutorService clients, double rate, long deadline) {
+        SplittableRandom arrivals = new SplittableRandom(seed);
+        long next = System.nanoTime();
+        while (true) {
+            next += (long) (-Math.log(1 - arrivals.nextDouble()) / rate * 1e9);
+            if (next >= deadline) return;
+            if (!sleepUntil(next)) return;
+            clients.submit(() -> session(deadline));
+        }
+    }
+
+    /**
+     * Prints one line per report period until the deadline
+     */
+    private void report(long deadline) throws InterruptedException {
+        long[] previous = mergedCounts();
+        long last = System.nanoTime();
+        while (last < deadline) {
+            long next = Math.min(deadline, last + TimeUnit.SECONDS.toNanos(reportSeconds));
+            TimeUnit.NANOSECONDS.sleep(next - System.nanoTime());
+            long now = System.nanoTime();
+            long[] current = mergedCounts();
+            LatencyHistogram.Snapshot interval = LatencyHistogram.interval(current, previous, (now - last) / 1e9);
+            System.out.printf("  %3d active  %s%n", activeSessions.get(), interval);
+            previous = current;
+            last = now;
+        }
+    }
+
+    /**
+     * One user session, cut short at the deadline
+     */
+    private void session(long deadline) {
+        SplittableRandom rng = new SplittableRandom(seed + sessionNumber.incrementAndGet());
+        activeSessions.incrementAndGet();
+        try {
+            // Type the starting word while HomeView shows completions
+            String start = startWords.get(rng.nextInt(startWords.size()));
+            for (int typed = 1; typed <= start.length(); typed++) {
+                String typedPrefix = start.substring(0, typed);
+                call("completions", () -> service.getWordCompletions(typedPrefix, COMPLETIONS));
+                if (!think(rng, thinkMillis / 10, deadline)) return;
+            }
+            if (!think(rng, thinkMillis, deadline)) return;
+
+            // Generate a sentence with each algorithm
+            for (GenerationAlgorithm algorithm : ALGORITHMS) {
+                call(algorithm.name(), () -> generate(start, algorithm));
+                if (!think(rng, thinkMillis, deadline)) return;
+            }
+
+            // Walk autocomplete, re-rolling now and then, until the sentence ends or the user finishes
+            String sentence = start;
+            for (int added = 0; added < maxWords; added++) {
+                String current = sentence;
+                List<String> suggestions = call("suggestions", () -> service.getNextWordSuggestions(current));
+                if (suggestions == null || suggestions.isEmpty()) break;
+                int index = 0;
+                while (index + 3 < suggestions.size() && rng.nextDouble() < rerollProbability) {
+                    index += 3;
+                    if (!think(rng, thinkMillis, deadline)) return;
+                }
+                String choice = suggestions.get(index + rng.nextInt(Math.min(3, suggestions.size() - index)));
+                sentence = sentence + " " + choice;
+                if (!think(rng, thinkMillis, deadline)) return;
+                if (choice.equals(".") || choice.equals("!") || choice.equals("?")) break;
+            }
+            finishedSessions.incrementAndGet();
+        } finally {
+            activeSessions.decrementAndGet();
+        }
+    }
+
+    private String generate(String start, GenerationAlgorithm algorithm) {
+        return switch (algorithm) {
+            case WEIGHTED -> service.generateSentenceWeighted(start);
+            case THREE_RANDOM -> service.generateSentenceThreeRandom(start);
+            case TOP_ONE -> service.generateSentenceTopOne(start);
+            default -> service.generateSentence(start, algorithm);
+        };
+    }
+
+    /**
+     * Times one service call and counts the calls that return an error message
+     */
+    private <T> T call(String operation, Supplier<T> request) {
+        long started = System.nanoTime();
+        T result = request.get();
+        latencies.get(operation).recordSince(started);
+        if (result instanceof String text && text.startsWith("Error:")) {
+            errors.incrementAndGet();
+        }
+        return result;
+    }
+
+    /**
+     * Waits an exponentially distributed think time
+     * @return false if the deadline passes first
+     */
+    private static boolean think(SplittableRandom rng, double meanMillis, long deadline) {
+        if (meanMillis <= 0) {
+            return System.nanoTime() < deadline;
+        }
+        long wake = System.nanoTime() + (long) (-Math.log(1 - rng.nextDouble()) * meanMillis * 1e6);
+        return wake < deadline && sleepUntil(wake);
+    }
+
+    private static boolean sleepUntil(long wakeNanos) {
+        try {
+            long wait = wakeNanos - System.nanoTime();
+            if (wait > 0) TimeUnit.NANOSECONDS.sleep(wait);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * @return bucket counts of every operation added together
+     */
+    private long[] mergedCounts() {
+        long[] merged = null;
+        for (LatencyHistogram histogram : latencies.values()) {
+            long[] counts = histogram.bucketCounts();
+            if (merged == null) {
+                merged = counts;
+            } else {
+                for (int i = 0; i < merged.length; i++) merged[i] += counts[i];
+            }
+        }
+        return merged;
+    }
+
+    private static long count(long[] counts) {
+        long total = 0;
+        for (long bucketCount : counts) total += bucketCount;
+        return total;
+    }
+}
@@ -0,0 +1,162 @@
+package benchmarks;
+/**
+ * Plays a request log recorded by SentenceService back against a model, so benchmarks see the prefix skew of real
+ * traffic instead of a synthetic mix.
+ *
+ * At a given speed every request is sent on its own virtual thread at its recorded time divided by the speed, so
+ * the recorded concurrency and bursts are reproduced and a slow service shows up as growing lag rather than as
+ * fewer requests. As fast as possible, a fixed number of workers send the requests in log order back to back.
+ * The latency of every operation, the throughput and the worst lag behind the schedule are printed at the end.
+ *
+ * Usage: java -cp ... benchmarks.RequestReplay --log=requests.log [--speed=1|2.5|max] [--workers=4]
+ *        [--source=books|database]
+ *   speed   multiple of the recorded speed, or max to send requests as fast as the workers can
+ *   workers number of concurrent senders at max speed
+ *   source  model to replay against: the bundled books, or the MySQL database like the GUI
+ *
+ * Written by Andersen Breyel
+ **/
+
+import backend.LatencyHistogram;
+import backend.Metrics;
+import backend.RequestLog;
+import backend.RequestLog.Operation;
+import backend.RequestLog.Request;
+import frontend.services.SentenceService;
+import java.io.File;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class RequestReplay {
+    private final SentenceService service;
+    private final EnumMap<Operation, LatencyHistogram> latencies = new EnumMap<>(Operation.class);
+    private final AtomicLong maxLagNanos = new AtomicLong();
+
+    private RequestReplay(SentenceService service) {
+        this.service = service;
+        for (Operation operation : Operation.values()) {
+            latencies.put(operation, Metrics.histogram("replay." + operation.name()));
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Expected --name=value, got " + arg);
+            }
+            options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+        }
+        if (!options.containsKey("log")) {
+            throw new IllegalArgumentException("Missing --log=<request log>");
+        }
+        if (options.getOrDefault("source", "books").equals("database")) {
+            SentenceService.initialize();
+        } else {
+            BenchmarkCorpus.load();
+            SentenceService.initializeWithLoadedModel();
+        }
+        RequestReplay replay = new RequestReplay(SentenceService.getInstance());
+
+        String speed = options.getOrDefault("speed", "1");
+        long started = System.nanoTime();
+        long requests = speed.equals("max")
+                ? replay.asFastAsPossible(new File(options.get("log")),
+                        Integer.parseInt(options.getOrDefault("workers", "4")))
+                : replay.atSpeed(new File(options.get("log")), Double.parseDouble(speed));
+        double seconds = (System.nanoTime() - started) / 1e9;
+        replay.print(requests, seconds, !speed.equals("max"));
+    }
+
+    /**
+     * Sends every request at its recorded time divided by the speed
+     * @return number of requests sent
+     */
+    private long atSpeed(File log, double speed) throws Exception {
+        long requests = 0;
+        try (RequestLog.Reader reader = new RequestLog.Reader(log);
+             ExecutorService senders = Executors.newVirtualThreadPerTaskExecutor()) {
+            long start = System.nanoTime();
+            Request request;
+            while ((request = reader.next()) != null) {
+                long due = start + (long) (request.getMicros() * 1000 / speed);
+                long wait = due - System.nanoTime();
+                if (wait > 0) TimeUnit.NANOSECONDS.sleep(wait);
+                Request next = request;
+                senders.submit(() -> {
+                    maxLagNanos.accumulateAndGet(System.nanoTime() - due, Math::max);
+                    send(next);
+                });
+                requests++;
+            }
+        }
+        return requests;
+    }
+
+    /**
+     * Sends the requests in log order from a fixed number of workers, each taking the next request when it is free
+     * @return number of requests sent
+     */
+    private long asFastAsPossible(File log, int workers) throws Exception {
+        AtomicLong requests = new AtomicLong();
+        try (RequestLog.Reader reader = new RequestLog.Reader(log);
+             ExecutorService senders = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < workers; i++) {
+                senders.submit(() -> {
+                    while (true) {
+                        Request request;
+                        synchronized (reader) {
+                            request = reader.next();
+                        }
+                        if (request == null) return null;
+                        send(request);
+                        requests.incrementAndGet();
+                    }
+                });
+            }
+        }
+        return requests.get();
+    }
+
+    /**
+     * Makes the logged call and times it
+     */
+    private void send(Request request) {
+        List<String> texts = request.getTexts();
+        long started = System.nanoTime();
+        switch (request.getOperation()) {
+            case GENERATE_SENTENCE_WEIGHTED -> service.generateSentenceWeighted(texts.get(0));
+            case GENERATE_SENTENCE_THREE_RANDOM -> service.generateSentenceThreeRandom(texts.get(0));
+            case GENERATE_SENTENCE_TOP_ONE -> service.generateSentenceTopOne(texts.get(0));
+            case GENERATE_SENTENCE -> service.generateSentence(texts.get(0), request.getAlgorithm());
+            case GENERATE_SENTENCE_CONSTRAINED -> service.generateSentenceConstrained(texts.get(0),
+                    request.getAlgorithm(), texts.get(1), texts.subList(2, texts.size()));
+            case GENERATE_SENTENCE_ENDING_WITH ->
+                    service.generateSentenceEndingWith(texts.get(0), request.getAlgorithm());
+            case GENERATE_SENTENCES_BEAM -> service.generateSentencesBeam(texts.get(0), request.getNumber());
+            case GENERATE_SENTENCES_BETWEEN ->
+                    service.generateSentencesBetween(texts.get(0), texts.get(1), request.getNumber());
+            case GET_WORD_COMPLETIONS -> service.getWordCompletions(texts.get(0), request.getNumber());
+            case GET_NEXT_WORD_SUGGESTIONS -> service.getNextWordSuggestions(texts.get(0));
+        }
+        latencies.get(request.getOperation()).recordSince(started);
+    }
+
+    private void print(long requests, double seconds, boolean scheduled) {
+        System.out.printf("Replayed %,d requests in %.1f s, %.1f requests/s%n", requests, seconds, requests / seconds);
+        if (scheduled) {
+            System.out.printf("Worst lag behind the recorded schedule: %.3f ms%n", maxLagNanos.get() / 1e6);
+        }
+        for (Map.Entry<Operation, LatencyHistogram> entry : latencies.entrySet()) {
+            LatencyHistogram.Snapshot snapshot = entry.getValue().snapshot();
+            if (snapshot.getCount() == 0) continue;
+            System.out.printf("  %-32s %s%n", entry.getKey(), snapshot);
+        }
+    }
+}
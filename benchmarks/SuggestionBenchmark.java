@@ -0,0 +1,50 @@
+package benchmarks;
+/**
+ * JMH benchmark of getNextWordSuggestions, which lists every successor of the prefix's last word, for prefixes
+ * followed by few, a median number of and the most distinct words in the bundled books, since its cost grows
+ * with the number of successors.
+ *
+ * Written by Andersen Breyel
+ **/
+
+import backend.BigramProcessor;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SuggestionBenchmark {
+    @Param({"low", "median", "hub"})
+    public String degree;
+
+    private String prefix;
+
+    @Setup(Level.Trial)
+    public void loadModel() throws IOException {
+        prefix = BenchmarkCorpus.prefixWithDegree(degree);
+        System.out.println("\n" + degree + " degree prefix: \"" + prefix + "\" with "
+                + BigramProcessor.getSuccessorCount(prefix) + " successors");
+    }
+
+    @Benchmark
+    public List<String> nextWordSuggestions() {
+        return BigramProcessor.getNextWordSuggestions(prefix, true);
+    }
+}
@@ -10,12 +10,15 @@ import javafx.collections.ObservableList;
 
 import java.io.File;
 import java.util.Collection;
+import java.util.HashMap;
 
 import backend.UpdatedPreProcessing;
 
 
 public final class UploadStore {
     private static final ObservableList<File> imported = FXCollections.observableArrayList();
+    // file_id each uploaded file was stored under, so it can be unloaded again
+    private static final HashMap<File, Integer> fileIds = new HashMap<>();
     private UploadStore() {}
 
     public static ObservableList<File> getImported() { return imported; }
@@ -30,10 +33,26 @@ public final class UploadStore {
 
         // for each file just uploaded, send it to backend for preprocessing
         for (File f : files) {
-            UpdatedPreProcessing.processFileFromGui(f);
+            int fileId = UpdatedPreProcessing.processFileFromGui(f);
+            if (fileId >= 0) fileIds.put(f, fileId);
         }
     }
 
-    public static void remove(File f) { imported.remove(f); }
+    /**
+     * Removes a file from the import list and unloads its words and bigrams from the database and the model.
+     * The file stays listed if it could not be unloaded.
+     * @param f
+     * Written by Andersen Breyel
+     */
+    public static void remove(File f) {
+        Integer fileId = fileIds.get(f);
+        if (fileId != null && !UpdatedPreProcessing.unloadFile(fileId)) {
+            // Still part of the counts, so keep it listed and let the user try again
+            return;
+        }
+        fileIds.remove(f);
+        imported.remove(f);
+    }
+
     public static void clear() { imported.clear(); }
 }
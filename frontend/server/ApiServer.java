@@ -0,0 +1,361 @@
+package frontend.server;
+/**
+ * Headless JSON HTTP API over SentenceService, for using the engine without the JavaFX app. It runs on the JDK's
+ * built-in HTTP server with a virtual thread per request, so it needs nothing but the MySQL database.
+ *
+ * Endpoints, all answering with a JSON object; parameters can be sent in the query string or, on POST, as a flat
+ * JSON object body:
+ *   GET|POST /api/generate     prefix, algorithm (WEIGHTED, THREE_RANDOM, TOP_ONE, TEMPERATURE, TOP_K, NUCLEUS)
+ *   GET|POST /api/suggestions  text, limit (default all)
+ *   GET      /api/start-words  limit (default 10)
+ *   POST     /api/files        name; the body is the text file to ingest, which generation uses from then on
+ *   GET      /api/health       whether the service has finished warming up
+ * Errors are answered with {"error": "..."}: 400 for bad parameters, 404, 405, 413 for too large a file, 422 when
+ * the service cannot generate for the request, and 500.
+ *
+ * Connections are kept alive between requests, since every response is sent with its length, and TCP_NODELAY is
+ * on so small responses on a kept-alive connection are not held back by Nagle's algorithm. Responses larger than
+ * COMPRESS_OVER bytes are gzipped for clients that accept it.
+ *
+ * Usage: java -cp ... frontend.server.ApiServer [--port=8080] [--host=0.0.0.0] [--backlog=1024]
+ *        [--maxUpload=67108864]
+ *   backlog   connections the OS queues before the server accepts them
+ *   maxUpload largest file in bytes that /api/files ingests
+ *
+ * Written by Andersen Breyel
+ **/
+
+import backend.GenerationAlgorithm;
+import backend.Json;
+import backend.LatencyHistogram;
+import backend.Metrics;
+import backend.StartWordIndex;
+import backend.UpdatedPreProcessing;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import frontend.services.SentenceService;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.GZIPOutputStream;
+
+public final class ApiServer {
+    // Responses up to this many bytes are sent as they are; compressing them saves less than it costs
+    private static final int COMPRESS_OVER = 1024;
+    // Most parameter bytes read from a JSON body
+    private static final int MAX_JSON_BODY = 64 * 1024;
+    private static final int DEFAULT_START_WORDS = 10;
+    private static final int MAX_START_WORDS = 1000;
+    // Longest parameter values accepted, well past any real prefix, sentence or file name
+    private static final int MAX_PREFIX_LENGTH = 256;
+    private static final int MAX_TEXT_LENGTH = 1024;
+    private static final int MAX_NAME_LENGTH = 255;
+
+    private static final LatencyHistogram GENERATE_TIMER = Metrics.histogram("http.generate");
+    private static final LatencyHistogram SUGGESTIONS_TIMER = Metrics.histogram("http.suggestions");
+    private static final LatencyHistogram START_WORDS_TIMER = Metrics.histogram("http.startWords");
+    private static final LatencyHistogram FILES_TIMER = Metrics.histogram("http.files");
+
+    // Ingestion shares UpdatedPreProcessing's static connection, so files are ingested one at a time
+    private static final ReentrantLock ingestLock = new ReentrantLock();
+
+    private ApiServer() { }
+
+    /**
+     * A request that cannot be answered, with the status to answer it with
+     */
+    private static final class ApiException extends Exception {
+        private static final long serialVersionUID = 1L;
+        private final int status;
+
+        ApiException(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    /**
+     * Handles one endpoint, returning the JSON body of a 200 response
+     */
+    @FunctionalInterface
+    private interface Endpoint {
+        String handle(HttpExchange exchange, Map<String, String> parameters) throws Exception;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Expected --name=value, got " + arg);
+            }
+            options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+        }
+        SentenceService.initialize();
+        HttpServer server = start(new InetSocketAddress(options.getOrDefault("host", "0.0.0.0"),
+                        Integer.parseInt(options.getOrDefault("port", "8080"))),
+                Integer.parseInt(options.getOrDefault("backlog", "1024")),
+                Long.parseLong(options.getOrDefault("maxUpload", String.valueOf(64L << 20))));
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.stop(1);
+            SentenceService.shutdown();
+        }));
+        System.out.println("API server listening on http://" + server.getAddress().getHostString() + ":"
+                + server.getAddress().getPort());
+    }
+
+    /**
+     * Start serving the API over the already initialized SentenceService
+     * @param address   address and port to listen on; port 0 picks a free one
+     * @param backlog   connections the OS queues before the server accepts them
+     * @param maxUpload largest file in bytes that /api/files ingests
+     * @return the running server, stopped with stop()
+     * @throws IOException if the address cannot be bound
+     * Written by Andersen Breyel
+     */
+    public static HttpServer start(InetSocketAddress address, int backlog, long maxUpload) throws IOException {
+        // Read once by the JDK server when it is first used, so these only apply if not set on the command line
+        System.getProperties().putIfAbsent("sun.net.httpserver.nodelay", "true");
+        System.getProperties().putIfAbsent("sun.net.httpserver.maxIdleConnections", "1000");
+
+        HttpServer server = HttpServer.create(address, backlog);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        route(server, "/api/generate", List.of("GET", "POST"), GENERATE_TIMER, ApiServer::generate);
+        route(server, "/api/suggestions", List.of("GET", "POST"), SUGGESTIONS_TIMER, ApiServer::suggestions);
+        route(server, "/api/start-words", List.of("GET"), START_WORDS_TIMER, ApiServer::startWords);
+        route(server, "/api/files", List.of("POST"), FILES_TIMER,
+                (exchange, parameters) -> ingest(exchange, parameters, maxUpload));
+        route(server, "/api/health", List.of("GET"), null,
+                (exchange, parameters) -> Json.object().field("ready", SentenceService.isReady()).toString());
+        server.createContext("/", exchange -> {
+            try (exchange) {
+                sendError(exchange, 404, "No such endpoint: " + exchange.getRequestURI().getPath());
+            }
+        });
+        server.start();
+        return server;
+    }
+
+    /**
+     * Register an endpoint at exactly the given path, answering other methods with 405 and failures with an error
+     */
+    private static void route(HttpServer server, String path, List<String> methods, LatencyHistogram timer,
+                              Endpoint endpoint) {
+        server.createContext(path, exchange -> {
+            long started = System.nanoTime();
+            try (exchange) {
+                if (!exchange.getRequestURI().getPath().equals(path)) {
+                    sendError(exchange, 404, "No such endpoint: " + exchange.getRequestURI().getPath());
+                    return;
+                }
+                if (!methods.contains(exchange.getRequestMethod())) {
+                    exchange.getResponseHeaders().set("Allow", String.join(", ", methods));
+                    sendError(exchange, 405, exchange.getRequestMethod() + " is not allowed here");
+                    return;
+                }
+                try {
+                    send(exchange, 200, endpoint.handle(exchange, parameters(exchange)));
+                } catch (ApiException e) {
+                    sendError(exchange, e.status, e.getMessage());
+                } catch (IllegalArgumentException e) {
+                    sendError(exchange, 400, e.getMessage());
+                } catch (Exception e) {
+                    System.err.println("Error handling " + path + ": " + e.getMessage());
+                    e.printStackTrace();
+                    sendError(exchange, 500, "Internal server error");
+                }
+            } finally {
+                if (timer != null) timer.recordSince(started);
+            }
+        });
+    }
+
+    /**
+     * Generate one sentence from a prefix with the chosen algorithm
+     * Written by Andersen Breyel
+     */
+    private static String generate(HttpExchange exchange, Map<String, String> parameters) throws ApiException {
+        String prefix = required(parameters, "prefix", MAX_PREFIX_LENGTH);
+        GenerationAlgorithm algorithm = GenerationAlgorithm.WEIGHTED;
+        if (parameters.containsKey("algorithm")) {
+            try {
+                algorithm = GenerationAlgorithm.valueOf(parameters.get("algorithm").trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new ApiException(400, "Unknown algorithm " + parameters.get("algorithm")
+                        + "; use one of " + List.of(GenerationAlgorithm.values()));
+            }
+        }
+        String sentence = SentenceService.getInstance().generateSentence(prefix, algorithm);
+        if (sentence.startsWith("Error:")) {
+            throw new ApiException(422, sentence.substring("Error:".length()).trim());
+        }
+        return Json.object()
+                .field("prefix", prefix)
+                .field("algorithm", algorithm.name())
+                .field("sentence", sentence)
+                .toString();
+    }
+
+    /**
+     * Suggest next words for the last word of a sentence
+     * Written by Andersen Breyel
+     */
+    private static String suggestions(HttpExchange exchange, Map<String, String> parameters) throws ApiException {
+        String text = required(parameters, "text", MAX_TEXT_LENGTH);
+        List<String> suggestions = SentenceService.getInstance().getNextWordSuggestions(text);
+        if (parameters.containsKey("limit")) {
+            suggestions = suggestions.subList(0, Math.min(suggestions.size(), limit(parameters, Integer.MAX_VALUE)));
+        }
+        return Json.object().field("text", text).field("suggestions", suggestions).toString();
+    }
+
+    /**
+     * List the words sentences most often start with
+     * Written by Andersen Breyel
+     */
+    private static String startWords(HttpExchange exchange, Map<String, String> parameters) throws ApiException {
+        int limit = parameters.containsKey("limit") ? limit(parameters, MAX_START_WORDS) : DEFAULT_START_WORDS;
+        return Json.object().field("words", StartWordIndex.getTopStartingWords(limit)).toString();
+    }
+
+    /**
+     * Ingest the text file sent as the request body, the same way a file uploaded in the app is. Its counts are
+     * added to the served model once they are stored, so the next requests already use them.
+     * Written by Andersen Breyel
+     */
+    private static String ingest(HttpExchange exchange, Map<String, String> parameters, long maxUpload)
+            throws ApiException, IOException {
+        // Only the file name part, so the name cannot point outside the upload directory
+        String name = new File(required(parameters, "name", MAX_NAME_LENGTH).trim()).getName();
+        if (name.isEmpty() || name.equals("..")) {
+            throw new ApiException(400, "name must be a file name");
+        }
+        Path directory = Files.createTempDirectory("sentence-upload");
+        Path file = directory.resolve(name);
+        try {
+            long bytes = 0;
+            try (InputStream in = exchange.getRequestBody(); OutputStream out = Files.newOutputStream(file)) {
+                byte[] buffer = new byte[1 << 16];
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    bytes += read;
+                    if (bytes > maxUpload) {
+                        throw new ApiException(413, "File is larger than " + maxUpload + " bytes");
+                    }
+                    out.write(buffer, 0, read);
+                }
+            }
+            int fileId;
+            ingestLock.lock();
+            try {
+                fileId = UpdatedPreProcessing.processFileFromGui(file.toFile());
+            } finally {
+                ingestLock.unlock();
+            }
+            if (fileId < 0) {
+                throw new ApiException(500, "Could not ingest " + name);
+            }
+            return Json.object().field("fileId", fileId).field("name", name).field("bytes", bytes).toString();
+        } finally {
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(directory);
+        }
+    }
+
+    private static int limit(Map<String, String> parameters, int max) throws ApiException {
+        int limit;
+        try {
+            limit = Integer.parseInt(parameters.get("limit").trim());
+        } catch (NumberFormatException e) {
+            throw new ApiException(400, "limit must be a whole number");
+        }
+        if (limit < 1) {
+            throw new ApiException(400, "limit must be at least 1");
+        }
+        if (limit > max) {
+            throw new ApiException(400, "limit must be at most " + max);
+        }
+        return limit;
+    }
+
+    private static String required(Map<String, String> parameters, String name, int maxLength)
+            throws ApiException {
+        String value = parameters.get(name);
+        if (value == null || value.isBlank()) {
+            throw new ApiException(400, "Missing parameter " + name);
+        }
+        if (value.length() > maxLength) {
+            throw new ApiException(400, name + " must be at most " + maxLength + " characters");
+        }
+        return value;
+    }
+
+    /**
+     * Read the query string parameters and, for a POST with a JSON body, the body's fields on top of them
+     */
+    private static Map<String, String> parameters(HttpExchange exchange) throws IOException, ApiException {
+        Map<String, String> parameters = new HashMap<>();
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query != null) {
+            for (String pair : query.split("&")) {
+                if (pair.isEmpty()) continue;
+                int equals = pair.indexOf('=');
+                String name = equals < 0 ? pair : pair.substring(0, equals);
+                String value = equals < 0 ? "" : pair.substring(equals + 1);
+                parameters.put(URLDecoder.decode(name, StandardCharsets.UTF_8),
+                        URLDecoder.decode(value, StandardCharsets.UTF_8));
+            }
+        }
+        String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+        if (exchange.getRequestMethod().equals("POST") && contentType != null
+                && contentType.toLowerCase(Locale.ROOT).startsWith("application/json")) {
+            byte[] body = exchange.getRequestBody().readNBytes(MAX_JSON_BODY + 1);
+            if (body.length > MAX_JSON_BODY) {
+                throw new ApiException(413, "JSON body is larger than " + MAX_JSON_BODY + " bytes");
+            }
+            parameters.putAll(Json.parseFlatObject(new String(body, StandardCharsets.UTF_8)));
+        }
+        return parameters;
+    }
+
+    private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        send(exchange, status, Json.object().field("error", message).toString());
+    }
+
+    /**
+     * Send a JSON response with its length, so the connection can be kept alive, gzipped if it is large enough
+     * and the client accepts it
+     */
+    private static void send(HttpExchange exchange, int status, String json) throws IOException {
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        if (body.length > COMPRESS_OVER) {
+            exchange.getResponseHeaders().set("Vary", "Accept-Encoding");
+            String accepted = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+            if (accepted != null && accepted.toLowerCase(Locale.ROOT).contains("gzip")) {
+                ByteArrayOutputStream compressed = new ByteArrayOutputStream(body.length / 3);
+                try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+                    gzip.write(body);
+                }
+                body = compressed.toByteArray();
+                exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+            }
+        }
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+}
@@ -3,8 +3,28 @@ package frontend.services;
 
 // import classes from other packages
 import backend.BigramProcessor;
+import backend.BulkGenerator;
+import backend.DatabaseManager;
+import backend.FlightEvents.GenerationRequest;
+import backend.GenerationAlgorithm;
+import backend.LatencyHistogram;
+import backend.Metrics;
+import backend.RequestLog;
+import backend.RequestLog.Operation;
+import backend.StartWordIndex;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
 
 /**
  * SentenceService class serves as the main link between the frontend and backend.
@@ -17,6 +37,47 @@ import java.util.List;
 public class SentenceService {
     private static BigramProcessor processor;
     private static SentenceService instance;
+    // Log every request is appended to while recording, see startRecording
+    private static volatile RequestLog.Writer requestLog = null;
+    // Last word of the prefixes asked for in this run and how often, saved at shutdown to warm up the next run
+    private static final ConcurrentHashMap<String, LongAdder> prefixCounts = new ConcurrentHashMap<>();
+    private static final int MAX_TRACKED_PREFIXES = 10_000;
+    private static final int HOT_PREFIXES = 100;
+    private static final String HOT_PREFIX_FILE = System.getProperty("sentence.hotPrefixes", "hot-prefixes.txt");
+    // Warm-up stops once two rounds in a row take within this fraction of the round before, or at the limits
+    private static final double WARM_UP_TOLERANCE = 0.1;
+    private static final int MAX_WARM_UP_ROUNDS = 20;
+    private static final long MAX_WARM_UP_MILLIS = 60_000;
+    // False while the warm-up after initialize is running
+    private static volatile boolean ready = false;
+    private static volatile Thread warmUpThread = null;
+    // The request methods, each timed in its own histogram, see Metrics
+    private static final Endpoint GENERATE_SENTENCE_WEIGHTED = new Endpoint("generateSentenceWeighted",
+            Operation.GENERATE_SENTENCE_WEIGHTED, GenerationAlgorithm.WEIGHTED, true, "generating sentence (weighted)");
+    private static final Endpoint GENERATE_SENTENCE_THREE_RANDOM = new Endpoint("generateSentenceThreeRandom",
+            Operation.GENERATE_SENTENCE_THREE_RANDOM, GenerationAlgorithm.THREE_RANDOM, true,
+            "generating sentence (three random)");
+    private static final Endpoint GENERATE_SENTENCE_TOP_ONE = new Endpoint("generateSentenceTopOne",
+            Operation.GENERATE_SENTENCE_TOP_ONE, GenerationAlgorithm.TOP_ONE, true, "generating sentence (top one)");
+    private static final Endpoint GENERATE_SENTENCE = new Endpoint("generateSentence",
+            Operation.GENERATE_SENTENCE, null, true, "generating sentence (%s)");
+    private static final Endpoint GENERATE_SENTENCE_CONSTRAINED = new Endpoint("generateSentenceConstrained",
+            Operation.GENERATE_SENTENCE_CONSTRAINED, null, true, "generating sentence (constrained %s)");
+    private static final Endpoint GENERATE_SENTENCE_ENDING_WITH = new Endpoint("generateSentenceEndingWith",
+            Operation.GENERATE_SENTENCE_ENDING_WITH, null, false, "generating sentence (backward %s)");
+    private static final Endpoint GENERATE_SENTENCES_BEAM = new Endpoint("generateSentencesBeam",
+            Operation.GENERATE_SENTENCES_BEAM, "beam search", true, "generating sentences (beam search)");
+    private static final Endpoint GENERATE_SENTENCES_BETWEEN = new Endpoint("generateSentencesBetween",
+            Operation.GENERATE_SENTENCES_BETWEEN, "path search", true, "generating sentences (between words)");
+    private static final Endpoint GET_WORD_COMPLETIONS = new Endpoint("getWordCompletions",
+            Operation.GET_WORD_COMPLETIONS, null, false, "getting word completions");
+    private static final Endpoint GET_NEXT_WORD_SUGGESTIONS = new Endpoint("getNextWordSuggestions",
+            Operation.GET_NEXT_WORD_SUGGESTIONS, null, true, "getting next-word suggestions");
+    // Result of a generation request that failed unexpectedly
+    private static final String FAILED_SENTENCE = "Error: Failed to generate sentence. Please try another word.";
+    // Latency of the calls that are not requests for text
+    private static final LatencyHistogram GET_IMPORTED_FILES_TIMER = Metrics.histogram("service.getImportedFiles");
+    private static final LatencyHistogram SELECT_FILES_TIMER = Metrics.histogram("service.selectFiles");
 
     // Private constructor for singleton pattern
     private SentenceService(BigramProcessor processor) {
@@ -30,13 +91,329 @@ public class SentenceService {
      */
     public static void initialize() throws SQLException {
         if (instance == null) {
+            // Expose the call metrics over JMX and print a summary every minute
+            Metrics.start(60);
             // BigramProcessor handles its own database connections, no instance of dbmanager
             processor = new BigramProcessor();
             instance = new SentenceService(processor);
+            // Record the traffic when started with -Dsentence.requestLog=<file>
+            String logFile = System.getProperty("sentence.requestLog");
+            if (logFile != null) {
+                try {
+                    startRecording(new File(logFile));
+                } catch (IOException e) {
+                    System.err.println("Could not start recording requests: " + e.getMessage());
+                }
+            }
+            // Warm up in the background unless started with -Dsentence.warmUp=false
+            if (Boolean.parseBoolean(System.getProperty("sentence.warmUp", "true"))) {
+                startWarmUp();
+            } else {
+                ready = true;
+            }
             System.out.println("SentenceService initialized successfully!");
         }
     }
 
+    /**
+     * Initialize the service over the model BigramProcessor already holds, e.g. one built from text files with
+     * BigramProcessor.loadCounts, without connecting to the database. Used by load tests and tools that run
+     * without a MySQL server; calls that read the database still need one.
+     * Written by Andersen Breyel
+     */
+    public static void initializeWithLoadedModel() {
+        if (!BigramProcessor.isLoaded()) {
+            throw new IllegalStateException("No model loaded. Call BigramProcessor.loadCounts() first.");
+        }
+        if (instance == null) {
+            instance = new SentenceService(null);
+            ready = true;
+        }
+    }
+
+    /**
+     * Start recording every request to a binary log, which benchmarks.RequestReplay can play back.
+     * Replaces any log being recorded.
+     * @param file File to write the log to
+     * @throws IOException if the file cannot be created
+     * Written by Andersen Breyel
+     */
+    public static synchronized void startRecording(File file) throws IOException {
+        stopRecording();
+        requestLog = new RequestLog.Writer(file);
+        System.out.println("Recording requests to " + file);
+    }
+
+    /**
+     * Stop recording requests and close the log, if one is being recorded
+     * Written by Andersen Breyel
+     */
+    public static synchronized void stopRecording() {
+        RequestLog.Writer log = requestLog;
+        if (log == null) {
+            return;
+        }
+        requestLog = null;
+        try {
+            log.close();
+            System.out.println("Recorded " + log.getRequests() + " requests.");
+        } catch (IOException e) {
+            System.err.println("Error closing request log: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Append a request to the log if requests are being recorded. A log that fails to write is closed, so
+     * recording never fails a request.
+     * Written by Andersen Breyel
+     */
+    private static void record(Operation operation, GenerationAlgorithm algorithm, int number, String... texts) {
+        // Completions are asked for with partly typed words, which are not worth warming up
+        if (operation != Operation.GET_WORD_COMPLETIONS && texts.length > 0) {
+            countPrefix(texts[0]);
+        }
+        RequestLog.Writer log = requestLog;
+        if (log == null) {
+            return;
+        }
+        try {
+            log.append(operation, algorithm, number, texts);
+        } catch (IOException e) {
+            System.err.println("Error recording request, recording stopped: " + e.getMessage());
+            stopRecording();
+        }
+    }
+
+    /**
+     * Count the last word of a requested prefix. Once MAX_TRACKED_PREFIXES words are tracked only those keep
+     * counting, which keeps the map small and is enough to find the hot ones.
+     * Written by Andersen Breyel
+     */
+    private static void countPrefix(String prefix) {
+        if (prefix == null || prefix.isBlank()) {
+            return;
+        }
+        String trimmed = prefix.trim().toLowerCase();
+        String word = trimmed.substring(trimmed.lastIndexOf(' ') + 1);
+        LongAdder count = prefixCounts.get(word);
+        if (count == null) {
+            if (prefixCounts.size() >= MAX_TRACKED_PREFIXES) {
+                return;
+            }
+            count = prefixCounts.computeIfAbsent(word, w -> new LongAdder());
+        }
+        count.increment();
+    }
+
+    /**
+     * Save the most requested prefixes of this run for the next run's warm-up. Keeps the previous list if
+     * nothing was requested.
+     * Written by Andersen Breyel
+     */
+    private static void saveHotPrefixes() {
+        if (prefixCounts.isEmpty()) {
+            return;
+        }
+        List<String> hot = prefixCounts.entrySet().stream()
+                .sorted((a, b) -> Long.compare(b.getValue().sum(), a.getValue().sum()))
+                .limit(HOT_PREFIXES)
+                .map(Map.Entry::getKey)
+                .toList();
+        try {
+            Files.write(Path.of(HOT_PREFIX_FILE), hot, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            System.err.println("Could not save hot prefixes: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Load the hot prefixes saved by the last run, or use the most common starting words if there are none
+     * Written by Andersen Breyel
+     */
+    private static List<String> warmUpPrefixes() {
+        try {
+            Path file = Path.of(HOT_PREFIX_FILE);
+            if (Files.exists(file)) {
+                List<String> hot = Files.readAllLines(file, StandardCharsets.UTF_8).stream()
+                        .map(String::trim)
+                        .filter(line -> !line.isEmpty())
+                        .toList();
+                if (!hot.isEmpty()) {
+                    return hot;
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Could not read hot prefixes: " + e.getMessage());
+        }
+        return StartWordIndex.getTopStartingWords(HOT_PREFIXES);
+    }
+
+    /**
+     * Start the warm-up in a background thread. It builds the model's caches, then sends the hot prefixes through
+     * every generation and suggestion call in rounds until a round takes about as long as the one before, so the
+     * JIT has compiled the hot paths, and only then marks the service ready.
+     * Written by Andersen Breyel
+     */
+    private static void startWarmUp() {
+        ready = false;
+        Thread thread = new Thread(() -> {
+            long started = System.nanoTime();
+            BigramProcessor.buildCaches();
+            List<String> prefixes = warmUpPrefixes();
+            long previous = -1;
+            long first = -1;
+            int stableRounds = 0;
+            int round = 0;
+            while (stableRounds < 2 && round < MAX_WARM_UP_ROUNDS
+                    && System.nanoTime() - started < MAX_WARM_UP_MILLIS * 1_000_000L) {
+                long roundStarted = System.nanoTime();
+                for (int i = 0; i < prefixes.size(); i++) {
+                    if (Thread.currentThread().isInterrupted() || instance == null) return;
+                    warmUp(prefixes.get(i), prefixes.get((i + 1) % prefixes.size()));
+                }
+                long elapsed = System.nanoTime() - roundStarted;
+                if (first < 0) first = elapsed;
+                boolean stable = previous > 0 && Math.abs(elapsed - previous) <= WARM_UP_TOLERANCE * previous;
+                stableRounds = stable ? stableRounds + 1 : 0;
+                previous = elapsed;
+                round++;
+            }
+            ready = true;
+            System.out.printf("Warm-up with %d prefixes finished after %d rounds in %.1f s "
+                            + "(first round %.0f ms, last %.0f ms)%n", prefixes.size(), round,
+                    (System.nanoTime() - started) / 1e9, first / 1e6, previous / 1e6);
+        }, "sentence-warm-up");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        warmUpThread = thread;
+        thread.start();
+    }
+
+    /**
+     * Send one prefix through every generation and suggestion call
+     * @param prefix    word to start from
+     * @param otherWord another hot word, used as an ending word
+     * Written by Andersen Breyel
+     */
+    private static void warmUp(String prefix, String otherWord) {
+        SentenceService service = instance;
+        service.generateSentenceWeighted(prefix);
+        service.generateSentenceThreeRandom(prefix);
+        service.generateSentenceTopOne(prefix);
+        for (GenerationAlgorithm algorithm : GenerationAlgorithm.values()) {
+            service.generateSentence(prefix, algorithm);
+        }
+        service.generateSentenceConstrained(prefix, GenerationAlgorithm.WEIGHTED, otherWord, List.of());
+        service.generateSentenceEndingWith(prefix, GenerationAlgorithm.WEIGHTED);
+        service.generateSentencesBeam(prefix, 3);
+        service.generateSentencesBetween(prefix, otherWord, 3);
+        service.getWordCompletions(prefix.substring(0, Math.min(2, prefix.length())), 10);
+        service.getNextWordSuggestions(prefix);
+    }
+
+    /**
+     * Check whether the warm-up after initialize has finished; requests are served either way
+     * @return true once the service is warmed up, or right away if warm-up is turned off
+     * Written by Andersen Breyel
+     */
+    public static boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Wait for the warm-up to finish
+     * @param timeoutMillis most milliseconds to wait
+     * @return true if the service is ready
+     * Written by Andersen Breyel
+     */
+    public static boolean awaitReady(long timeoutMillis) throws InterruptedException {
+        Thread thread = warmUpThread;
+        if (!ready && thread != null) {
+            thread.join(timeoutMillis);
+        }
+        return ready;
+    }
+
+    /**
+     * @return the prefix, the required word and then the excluded words, as logged for a constrained request
+     */
+    private static String[] constrainedTexts(String prefix, String requiredWord, List<String> excludedWords) {
+        List<String> texts = new ArrayList<>();
+        texts.add(prefix);
+        texts.add(requiredWord);
+        if (excludedWords != null) texts.addAll(excludedWords);
+        return texts.toArray(new String[0]);
+    }
+
+    /**
+     * What every call of one request method shares: its names in the metrics, the log and the flight recorder,
+     * and how its failures are reported
+     */
+    private static final class Endpoint {
+        final String name;
+        final LatencyHistogram timer;
+        final Operation operation;
+        // Algorithm reported to the flight recorder when the call does not take one
+        final Object label;
+        // Whether the first text is a prefix the call continues from, reported as the prefix degree
+        final boolean continuesPrefix;
+        // What the call was doing, for the failure message; %s is replaced by the algorithm
+        final String activity;
+
+        Endpoint(String name, Operation operation, Object label, boolean continuesPrefix, String activity) {
+            this.name = name;
+            this.timer = Metrics.histogram("service." + name);
+            this.operation = operation;
+            this.label = label;
+            this.continuesPrefix = continuesPrefix;
+            this.activity = activity;
+        }
+    }
+
+    /**
+     * The work of a request, given the flight recorder event to report its result to
+     */
+    @FunctionalInterface
+    private interface Call<T> {
+        T run(GenerationRequest event) throws Exception;
+    }
+
+    /**
+     * Run a request: log it, time it and report it to the flight recorder, including requests turned away by the
+     * input checks, and turn any exception into the failure result. The warm-up's requests are none of these, so
+     * they don't show up in the histograms, the recordings or the hot prefixes.
+     * @param endpoint  the request method
+     * @param algorithm algorithm asked for, or null if the method has no choice of algorithm
+     * @param number    count or limit asked for, or 0
+     * @param failure   result when the call throws
+     * @param call      the work of the request
+     * @param texts     the request's texts, as logged; the first is the prefix
+     * @return the call's result, or failure
+     * Written by Andersen Breyel
+     */
+    private static <T> T serve(Endpoint endpoint, GenerationAlgorithm algorithm, int number, T failure, Call<T> call,
+                               String... texts) {
+        boolean warmUp = Thread.currentThread() == warmUpThread;
+        long started = System.nanoTime();
+        if (!warmUp) {
+            record(endpoint.operation, algorithm, number, texts);
+        }
+        GenerationRequest event = GenerationRequest.start(endpoint.name, algorithm != null ? algorithm : endpoint.label,
+                endpoint.continuesPrefix && texts.length > 0 ? texts[0] : null);
+        try {
+            return call.run(event);
+        } catch (Exception e) {
+            System.err.println("Error " + String.format(endpoint.activity, algorithm) + ": " + e.getMessage());
+            e.printStackTrace();
+            return failure;
+        } finally {
+            if (!warmUp) {
+                endpoint.timer.recordSince(started);
+                event.finish();
+            }
+        }
+    }
+
     /**
      * Get the singleton instance
      * Written by Khushi Dubey
@@ -49,6 +426,40 @@ public class SentenceService {
         return instance;
     }
 
+    /**
+     * Replace the last word of the prefix with the closest known word when it is not in the database
+     * @param prefix The trimmed prefix
+     * @return The prefix with its last word corrected, or null if the word is unknown and nothing is close to it
+     * Written by Andersen Breyel
+     */
+    private static String correctPrefix(String prefix) {
+        String corrected = BigramProcessor.correctWord(prefix);
+        if (corrected == null) {
+            return null;
+        }
+        int lastSpace = Math.max(prefix.lastIndexOf(' '), prefix.lastIndexOf('\t'));
+        String lastWord = prefix.substring(lastSpace + 1);
+        // Keep the user's capitalization when the word was already known
+        if (lastWord.equalsIgnoreCase(corrected)) {
+            return prefix;
+        }
+        return prefix.substring(0, lastSpace + 1) + corrected;
+    }
+
+    /**
+     * Build the error message for a word that is not in the database, suggesting similar known words
+     * @param prefix The trimmed prefix whose last word is unknown
+     * @return Error message as a String
+     * Written by Andersen Breyel
+     */
+    private static String unknownWordMessage(String prefix) {
+        List<String> suggestions = BigramProcessor.suggestWords(prefix, 3);
+        if (suggestions.isEmpty()) {
+            return "Error: Could not generate sentence. Word might not be in database.";
+        }
+        return "Error: Word is not in database. Did you mean: " + String.join(", ", suggestions) + "?";
+    }
+
     /**
      * Generate a sentence using the weighted (probability-based) algorithm
      * @param prefix The first word of the sentence
@@ -56,13 +467,16 @@ public class SentenceService {
      * Written by Khushi and Ezzah
      */
     public String generateSentenceWeighted(String prefix) {
-        if (prefix == null || prefix.trim().isEmpty()) {
-            return "Error: Please enter a starting word.";
-        }
+        return serve(GENERATE_SENTENCE_WEIGHTED, null, 0, FAILED_SENTENCE, event -> {
+            if (prefix == null || prefix.trim().isEmpty()) {
+                return "Error: Please enter a starting word.";
+            }
 
-        try {
-            // Clean up the prefix (trim whitespace, convert to proper format)
-            String cleanPrefix = prefix.trim();
+            // Clean up the prefix and fix a misspelled last word
+            String cleanPrefix = correctPrefix(prefix.trim());
+            if (cleanPrefix == null) {
+                return unknownWordMessage(prefix.trim());
+            }
 
             // Generate sentence with max 10 words, using smoothing, weighted algorithm
             String result = BigramProcessor.generateSentenceWeighted(cleanPrefix, 10, true);
@@ -72,13 +486,8 @@ public class SentenceService {
                 return "Error: Could not generate sentence. Word might not be in database.";
             }
 
-            return result.trim();
-
-        } catch (Exception e) {
-            System.err.println("Error generating sentence (weighted): " + e.getMessage());
-            e.printStackTrace();
-            return "Error: Failed to generate sentence. Please try another word.";
-        }
+            return event.result(result.trim());
+        }, prefix);
     }
 
     /**
@@ -88,13 +497,16 @@ public class SentenceService {
      * Written by Khushi and Ezzah
      */
     public String generateSentenceThreeRandom(String prefix) {
-        if (prefix == null || prefix.trim().isEmpty()) {
-            return "Error: Please enter a starting word.";
-        }
+        return serve(GENERATE_SENTENCE_THREE_RANDOM, null, 0, FAILED_SENTENCE, event -> {
+            if (prefix == null || prefix.trim().isEmpty()) {
+                return "Error: Please enter a starting word.";
+            }
 
-        try {
-            // Clean up the prefix (trim whitespace, convert to proper format)
-            String cleanPrefix = prefix.trim();
+            // Clean up the prefix and fix a misspelled last word
+            String cleanPrefix = correctPrefix(prefix.trim());
+            if (cleanPrefix == null) {
+                return unknownWordMessage(prefix.trim());
+            }
 
             // Generate sentence with max 10 words, using smoothing, three random algorithm
             String result = BigramProcessor.generateSentenceThreeRandom(cleanPrefix, 10, true);
@@ -104,13 +516,8 @@ public class SentenceService {
                 return "Error: Could not generate sentence. Word might not be in database.";
             }
 
-            return result.trim();
-
-        } catch (Exception e) {
-            System.err.println("Error generating sentence (three random): " + e.getMessage());
-            e.printStackTrace();
-            return "Error: Failed to generate sentence. Please try another word.";
-        }
+            return event.result(result.trim());
+        }, prefix);
     }
 
     /**
@@ -120,13 +527,16 @@ public class SentenceService {
      * Written by Khushi and Ezzah
      */
     public String generateSentenceTopOne(String prefix) {
-        if (prefix == null || prefix.trim().isEmpty()) {
-            return "Error: Please enter a starting word.";
-        }
+        return serve(GENERATE_SENTENCE_TOP_ONE, null, 0, FAILED_SENTENCE, event -> {
+            if (prefix == null || prefix.trim().isEmpty()) {
+                return "Error: Please enter a starting word.";
+            }
 
-        try {
-            // Clean up the prefix (trim whitespace, convert to proper format)
-            String cleanPrefix = prefix.trim();
+            // Clean up the prefix and fix a misspelled last word
+            String cleanPrefix = correctPrefix(prefix.trim());
+            if (cleanPrefix == null) {
+                return unknownWordMessage(prefix.trim());
+            }
 
             // Generate sentence with max 10 words, using smoothing, top one algorithm
             String result = BigramProcessor.generateSentenceTopOne(cleanPrefix, 10, true);
@@ -136,13 +546,190 @@ public class SentenceService {
                 return "Error: Could not generate sentence. Word might not be in database.";
             }
 
-            return result.trim();
+            // Report a loop instead of repeating the same words until the limit
+            if (BigramProcessor.topOneLoops(cleanPrefix, 10)) {
+                return "Error: Top One gets stuck repeating itself after \"" + result.trim()
+                        + "\". Try another word or algorithm.";
+            }
 
-        } catch (Exception e) {
-            System.err.println("Error generating sentence (top one): " + e.getMessage());
-            e.printStackTrace();
-            return "Error: Failed to generate sentence. Please try another word.";
-        }
+            return event.result(result.trim());
+        }, prefix);
+    }
+
+    /**
+     * Generate a sentence using any of the generation algorithms, including the temperature,
+     * top-k and nucleus sampling modes
+     * @param prefix    The first word of the sentence
+     * @param algorithm Algorithm that picks each next word
+     * @return Generated sentence as a String
+     * Written by Andersen Breyel
+     */
+    public String generateSentence(String prefix, GenerationAlgorithm algorithm) {
+        return serve(GENERATE_SENTENCE, algorithm, 0, FAILED_SENTENCE, event -> {
+            if (prefix == null || prefix.trim().isEmpty()) {
+                return "Error: Please enter a starting word.";
+            }
+
+            // Clean up the prefix and fix a misspelled last word
+            String cleanPrefix = correctPrefix(prefix.trim());
+            if (cleanPrefix == null) {
+                return unknownWordMessage(prefix.trim());
+            }
+
+            // Generate sentence with max 10 words, using smoothing
+            String result = BigramProcessor.generateSentence(cleanPrefix, algorithm, 10, true,
+                    ThreadLocalRandom.current());
+
+            // Check if generation was successful
+            if (result == null || result.trim().isEmpty()) {
+                return "Error: Could not generate sentence. Word might not be in database.";
+            }
+
+            return event.result(result.trim());
+        }, prefix);
+    }
+
+    /**
+     * Generate a sentence that is guaranteed to finish with an end-of-sentence mark within 10 words,
+     * optionally containing a given word and avoiding others
+     * @param prefix        The first word of the sentence
+     * @param algorithm     Algorithm that picks each next word
+     * @param requiredWord  Word the sentence must contain, or null/blank for none
+     * @param excludedWords Words the sentence may not contain
+     * @return Generated sentence as a String
+     * Written by Andersen Breyel
+     */
+    public String generateSentenceConstrained(String prefix, GenerationAlgorithm algorithm, String requiredWord,
+                                              List<String> excludedWords) {
+        return serve(GENERATE_SENTENCE_CONSTRAINED, algorithm, 0, FAILED_SENTENCE, event -> {
+            if (prefix == null || prefix.trim().isEmpty()) {
+                return "Error: Please enter a starting word.";
+            }
+
+            // Clean up the prefix and fix a misspelled last word
+            String cleanPrefix = correctPrefix(prefix.trim());
+            if (cleanPrefix == null) {
+                return unknownWordMessage(prefix.trim());
+            }
+
+            // Generate sentence that ends within 10 words, using smoothing
+            String result = BigramProcessor.generateSentenceConstrained(cleanPrefix, algorithm.getSampler(), 10,
+                    requiredWord, excludedWords, true, ThreadLocalRandom.current());
+
+            // null means no sentence can satisfy the constraints
+            if (result == null) {
+                return "Error: No complete sentence within 10 words matches those choices. Try other words.";
+            }
+
+            return event.result(result.trim());
+        }, constrainedTexts(prefix, requiredWord, excludedWords));
+    }
+
+    /**
+     * Generate a sentence backwards so that it ends with the chosen word
+     * @param finalWord The last word of the sentence
+     * @param algorithm The sampler used to pick each previous word
+     * @return Generated sentence or error message
+     * Written by Andersen Breyel
+     */
+    public String generateSentenceEndingWith(String finalWord, GenerationAlgorithm algorithm) {
+        return serve(GENERATE_SENTENCE_ENDING_WITH, algorithm, 0, FAILED_SENTENCE, event -> {
+            if (finalWord == null || finalWord.trim().isEmpty()) {
+                return "Error: Please enter an ending word.";
+            }
+
+            // Clean up the word and fix a misspelling
+            String cleanWord = BigramProcessor.correctWord(finalWord.trim());
+            if (cleanWord == null) {
+                return unknownWordMessage(finalWord.trim());
+            }
+
+            // Generate up to 10 words before the final word, using smoothing
+            String result = BigramProcessor.generateSentenceBackward(cleanWord, algorithm.getSampler(), 10, true,
+                    ThreadLocalRandom.current());
+
+            // null means the word is not in the database
+            if (result == null) {
+                return "Error: Could not generate sentence. Word might not be in database.";
+            }
+
+            return event.result(result.trim());
+        }, finalWord);
+    }
+
+    /**
+     * Generate several ranked alternatives at once using beam search
+     * @param prefix The first word of the sentence
+     * @param count  How many sentences to return
+     * @return Up to count complete sentences, most probable first, or an empty list if none could be generated
+     * Written by Andersen Breyel
+     */
+    public List<String> generateSentencesBeam(String prefix, int count) {
+        return serve(GENERATE_SENTENCES_BEAM, null, count, List.of(), event -> {
+            if (prefix == null || prefix.trim().isEmpty()) {
+                return List.of();
+            }
+
+            // Clean up the prefix and fix a misspelled last word
+            String cleanPrefix = correctPrefix(prefix.trim());
+            if (cleanPrefix == null) {
+                return List.of();
+            }
+
+            // Keep twice as many partial sentences as we return, max 10 words, using smoothing
+            return event.result(
+                    BigramProcessor.generateSentencesBeam(cleanPrefix, Math.max(2 * count, 4), 10, count, true));
+        }, prefix);
+    }
+
+    /**
+     * Find the most probable sentences that start with one word and end with another
+     * @param startWord The first word of the sentence
+     * @param endWord   The last word of the sentence
+     * @param count     How many sentences to return
+     * @return Up to count sentences, most probable first, or an empty list if none could be found
+     * Written by Andersen Breyel
+     */
+    public List<String> generateSentencesBetween(String startWord, String endWord, int count) {
+        return serve(GENERATE_SENTENCES_BETWEEN, null, count, List.of(), event -> {
+            if (startWord == null || startWord.trim().isEmpty() || endWord == null || endWord.trim().isEmpty()) {
+                return List.of();
+            }
+
+            // Fix misspelled words, then allow at most 10 words including both given words, using smoothing
+            String cleanStart = correctPrefix(startWord.trim());
+            String cleanEnd = BigramProcessor.correctWord(endWord.trim());
+            if (cleanStart == null || cleanEnd == null) {
+                return List.of();
+            }
+            return event.result(BigramProcessor.generateSentencesBetween(cleanStart, cleanEnd, 10, count, true));
+        }, startWord, endWord);
+    }
+
+    /**
+     * Complete a partly typed starting word. Words that often start a sentence come first, followed by the
+     * most frequent other words with that prefix.
+     * @param prefix The letters typed so far
+     * @param limit  How many words to return
+     * @return Up to limit known words starting with the prefix
+     * Written by Andersen Breyel
+     */
+    public List<String> getWordCompletions(String prefix, int limit) {
+        return serve(GET_WORD_COMPLETIONS, null, limit, List.of(), event -> {
+            if (prefix == null || prefix.trim().isEmpty()) {
+                return List.of();
+            }
+
+            List<String> completions = new ArrayList<>(BigramProcessor.getCompletions(prefix, limit, true));
+            // Fill the rest with frequent words that never start a sentence
+            if (completions.size() < limit) {
+                for (String word : BigramProcessor.getCompletions(prefix, limit, false)) {
+                    if (completions.size() == limit) break;
+                    if (!completions.contains(word)) completions.add(word);
+                }
+            }
+            return event.result(completions);
+        }, prefix);
     }
 
     /**
@@ -151,35 +738,117 @@ public class SentenceService {
      * Written by Rida Basit
      */
     public List<String> getNextWordSuggestions(String currentSentence) {
-        // If the sentence is completely null, return an empty list
-        if (currentSentence == null) {
-            return List.of();
-        }
-        // Remove extra spaces at the start and end of the sentence
-        String clean = currentSentence.trim();
-        // If the cleaned sentence is now empty, return an empty list
-        if (clean.isEmpty()) {
-            return List.of();
-        }
-        try {
+        return serve(GET_NEXT_WORD_SUGGESTIONS, null, 0, List.of(), event -> {
+            // If the sentence is completely null, return an empty list
+            if (currentSentence == null) {
+                return List.of();
+            }
+            // Remove extra spaces at the start and end of the sentence
+            String clean = currentSentence.trim();
+            // If the cleaned sentence is now empty, return an empty list
+            if (clean.isEmpty()) {
+                return List.of();
+            }
             // Ask the BigramProcessor for suggestions using Laplace smoothing (true)
             // This will return a list of next-word options based on the last word in the sentence
-            return BigramProcessor.getNextWordSuggestions(clean, true);
+            return event.result(BigramProcessor.getNextWordSuggestions(clean, true));
+        }, currentSentence);
+    }
+
+    /**
+     * Get the files that have been imported into the database
+     * @return file_id -> file name, in the order the files were imported
+     * Written by Andersen Breyel
+     */
+    public Map<Integer, String> getImportedFiles() {
+        long started = System.nanoTime();
+        try {
+            return DatabaseManager.loadFiles();
         } catch (Exception e) {
-            // If anything goes wrong, print the error message to the console
-            System.err.println("Error getting next-word suggestions: " + e.getMessage());
+            System.err.println("Error loading imported files: " + e.getMessage());
             e.printStackTrace();
-            // And return an empty list so the UI can handle "no suggestions"
-            return List.of();
+            return Map.of();
+        } finally {
+            GET_IMPORTED_FILES_TIMER.recordSince(started);
         }
     }
 
+    /**
+     * Generate sentences in the style of the chosen files only, as if no other files had been imported
+     * @param fileIds file_ids of the files to use, or an empty list to use every file again
+     * @return A short status message, or an error message starting with "Error:"
+     * Written by Andersen Breyel
+     */
+    public String selectFiles(List<Integer> fileIds) {
+        long started = System.nanoTime();
+        try {
+            BigramProcessor.selectFiles(fileIds);
+            if (fileIds == null || fileIds.isEmpty()) {
+                return "Using all imported files.";
+            }
+            return "Using " + BigramProcessor.getSelectedFiles().size() + " selected file(s).";
+        } catch (Exception e) {
+            System.err.println("Error selecting files: " + e.getMessage());
+            e.printStackTrace();
+            return "Error: Could not load the selected files.";
+        } finally {
+            SELECT_FILES_TIMER.recordSince(started);
+        }
+    }
+
+
+    /**
+     * Generate sentences for many prefixes at once, split across all cores.
+     * The same prefixes, algorithm, count and seed always give the same sentences.
+     * @param prefixes  First words of the sentences
+     * @param algorithm Algorithm used for every sentence
+     * @param count     Number of sentences per prefix
+     * @param seed      Seed that makes the results reproducible
+     * @return Stream of results grouped by prefix in input order
+     * Written by Andersen Breyel
+     */
+    public Stream<BulkGenerator.GeneratedSentence> generateBulk(List<String> prefixes, GenerationAlgorithm algorithm,
+                                                                int count, long seed) {
+        // Clean up each prefix the same way the single sentence methods do, skipping blank ones
+        List<String> cleanPrefixes = prefixes.stream()
+                .filter(p -> p != null && !p.trim().isEmpty())
+                .map(String::trim)
+                .toList();
+
+        // Generate sentences with max 10 words, using smoothing
+        return BulkGenerator.generate(cleanPrefixes, algorithm, count, 10, true, seed);
+    }
+
+    /**
+     * Get next word suggestions for many sentences at once, split across all cores.
+     * @param sentences Sentences whose last word is used for the suggestions
+     * @param limit     Max suggestions per sentence, or 0 for all of them
+     * @return Stream with one result per sentence in input order
+     * Written by Andersen Breyel
+     */
+    public Stream<BulkGenerator.Suggestions> getNextWordSuggestionsBulk(List<String> sentences, int limit) {
+        List<String> cleanSentences = sentences.stream()
+                .filter(s -> s != null && !s.trim().isEmpty())
+                .map(String::trim)
+                .toList();
+
+        // Using Laplace smoothing (true) like the single sentence version
+        return BulkGenerator.suggest(cleanSentences, limit, true);
+    }
 
     /**
      * Clean up database connections when application closes
      * Written by Khushi Dubey
      */
     public static void shutdown() {
+        Thread thread = warmUpThread;
+        if (thread != null) {
+            thread.interrupt();
+            warmUpThread = null;
+        }
+        ready = false;
+        stopRecording();
+        saveHotPrefixes();
         System.out.println("SentenceService shut down.");
         instance = null;
     }
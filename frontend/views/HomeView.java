@@ -10,10 +10,13 @@ import frontend.views.Views;
 import frontend.views.MainView;
 import frontend.views.FeedbackView;
 import frontend.views.AutocompleteView;
+import frontend.views.RankedSentencesView;
 import frontend.SceneManager;
-import backend.DatabaseManager;
+import backend.StartWordIndex;
 
 import frontend.services.SentenceService;
+import backend.GenerationAlgorithm;
+import javafx.application.Platform;
 import javafx.geometry.Pos;
 import javafx.scene.Parent;
 import javafx.scene.control.ComboBox;
@@ -22,7 +25,9 @@ import javafx.scene.input.KeyCode;
 import javafx.scene.layout.HBox;
 import javafx.scene.layout.VBox;
 import javafx.scene.control.Button;
+import javafx.scene.control.CheckBox;
 import javafx.scene.control.RadioButton;
+import javafx.scene.control.TextField;
 import javafx.scene.control.ToggleGroup;
 
 import java.sql.SQLException;
@@ -66,10 +71,10 @@ public class HomeView {
 
         ComboBox<String> wordDropdown = new ComboBox<>();
 
-        // Load top 10 starting words from the database
+        // Load top 10 starting words from the in-memory ranking
         List<String> startingWords = new ArrayList<>();
 
-        startingWords = DatabaseManager.getTopStartingWords(10);
+        startingWords = StartWordIndex.getTopStartingWords(10);
 
         // If DB returned nothing, default list fallback
         if (startingWords.isEmpty()) {
@@ -83,19 +88,33 @@ public class HomeView {
         List<String> displayWords = new ArrayList<>();
         for (String w : startingWords) {
             if (w == null || w.isBlank()) continue;
-            String lower = w.toLowerCase();
-            if (lower.equals("i")) {
-                displayWords.add("I");
-            } else {
-                displayWords.add(Character.toUpperCase(lower.charAt(0)) + lower.substring(1));
-            }
+            displayWords.add(displayWord(w));
         }
 
         // Put the edited versions into the dropdown
         wordDropdown.getItems().setAll(displayWords);
 
-        wordDropdown.setPromptText("Select your first word");
-        wordDropdown.setEditable(false);
+        wordDropdown.setPromptText("Select or type your first word");
+        wordDropdown.setEditable(true);
+
+        // Typeahead: as the user types, show known words starting with the typed letters
+        List<String> defaultWords = List.copyOf(displayWords);
+        wordDropdown.getEditor().textProperty().addListener((obs, oldText, newText) -> {
+            // Picking an item also sets the text; leave the list alone then
+            if (newText == null || wordDropdown.getItems().contains(newText)) return;
+            List<String> completions = new ArrayList<>();
+            if (newText.isBlank()) {
+                completions.addAll(defaultWords);
+            } else {
+                for (String w : SentenceService.getInstance().getWordCompletions(newText, 10)) {
+                    completions.add(displayWord(w));
+                }
+            }
+            Platform.runLater(() -> {
+                wordDropdown.getItems().setAll(completions);
+                if (!completions.isEmpty() && wordDropdown.getEditor().isFocused()) wordDropdown.show();
+            });
+        });
         wordDropdown.setPrefWidth(240);
         wordDropdown.setStyle(
                 "-fx-background-radius: 999;" +
@@ -129,21 +148,57 @@ public class HomeView {
         radioTopOne.setToggleGroup(algorithmGroup);
         radioTopOne.setStyle("-fx-font-size: 12; -fx-text-fill: " + Views.TEXT_DEFAULT + ";");
 
+        RadioButton radioTemperature = new RadioButton("Temperature (Sharper Weighted, T = 0.7)");
+        radioTemperature.setToggleGroup(algorithmGroup);
+        radioTemperature.setStyle("-fx-font-size: 12; -fx-text-fill: " + Views.TEXT_DEFAULT + ";");
+
+        RadioButton radioTopK = new RadioButton("Top-K (Weighted among Top 10)");
+        radioTopK.setToggleGroup(algorithmGroup);
+        radioTopK.setStyle("-fx-font-size: 12; -fx-text-fill: " + Views.TEXT_DEFAULT + ";");
+
+        RadioButton radioNucleus = new RadioButton("Nucleus (Top 90% of Probability)");
+        radioNucleus.setToggleGroup(algorithmGroup);
+        radioNucleus.setStyle("-fx-font-size: 12; -fx-text-fill: " + Views.TEXT_DEFAULT + ";");
+
+        RadioButton radioBeam = new RadioButton("Beam Search (Top 3 Ranked)");
+        radioBeam.setToggleGroup(algorithmGroup);
+        radioBeam.setStyle("-fx-font-size: 12; -fx-text-fill: " + Views.TEXT_DEFAULT + ";");
+
+        RadioButton radioBackward = new RadioButton("Backward (Ends With Chosen Word)");
+        radioBackward.setToggleGroup(algorithmGroup);
+        radioBackward.setStyle("-fx-font-size: 12; -fx-text-fill: " + Views.TEXT_DEFAULT + ";");
+
         // Create a VBox to hold the radio buttons
-        VBox radioBox = new VBox(8, radioWeighted, radioThreeRandom, radioTopOne);
+        VBox radioBox = new VBox(8, radioWeighted, radioThreeRandom, radioTopOne,
+                radioTemperature, radioTopK, radioNucleus, radioBeam, radioBackward);
         radioBox.setStyle("-fx-padding: 10; -fx-border-color: #e5e7eb; -fx-border-radius: 8; -fx-border-width: 1;");
 
+        // Constraints: always finish the sentence, optionally with a required word and excluded words
+        CheckBox finishCheck = new CheckBox("Always finish the sentence (within 10 words)");
+        finishCheck.setStyle("-fx-font-size: 12; -fx-text-fill: " + Views.TEXT_DEFAULT + ";");
+
+        TextField includeField = new TextField();
+        includeField.setPromptText("Must include (optional)");
+
+        TextField excludeField = new TextField();
+        excludeField.setPromptText("Exclude words, comma separated (optional)");
+
+        TextField endField = new TextField();
+        endField.setPromptText("End with word (optional, shows top 3)");
+
+        VBox constraintBox = new VBox(8, finishCheck, includeField, excludeField, endField);
+
         // primary actions (use shared button styles)
         Button btnGenerate = Views.primaryButton("Generate Sentence");
         Button btnAuto     = Views.secondaryButton("Word Completion");
 
         // disable actions when input is empty
-        btnGenerate.disableProperty().bind(wordDropdown.valueProperty().isNull());
-        btnAuto.disableProperty().bind(wordDropdown.valueProperty().isNull());
+        btnGenerate.disableProperty().bind(wordDropdown.getEditor().textProperty().isEmpty());
+        btnAuto.disableProperty().bind(wordDropdown.getEditor().textProperty().isEmpty());
 
         // Generate Sentence
         btnGenerate.setOnAction(e -> {
-            String firstWord = wordDropdown.getValue();
+            String firstWord = wordDropdown.getEditor().getText();
             if (firstWord == null) return;
             firstWord = firstWord.trim();
             if (firstWord.isEmpty()) return;
@@ -156,12 +211,68 @@ public class HomeView {
                 SentenceService service = SentenceService.getInstance();
                 //String generatedSentence = service.generateSentence(firstWord);
 
+                // Beam search returns several ranked sentences for the user to pick from
+                if (radioBeam.isSelected()) {
+                    List<String> ranked = service.generateSentencesBeam(firstWord, 3);
+                    MainView.setCenter(RankedSentencesView.create(ranked), "Ranked Sentences");
+                    return;
+                }
+
+                // A chosen end word shows the most probable sentences from the first word to it
+                String endWord = endField.getText() == null ? "" : endField.getText().trim();
+                if (!endWord.isEmpty()) {
+                    List<String> ranked = service.generateSentencesBetween(firstWord, endWord, 3);
+                    MainView.setCenter(RankedSentencesView.create(ranked), "Ranked Sentences");
+                    return;
+                }
+
+                // Backward generation builds the sentence leading up to the chosen word
+                if (radioBackward.isSelected()) {
+                    String backward = service.generateSentenceEndingWith(firstWord, GenerationAlgorithm.WEIGHTED);
+                    MainView.setCenter(FeedbackView.create(backward), "Feedback");
+                    return;
+                }
+
+                // Any constraint switches to constrained generation with the selected algorithm
+                String mustInclude = includeField.getText() == null ? "" : includeField.getText().trim();
+                List<String> excluded = new ArrayList<>();
+                if (excludeField.getText() != null) {
+                    for (String w : excludeField.getText().split(",")) {
+                        if (!w.isBlank()) excluded.add(w.trim());
+                    }
+                }
+                if (finishCheck.isSelected() || !mustInclude.isEmpty() || !excluded.isEmpty()) {
+                    GenerationAlgorithm algorithm;
+                    if (radioThreeRandom.isSelected()) {
+                        algorithm = GenerationAlgorithm.THREE_RANDOM;
+                    } else if (radioTopOne.isSelected()) {
+                        algorithm = GenerationAlgorithm.TOP_ONE;
+                    } else if (radioTemperature.isSelected()) {
+                        algorithm = GenerationAlgorithm.TEMPERATURE;
+                    } else if (radioTopK.isSelected()) {
+                        algorithm = GenerationAlgorithm.TOP_K;
+                    } else if (radioNucleus.isSelected()) {
+                        algorithm = GenerationAlgorithm.NUCLEUS;
+                    } else {
+                        algorithm = GenerationAlgorithm.WEIGHTED;
+                    }
+                    String constrained = service.generateSentenceConstrained(firstWord, algorithm, mustInclude, excluded);
+                    MainView.setCenter(FeedbackView.create(constrained), "Feedback");
+                    return;
+                }
+
                 // Determine which algorithm to use based on selected radio button
                 String generatedSentence;
                 if (radioWeighted.isSelected()) {
                     generatedSentence = service.generateSentenceWeighted(firstWord);
                 } else if (radioThreeRandom.isSelected()) {
                     generatedSentence = service.generateSentenceThreeRandom(firstWord);
+                } else if (radioTemperature.isSelected()) {
+                    generatedSentence = service.generateSentence(firstWord, GenerationAlgorithm.TEMPERATURE);
+                } else if (radioTopK.isSelected()) {
+                    generatedSentence = service.generateSentence(firstWord, GenerationAlgorithm.TOP_K);
+                } else if (radioNucleus.isSelected()) {
+                    generatedSentence = service.generateSentence(firstWord, GenerationAlgorithm.NUCLEUS);
                 } else {
                     generatedSentence = service.generateSentenceTopOne(firstWord);
                 }
@@ -178,7 +289,7 @@ public class HomeView {
 
         // Word completion
         btnAuto.setOnAction(e -> {
-            String firstWord = wordDropdown.getValue();
+            String firstWord = wordDropdown.getEditor().getText();
             if (firstWord == null || firstWord.trim().isEmpty()) return;
 
             String[] options = {"quick", "dog", "man"}; // placeholder options
@@ -187,7 +298,7 @@ public class HomeView {
 
         // Allow Enter to trigger Generate
         wordDropdown.setOnKeyPressed(e -> {
-            if (e.getCode() == KeyCode.ENTER && wordDropdown.getValue() != null) {
+            if (e.getCode() == KeyCode.ENTER && !wordDropdown.getEditor().getText().isBlank()) {
                 btnGenerate.fire();
             }
         });
@@ -206,6 +317,7 @@ public class HomeView {
                 new Label(""),
                 algorithmLabel,
                 radioBox,
+                constraintBox,
                 new Label(""),
                 row
         );
@@ -214,4 +326,18 @@ public class HomeView {
         root.getChildren().add(card);
         return root;
     }
+
+    /**
+     * Capitalizes a word for display in the dropdown
+     * @param word word from the database
+     * @return the word in lowercase with its first letter capitalized
+     * Written by Andersen Breyel
+     */
+    private static String displayWord(String word) {
+        String lower = word.toLowerCase();
+        if (lower.equals("i")) {
+            return "I";
+        }
+        return Character.toUpperCase(lower.charAt(0)) + lower.substring(1);
+    }
 }
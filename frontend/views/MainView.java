@@ -11,6 +11,7 @@ import frontend.views.HomeView;
 import frontend.views.Views;
 
 import frontend.UploadStore;
+import frontend.services.SentenceService;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.geometry.Insets;
@@ -24,6 +25,7 @@ import javafx.stage.FileChooser;
 
 import java.io.File;
 import java.util.List;
+import java.util.Map;
 
 public class MainView {
 
@@ -223,6 +225,42 @@ public class MainView {
             }
         });
 
+        // Corpus: restrict generation to some of the files in the database
+        ObservableList<Map.Entry<Integer, String>> corpusFiles = FXCollections.observableArrayList();
+        ListView<Map.Entry<Integer, String>> corpusList = new ListView<>(corpusFiles);
+        corpusList.setPlaceholder(new Label("No files in the database."));
+        corpusList.setPrefHeight(120);
+        corpusList.getSelectionModel().setSelectionMode(SelectionMode.MULTIPLE);
+        corpusList.setCellFactory(lv -> new ListCell<>() {
+            @Override protected void updateItem(Map.Entry<Integer, String> f, boolean empty) {
+                super.updateItem(f, empty);
+                setText(empty || f == null ? null : f.getValue());
+            }
+        });
+
+        Button btnUseSelected = Views.secondaryButton("Use Selected");
+        Button btnUseAll = Views.secondaryButton("Use All Files");
+        HBox corpusActions = new HBox(8, btnUseSelected, btnUseAll);
+        corpusActions.setAlignment(Pos.CENTER_RIGHT);
+
+        btnUseSelected.setOnAction(e -> {
+            List<Integer> ids = corpusList.getSelectionModel().getSelectedItems().stream()
+                    .map(Map.Entry::getKey)
+                    .toList();
+            if (!ids.isEmpty()) status.setText(SentenceService.getInstance().selectFiles(ids));
+        });
+        btnUseAll.setOnAction(e -> {
+            corpusList.getSelectionModel().clearSelection();
+            status.setText(SentenceService.getInstance().selectFiles(List.of()));
+        });
+
+        TitledPane corpusPane = new TitledPane("Corpus", new VBox(8, corpusList, corpusActions));
+        corpusPane.setExpanded(false);
+        // Refresh the list from the database each time the pane is opened
+        corpusPane.expandedProperty().addListener((obs, was, expanded) -> {
+            if (expanded) corpusFiles.setAll(SentenceService.getInstance().getImportedFiles().entrySet());
+        });
+
         Label actionsTitle = new Label("Actions");
         actionsTitle.setStyle("-fx-font-weight: bold; -fx-text-fill:" + Views.TEXT_DEFAULT + ";");
 
@@ -239,6 +277,7 @@ public class MainView {
         inner.getChildren().addAll(
                 uploadPane,
                 importedPane,
+                corpusPane,
                 new Separator(),
                 actionsTitle,
                 btnSentence,
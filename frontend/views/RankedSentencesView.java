@@ -0,0 +1,73 @@
+/**
+Shows several ranked sentence alternatives from one generation call
+and lets the user pick the one to rate.
+ Written by Andersen Breyel
+ */
+package frontend.views;
+import frontend.views.MainView;
+import frontend.views.HomeView;
+import frontend.views.FeedbackView;
+import frontend.views.Views;
+import javafx.geometry.Pos;
+import javafx.scene.Parent;
+import javafx.scene.control.Button;
+import javafx.scene.control.Label;
+import javafx.scene.layout.VBox;
+
+import java.util.List;
+
+public class RankedSentencesView {
+
+    /**
+     * Creates the view listing ranked sentences, most probable first.
+     * Clicking a sentence opens the Feedback view for it.
+     * @param sentences ranked sentences to display
+     * @return Parent node containing the ranked sentences UI.
+     * Written by Andersen Breyel
+     */
+    public static Parent create(List<String> sentences) {
+        VBox root = new VBox();
+        root.setAlignment(Pos.CENTER);
+        root.setStyle(
+                "-fx-background-color: " + Views.APP_BG + ";" +
+                        "-fx-padding: 32;"
+        );
+
+        // title + helper text
+        Label title = Views.title("Sentence Builder");
+        Label subtitle = new Label(sentences.isEmpty()
+                ? "No complete sentence could be built from that word. Try another one."
+                : "Pick the sentence you like best. The most probable one is listed first.");
+        subtitle.setWrapText(true);
+        subtitle.setStyle("-fx-text-fill: " + Views.TEXT_MUTED + "; -fx-font-size: 13;");
+
+        // one button per ranked sentence
+        VBox choices = new VBox(8);
+        for (int i = 0; i < sentences.size(); i++) {
+            String sentence = sentences.get(i);
+            Button choice = Views.secondaryButton((i + 1) + ". " + sentence);
+            choice.setWrapText(true);
+            choice.setMaxWidth(Double.MAX_VALUE);
+            choice.setAlignment(Pos.CENTER_LEFT);
+            choice.setOnAction(e -> MainView.setCenter(FeedbackView.create(sentence), "Feedback"));
+            choices.getChildren().add(choice);
+        }
+
+        Button back = Views.primaryButton("Back to Home");
+        back.setOnAction(e ->
+                MainView.setCenter(HomeView.create(), "Sentence Builder - Home")
+        );
+
+        // Assemble card
+        VBox card = Views.card(
+                title,
+                subtitle,
+                choices,
+                back
+        );
+        card.setMaxWidth(480);
+
+        root.getChildren().add(card);
+        return root;
+    }
+}